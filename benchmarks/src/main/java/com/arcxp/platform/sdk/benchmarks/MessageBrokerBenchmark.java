@@ -0,0 +1,263 @@
+package com.arcxp.platform.sdk.benchmarks;
+
+import com.arcxp.platform.sdk.annotations.ArcAsyncEvent;
+import com.arcxp.platform.sdk.annotations.ArcEndpoint;
+import com.arcxp.platform.sdk.annotations.ArcRequestIntercept;
+import com.arcxp.platform.sdk.annotations.ArcResponseIntercept;
+import com.arcxp.platform.sdk.annotations.ArcSyncEvent;
+import com.arcxp.platform.sdk.broker.MessageBroker;
+import com.arcxp.platform.sdk.handlers.async.EventHandler;
+import com.arcxp.platform.sdk.handlers.async.EventPayload;
+import com.arcxp.platform.sdk.handlers.sync.RequestHandler;
+import com.arcxp.platform.sdk.handlers.sync.RequestPayload;
+import com.arcxp.platform.sdk.utils.MapUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MessageBroker#handle(byte[])} and {@link MessageBroker#handle(String)} for each message shape the
+ * broker accepts, so that regressions in envelope parsing, routing and response serialization show up before an SDK
+ * upgrade. Every handler of a run is subscribed to the routed key, so the handler count is the number of handlers
+ * the broker resolves and invokes for each message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn"})
+public class MessageBrokerBenchmark {
+
+    /**
+     * The message shapes handled by the broker.
+     */
+    public enum Scenario {
+        /** Legacy async event, routed on {@code eventType}. */
+        V1_ASYNC,
+        /** Version 2 async event, typeId 1. */
+        V2_ASYNC,
+        /** Version 2 sync event, typeId 5. */
+        V2_SYNC,
+        /** Request intercept, typeId 2. */
+        REQUEST_INTERCEPT,
+        /** Response intercept, typeId 3. */
+        RESPONSE_INTERCEPT,
+        /** Custom endpoint, typeId 4, routed on the uri. */
+        CUSTOM_ENDPOINT,
+        /** Message handed to the handlers without transformation, routed on {@code key}. */
+        NON_TRANSFORMED
+    }
+
+    @Param
+    private Scenario scenario;
+
+    @Param({"1024", "65536", "1048576"})
+    private int bodySize;
+
+    @Param({"1", "20", "200"})
+    private int handlerCount;
+
+    @Param({"true", "false"})
+    private boolean metricsEnabled;
+
+    private MessageBroker broker;
+
+    private byte[] messageBytes;
+
+    private String message;
+
+    @ArcAsyncEvent("commerce:BENCH_EVENT")
+    static class BenchEventHandler extends EventHandler {
+        @Override
+        public void handle(EventPayload payload) {
+            if (payload.getKey() == null) {
+                throw new IllegalStateException("Missing key");
+            }
+        }
+    }
+
+    @ArcSyncEvent("commerce:BENCH_SYNC")
+    static class BenchSyncHandler extends RequestHandler {
+        @Override
+        public void handle(RequestPayload payload) {
+            if (payload.getKey() == null) {
+                throw new IllegalStateException("Missing key");
+            }
+        }
+    }
+
+    @ArcRequestIntercept("commerce:BENCH_INTERCEPT")
+    static class BenchRequestInterceptor extends RequestHandler {
+        @Override
+        public void handle(RequestPayload payload) {
+            if (payload.getKey() == null) {
+                throw new IllegalStateException("Missing key");
+            }
+        }
+    }
+
+    @ArcResponseIntercept("commerce:BENCH_INTERCEPT")
+    static class BenchResponseInterceptor extends RequestHandler {
+        @Override
+        public void handle(RequestPayload payload) {
+            if (payload.getKey() == null) {
+                throw new IllegalStateException("Missing key");
+            }
+        }
+    }
+
+    @ArcEndpoint("commerce:bench/endpoint")
+    static class BenchEndpoint extends RequestHandler {
+        @Override
+        public void handle(RequestPayload payload) {
+            if (payload.getUri() == null) {
+                throw new IllegalStateException("Missing uri");
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = MapUtils.createObjectMapper();
+
+        List<EventHandler> eventHandlers = new ArrayList<>();
+        List<RequestHandler> requestHandlers = new ArrayList<>();
+        for (int i = 0; i < handlerCount; i++) {
+            switch (scenario) {
+                case V1_ASYNC:
+                case V2_ASYNC:
+                case NON_TRANSFORMED:
+                    eventHandlers.add(new BenchEventHandler());
+                    break;
+                case V2_SYNC:
+                    requestHandlers.add(new BenchSyncHandler());
+                    break;
+                case REQUEST_INTERCEPT:
+                    requestHandlers.add(new BenchRequestInterceptor());
+                    break;
+                case RESPONSE_INTERCEPT:
+                    requestHandlers.add(new BenchResponseInterceptor());
+                    break;
+                case CUSTOM_ENDPOINT:
+                    requestHandlers.add(new BenchEndpoint());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown scenario " + scenario);
+            }
+        }
+
+        broker = new MessageBroker();
+        broker.setObjectMapper(objectMapper);
+        broker.setEventHandlers(eventHandlers);
+        broker.setRequestHandlers(requestHandlers);
+        broker.setShouldTransformPayload(scenario != Scenario.NON_TRANSFORMED);
+        broker.setMetricsEnabled(metricsEnabled);
+        broker.afterSingletonsInstantiated();
+
+        message = objectMapper.writeValueAsString(createMessage(objectMapper));
+        messageBytes = message.getBytes(StandardCharsets.UTF_8);
+
+        // Fail fast rather than measuring an error path
+        broker.handle(messageBytes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        broker.shutdown();
+    }
+
+    @Benchmark
+    public byte[] handleBytes() {
+        return broker.handle(messageBytes);
+    }
+
+    @Benchmark
+    public String handleString() {
+        return broker.handle(message);
+    }
+
+    private ObjectNode createMessage(ObjectMapper objectMapper) {
+        ObjectNode node = objectMapper.createObjectNode();
+        switch (scenario) {
+            case V1_ASYNC:
+                node.put("eventType", "BENCH_EVENT");
+                node.put("eventTime", 1648496000000L);
+                break;
+            case V2_ASYNC:
+                node.put("version", 2);
+                node.put("typeId", 1);
+                node.put("eventName", "commerce:BENCH_EVENT");
+                node.put("eventTime", 1648496000000L);
+                node.put("uuid", "7d5cc3b6-0c52-4a0e-9a54-0ad0f7e1b6a2");
+                node.put("currentUserId", "user-1");
+                break;
+            case V2_SYNC:
+                node.put("version", 2);
+                node.put("typeId", 5);
+                node.put("eventName", "commerce:BENCH_SYNC");
+                node.put("uuid", "7d5cc3b6-0c52-4a0e-9a54-0ad0f7e1b6a2");
+                node.put("currentUserId", "user-1");
+                break;
+            case REQUEST_INTERCEPT:
+            case RESPONSE_INTERCEPT:
+            case CUSTOM_ENDPOINT:
+                node.put("key", "BENCH_INTERCEPT");
+                node.put("typeId", scenario == Scenario.REQUEST_INTERCEPT ? 2
+                        : scenario == Scenario.RESPONSE_INTERCEPT ? 3 : 4);
+                node.put("uuid", "7d5cc3b6-0c52-4a0e-9a54-0ad0f7e1b6a2");
+                node.put("uri", "bench/endpoint");
+                node.put("currentUserId", "user-1");
+                break;
+            case NON_TRANSFORMED:
+                node.put("key", "commerce:BENCH_EVENT");
+                node.put("time", "1679696377");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+        node.set("body", createBody(objectMapper));
+        return node;
+    }
+
+    /**
+     * Builds a cart-like body of roughly {@link #bodySize} bytes, with nested objects, numbers and strings.
+     */
+    private ObjectNode createBody(ObjectMapper objectMapper) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("cartId", "cart-0001");
+        body.put("currency", "USD");
+        ArrayNode items = body.putArray("items");
+        int size = 64;
+        for (int i = 0; size < bodySize; i++) {
+            ObjectNode item = items.addObject();
+            item.put("sku", String.format("SKU-%06d", i));
+            item.put("name", "Subscription product number " + i);
+            item.put("quantity", 1 + i % 5);
+            item.put("price", 9.99 + i);
+            ObjectNode attributes = item.putObject("attributes");
+            attributes.put("term", i % 2 == 0 ? "monthly" : "yearly");
+            attributes.put("trial", i % 3 == 0);
+            size += item.toString().length() + 1;
+        }
+        return body;
+    }
+}
@@ -0,0 +1,43 @@
+package com.arcxp.platform.sdk.benchmarks;
+
+import com.arcxp.platform.sdk.Main;
+import com.arcxp.platform.sdk.bootstrap.ArcStreamHandler;
+import com.arcxp.platform.sdk.broker.MessageBroker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cold start of the Spring Boot entry point with the lightweight {@link ArcStreamHandler} bootstrap.
+ * Every measurement is the first start in a fresh JVM, so class loading is included as it is on a Lambda cold start.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = {"-Dorg.slf4j.simpleLogger.defaultLogLevel=warn", "-DENV=benchmark"})
+public class StartupBenchmark {
+
+    @Benchmark
+    public MessageBroker springBoot() {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .run()) {
+            return context.getBean(MessageBroker.class);
+        }
+    }
+
+    @Benchmark
+    public ArcStreamHandler lightweight() {
+        return new ArcStreamHandler();
+    }
+}
@@ -1,25 +1,27 @@
 package com.arcxp.platform.sdk;
 
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import javax.inject.Inject;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.arcxp.platform.sdk.broker.MessageBroker;
+import com.arcxp.platform.sdk.handlers.InvocationContext;
 import com.arcxp.platform.sdk.http.ArcHttpClient;
+import com.arcxp.platform.sdk.http.AsyncArcHttpClient;
 import com.arcxp.platform.sdk.http.DefaultArcHttpClient;
-import com.datadoghq.datadog_lambda_java.DDLambda;
-import com.datadoghq.datadog_lambda_java.Headerable;
+import com.arcxp.platform.sdk.http.DefaultAsyncArcHttpClient;
+import com.arcxp.platform.sdk.tracing.LambdaTracer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
@@ -41,6 +43,8 @@ public class FunctionConfiguration {
     private static final Logger LOG = LoggerFactory.getLogger(FunctionConfiguration.class);
     @Inject
     private MessageBroker messageBroker;
+    @Inject
+    private LambdaTracer lambdaTracer;
 
     /**
      * Function Handler for Integration Lambda Invoke.
@@ -49,38 +53,37 @@ public class FunctionConfiguration {
      */
     @Profile("!local")
     @Bean
+    @ConditionalOnProperty(name = "arc.function.binary", havingValue = "false", matchIfMissing = true)
     public Function<Message<String>, Message<String>> handler() {
-        return value -> {
-            String keyArn = System.getenv("DD_API_KEY_SECRET_ARN");
- 
-            if (keyArn != null && !keyArn.isEmpty()) {
-                Context context = value.getHeaders().get("aws-context", Context.class);
-
-                Headerable headerPlayload = new Headerable() {
-
-                    @Override
-                    public Map<String, String> getHeaders() {
-                        return value.getHeaders().entrySet().stream()
-                            .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().toString()));
-                    }
+        return value -> new GenericMessage<String>(invoke(value, this.messageBroker::handle));
+    }
 
-                    @Override
-                    public void setHeaders(Map<String, String> headers) {
-                    }
+    /**
+     * Function Handler for Integration Lambda Invoke that keeps the payload as UTF-8 bytes end to end, avoiding
+     * the String copies of the request and response. Enabled with {@code arc.function.binary=true} in place of
+     * {@link #handler()}.
+     *
+     * @return Lambda Response
+     */
+    @Profile("!local")
+    @Bean
+    @ConditionalOnProperty(name = "arc.function.binary", havingValue = "true")
+    public Function<Message<byte[]>, Message<byte[]>> binaryHandler() {
+        return value -> new GenericMessage<byte[]>(invoke(value, this.messageBroker::handle));
+    }
 
-                };
+    private <T> T invoke(Message<T> value, Function<T, T> broker) {
+        MessageHeaders headers = value.getHeaders();
+        Context context = headers.get("aws-context", Context.class);
+        lambdaTracer.begin(context, headers);
 
-                DDLambda ddl = new DDLambda(headerPlayload, context);
-            }
-
-            MessageHeaders headers = value.getHeaders();
-            if (headers != null) {
-                MDC.put("AWSRequestId", headers.get("lambda-runtime-aws-request-id", String.class));
-            }
-            String response = this.messageBroker.handle(value.getPayload());
+        MDC.put("AWSRequestId", headers.get("lambda-runtime-aws-request-id", String.class));
+        try (InvocationContext.Scope scope = InvocationContext.of(context).attach()) {
+            return broker.apply(value.getPayload());
+        } finally {
             MDC.remove("AWSRequestId");
-            return new GenericMessage<String>(response);
-        };
+            lambdaTracer.end();
+        }
     }
 
     /**
@@ -95,7 +98,8 @@ public class FunctionConfiguration {
         final ArcHttpClient arcHttpClient = new DefaultArcHttpClient(env, objectMapper);
         //Warmup
         if (env.getProperty("arc.http.warmup", Boolean.class, Boolean.FALSE)) {
-            Future warmupFuture = Executors.newSingleThreadExecutor().submit(() -> {
+            ExecutorService warmupExecutor = Executors.newSingleThreadExecutor();
+            Future warmupFuture = warmupExecutor.submit(() -> {
                 try {
                     arcHttpClient.get("/sales/api/v1/swagger.json", null);
                 } catch (Exception e) {
@@ -107,10 +111,24 @@ public class FunctionConfiguration {
                 warmupFuture.get(20, TimeUnit.SECONDS);
             } catch (InterruptedException | ExecutionException | TimeoutException e) {
                 LOG.warn("Arc HTTP Warmup Timed out", e);
+            } finally {
+                warmupExecutor.shutdownNow();
             }
         }
 
         return arcHttpClient;
     }
 
+    /**
+     * Non-blocking Arc Commerce Http Client, started by its first request.
+     *
+     * @param objectMapper ObjectMapper for Serialization
+     * @param env          The Environment
+     * @return Non-blocking Arc Commerce Http Client
+     */
+    @Bean
+    public AsyncArcHttpClient asyncArcHttpClient(ObjectMapper objectMapper, Environment env) {
+        return new DefaultAsyncArcHttpClient(env, objectMapper);
+    }
+
 }
@@ -0,0 +1,101 @@
+package com.arcxp.platform.sdk;
+
+import com.arcxp.platform.sdk.annotations.HandlerIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.annotation.AnnotatedGenericBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.ResourceLoaderAware;
+import org.springframework.context.annotation.AnnotatedBeanDefinitionReader;
+import org.springframework.context.annotation.AnnotationBeanNameGenerator;
+import org.springframework.context.annotation.ClassPathBeanDefinitionScanner;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.Set;
+
+/**
+ * Registers the handlers and components of the {@code basePackage} of the application. Each package is looked up
+ * on its own: when the compile time {@link HandlerIndex} covers it, the indexed classes are registered directly and
+ * the classpath is not scanned; otherwise the package is scanned for components as before. Either way, classes whose
+ * {@code @Profile} or {@code @Conditional} does not match are skipped.
+ */
+public class HandlerIndexRegistrar implements ImportBeanDefinitionRegistrar, EnvironmentAware, ResourceLoaderAware,
+        BeanClassLoaderAware {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HandlerIndexRegistrar.class);
+
+    private static final String BASE_PACKAGE_PROPERTY = "basePackage";
+
+    private Environment environment;
+
+    private ResourceLoader resourceLoader;
+
+    private ClassLoader classLoader;
+
+    @Override
+    public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        String[] basePackages = StringUtils.tokenizeToStringArray(
+                this.environment.getProperty(BASE_PACKAGE_PROPERTY, ""), ",; \t\n");
+        if (basePackages.length == 0) {
+            return;
+        }
+
+        ClassPathBeanDefinitionScanner scanner = null;
+        // Evaluates @Profile and @Conditional the way the scanner does, and applies the scope and common annotations
+        AnnotatedBeanDefinitionReader reader = new AnnotatedBeanDefinitionReader(registry, this.environment);
+        for (String basePackage : basePackages) {
+            Set<String> indexed = HandlerIndex.indexedClasses(this.classLoader, basePackage);
+            if (indexed == null) {
+                LOG.info("No handler index covers {}, scanning the classpath", basePackage);
+                if (scanner == null) {
+                    scanner = new ClassPathBeanDefinitionScanner(registry, true, this.environment,
+                            this.resourceLoader);
+                }
+                scanner.scan(basePackage);
+                continue;
+            }
+            int registered = 0;
+            for (String className : indexed) {
+                Class<?> type;
+                try {
+                    type = ClassUtils.forName(className, this.classLoader);
+                } catch (ClassNotFoundException | LinkageError e) {
+                    throw new IllegalStateException("Unable to load indexed handler " + className
+                            + ", rebuild the application to refresh the handler index", e);
+                }
+                String beanName = AnnotationBeanNameGenerator.INSTANCE.generateBeanName(
+                        new AnnotatedGenericBeanDefinition(type), registry);
+                if (!registry.containsBeanDefinition(beanName)) {
+                    reader.registerBean(type, beanName);
+                    if (registry.containsBeanDefinition(beanName)) {
+                        registered++;
+                    }
+                }
+            }
+            LOG.info("Registered {} of {} indexed handlers and components for {}", registered, indexed.size(),
+                    basePackage);
+        }
+    }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void setResourceLoader(ResourceLoader resourceLoader) {
+        this.resourceLoader = resourceLoader;
+    }
+
+    @Override
+    public void setBeanClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+}
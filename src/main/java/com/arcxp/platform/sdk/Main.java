@@ -6,13 +6,16 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
 
 
 /**
- * Spring Boot main entry pont class.
+ * Spring Boot main entry pont class. The handlers of the {@code basePackage} are registered from the compile time
+ * handler index when there is one, see {@link HandlerIndexRegistrar}.
  */
 @SpringBootApplication
-@ComponentScan(basePackages = {"com.arcxp.platform.sdk", "${basePackage}"})
+@ComponentScan(basePackages = {"com.arcxp.platform.sdk"})
+@Import(HandlerIndexRegistrar.class)
 public class Main {
     public static void main(String[] args) {
         String envName = System.getenv("ENV") != null ? System.getenv("ENV") : "local";
@@ -0,0 +1,18 @@
+package com.arcxp.platform.sdk.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Annotation used to define a handler method that is invoked while the function is primed, before a SnapStart or
+ * CRaC snapshot is taken or on startup. The method takes no arguments and should exercise the code paths of the
+ * handler, for example by binding a sample body, without side effects outside the function.
+ */
+
+@Target({ElementType.METHOD})
+@Retention(RUNTIME)
+public @interface ArcWarmup {
+}
@@ -0,0 +1,90 @@
+package com.arcxp.platform.sdk.annotations;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the handlers and components of an application, generated at compile time by
+ * {@link com.arcxp.platform.sdk.annotations.processing.HandlerIndexProcessor} into {@value #LOCATION}, one binary class
+ * name per line. Every classpath root compiled with the processor, such as the classes and test classes of a build,
+ * has its own index, and the indexes of all roots are read together.
+ *
+ * <p>An index is only used for a package when every classpath root that contains the package has one, so that the
+ * handlers of a root compiled without the processor are still found by scanning the package.</p>
+ */
+public final class HandlerIndex {
+
+    /**
+     * The location of the index in a classpath root.
+     */
+    public static final String LOCATION = "META-INF/arc-handlers.index";
+
+    private HandlerIndex() {
+    }
+
+    /**
+     * The indexed classes of a package, across every index visible to the class loader.
+     *
+     * @param classLoader The class loader the indexes are loaded from
+     * @param basePackage A package of the application
+     * @return The binary names of the indexed classes of the package, in index order, or null when a classpath root
+     *         that contains the package has no index, and the package has to be scanned
+     */
+    public static Set<String> indexedClasses(ClassLoader classLoader, String basePackage) {
+        try {
+            Map<String, URL> indexes = new HashMap<>();
+            Enumeration<URL> resources = classLoader.getResources(LOCATION);
+            while (resources.hasMoreElements()) {
+                URL index = resources.nextElement();
+                indexes.put(root(index.toString(), LOCATION), index);
+            }
+            if (indexes.isEmpty()) {
+                return null;
+            }
+
+            String path = basePackage.replace('.', '/');
+            Set<String> classNames = new LinkedHashSet<>();
+            Enumeration<URL> roots = classLoader.getResources(path);
+            boolean found = false;
+            while (roots.hasMoreElements()) {
+                URL index = indexes.get(root(roots.nextElement().toString(), path));
+                if (index == null) {
+                    return null;
+                }
+                found = true;
+                read(index, basePackage + ".", classNames);
+            }
+            return found ? classNames : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the handler index of " + basePackage, e);
+        }
+    }
+
+    private static String root(String url, String path) {
+        String root = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        return root.endsWith(path) ? root.substring(0, root.length() - path.length()) : root;
+    }
+
+    private static void read(URL index, String prefix, Set<String> classNames) throws IOException {
+        try (InputStream in = index.openStream();
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith(prefix)) {
+                    classNames.add(line);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.arcxp.platform.sdk.annotations.processing;
+
+import com.arcxp.platform.sdk.annotations.ArcAsyncEvent;
+import com.arcxp.platform.sdk.annotations.ArcEndpoint;
+import com.arcxp.platform.sdk.annotations.ArcEvent;
+import com.arcxp.platform.sdk.annotations.ArcRequestIntercept;
+import com.arcxp.platform.sdk.annotations.ArcResponseIntercept;
+import com.arcxp.platform.sdk.annotations.ArcSyncEvent;
+import com.arcxp.platform.sdk.annotations.HandlerIndex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates the {@link HandlerIndex} of the handlers and Spring components of a compilation, so that applications
+ * start without scanning the classpath. Handlers are the classes annotated with {@link ArcAsyncEvent},
+ * {@link ArcEvent}, {@link ArcSyncEvent}, {@link ArcEndpoint}, {@link ArcRequestIntercept} or
+ * {@link ArcResponseIntercept}. Other classes annotated with a {@code @Component} stereotype are indexed too, so
+ * that the beans handlers depend on are registered. Only the class names are indexed: the message broker reads the
+ * routes from the annotations of the handlers it is given.
+ *
+ * <p>The index is written to {@value HandlerIndex#LOCATION} in the class output. As an incremental build only
+ * compiles some of the classes, the index is merged with the one of the previous build: the entries of the classes
+ * that were not compiled again are kept as long as the classes still exist.</p>
+ */
+@SupportedAnnotationTypes("*")
+public class HandlerIndexProcessor extends AbstractProcessor {
+
+    private static final Set<String> COMPONENT_ANNOTATIONS = new HashSet<>(Arrays.asList(
+            "org.springframework.stereotype.Component", "javax.inject.Named", "javax.annotation.ManagedBean"));
+
+    private static final List<Class<? extends Annotation>> HANDLER_ANNOTATIONS = Arrays.asList(ArcAsyncEvent.class,
+            ArcEvent.class, ArcSyncEvent.class, ArcEndpoint.class, ArcRequestIntercept.class,
+            ArcResponseIntercept.class);
+
+    private final Set<String> indexedClasses = new LinkedHashSet<>();
+
+    private final Set<String> compiledClasses = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element);
+        }
+        return false;
+    }
+
+    private void collect(Element element) {
+        if (!(element instanceof TypeElement)) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        compiledClasses.add(className);
+        if (type.getKind() == ElementKind.CLASS && isInstantiable(type)
+                && (isHandler(type) || isComponent(type, new HashSet<>()))) {
+            indexedClasses.add(className);
+        }
+        for (Element enclosed : type.getEnclosedElements()) {
+            collect(enclosed);
+        }
+    }
+
+    private static boolean isInstantiable(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        return type.getNestingKind() == NestingKind.TOP_LEVEL
+                || (type.getNestingKind() == NestingKind.MEMBER && type.getModifiers().contains(Modifier.STATIC));
+    }
+
+    private static boolean isHandler(TypeElement type) {
+        for (Class<? extends Annotation> annotation : HANDLER_ANNOTATIONS) {
+            if (type.getAnnotation(annotation) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the element is annotated with a component stereotype, directly or through its meta-annotations.
+     */
+    private static boolean isComponent(Element element, Set<String> visited) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            String name = annotation.getQualifiedName().toString();
+            if (COMPONENT_ANNOTATIONS.contains(name)) {
+                return true;
+            }
+            if (!name.startsWith("java.lang.annotation.") && visited.add(name) && isComponent(annotation, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        if (compiledClasses.isEmpty()) {
+            return;
+        }
+        Set<String> entries = new LinkedHashSet<>();
+        for (String className : readPreviousIndex()) {
+            if (!compiledClasses.contains(className)
+                    && processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) != null) {
+                entries.add(className);
+            }
+        }
+        entries.addAll(indexedClasses);
+        try {
+            // Written even when empty, so that the classpath root counts as indexed
+            FileObject file = processingEnv.getFiler()
+                    .createResource(StandardLocation.CLASS_OUTPUT, "", HandlerIndex.LOCATION);
+            try (Writer writer = file.openWriter()) {
+                writer.write("# Generated by " + HandlerIndexProcessor.class.getName() + ". Do not edit.\n");
+                for (String className : entries) {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to write handler index " + HandlerIndex.LOCATION + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The entries of the index of the previous build, if there is one in the class output.
+     */
+    private Set<String> readPreviousIndex() {
+        Set<String> entries = new LinkedHashSet<>();
+        try {
+            FileObject file = processingEnv.getFiler()
+                    .getResource(StandardLocation.CLASS_OUTPUT, "", HandlerIndex.LOCATION);
+            try (InputStream in = file.openInputStream();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        entries.add(line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // No previous index, as on a clean build
+        }
+        return entries;
+    }
+}
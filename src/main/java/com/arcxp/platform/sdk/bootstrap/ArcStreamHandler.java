@@ -0,0 +1,151 @@
+package com.arcxp.platform.sdk.bootstrap;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.arcxp.platform.sdk.annotations.HandlerIndex;
+import com.arcxp.platform.sdk.broker.MessageBroker;
+import com.arcxp.platform.sdk.email.sendgrid.SendGridEmailService;
+import com.arcxp.platform.sdk.handlers.InvocationContext;
+import com.arcxp.platform.sdk.http.DefaultArcHttpClient;
+import com.arcxp.platform.sdk.http.DefaultAsyncArcHttpClient;
+import com.arcxp.platform.sdk.metrics.MetricsRecorder;
+import com.arcxp.platform.sdk.tracing.LambdaTracer;
+import com.arcxp.platform.sdk.utils.MapUtils;
+import com.arcxp.platform.sdk.warmup.WarmupLifecycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lambda entry point that runs the SDK without Spring Boot. The {@link MessageBroker}, HTTP client, email service
+ * and the handlers of the function are wired by a {@link LightweightContainer}, which avoids starting an application
+ * context on a cold start. Point the Lambda handler at {@code com.arcxp.platform.sdk.bootstrap.ArcStreamHandler}.
+ *
+ * <p>Handlers are the classes returned by {@link #handlerClasses()}, or listed in the {@code arc.bootstrap.handlers}
+ * property, or else the classes of {@code basePackage} in the compile time {@link HandlerIndex}. A package that no
+ * index covers is scanned. Configuration is read from the same property files as the Spring entry point.</p>
+ */
+public class ArcStreamHandler implements RequestStreamHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArcStreamHandler.class);
+
+    private final LightweightContainer container;
+
+    private final MessageBroker messageBroker;
+
+    private final LambdaTracer lambdaTracer;
+
+    public ArcStreamHandler() {
+        long start = System.nanoTime();
+        ConfigurableEnvironment environment = LightweightContainer.createEnvironment();
+        this.container = new LightweightContainer(environment);
+        container.registerSingleton(MapUtils.createObjectMapper());
+        container.register(DefaultArcHttpClient.class);
+        container.register(DefaultAsyncArcHttpClient.class);
+        container.register(SendGridEmailService.class);
+        container.register(MetricsRecorder.class);
+        container.register(LambdaTracer.class);
+        container.register(MessageBroker.class);
+        container.register(WarmupLifecycle.class);
+        List<Class<?>> handlers = resolveHandlerClasses(environment);
+        for (Class<?> handler : handlers) {
+            container.register(handler);
+        }
+        container.start();
+        this.messageBroker = container.getBean(MessageBroker.class);
+        this.lambdaTracer = container.getBean(LambdaTracer.class);
+        LOG.info("Started lightweight function with {} handlers and components in {} ms", handlers.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * The handler and component classes of the function. Override to register them explicitly, which skips the
+     * handler index and classpath scanning altogether.
+     *
+     * @return The classes to register, empty to discover them
+     */
+    protected List<Class<?>> handlerClasses() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        lambdaTracer.begin(context, null);
+        if (context != null) {
+            MDC.put("AWSRequestId", context.getAwsRequestId());
+        }
+        try (InvocationContext.Scope scope = InvocationContext.of(context).attach()) {
+            messageBroker.handle(input, output);
+        } finally {
+            MDC.remove("AWSRequestId");
+            lambdaTracer.end();
+        }
+    }
+
+    /**
+     * The container of the function, to look up beans.
+     *
+     * @return The container
+     */
+    protected LightweightContainer getContainer() {
+        return container;
+    }
+
+    private List<Class<?>> resolveHandlerClasses(ConfigurableEnvironment environment) {
+        List<Class<?>> explicit = handlerClasses();
+        if (!explicit.isEmpty()) {
+            return explicit;
+        }
+        ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+        Set<String> classNames = new LinkedHashSet<>(StringUtils.commaDelimitedListToSet(
+                environment.getProperty("arc.bootstrap.handlers", "")));
+        classNames.remove("");
+        if (classNames.isEmpty()) {
+            String[] basePackages = StringUtils.tokenizeToStringArray(environment.getProperty("basePackage", ""),
+                    ",; \t\n");
+            if (basePackages.length == 0) {
+                LOG.warn("No handlers configured, the function will not handle any message: set basePackage or "
+                        + "arc.bootstrap.handlers, or override handlerClasses()");
+            }
+            ClassPathScanningCandidateComponentProvider scanner = null;
+            for (String basePackage : basePackages) {
+                Set<String> indexed = HandlerIndex.indexedClasses(classLoader, basePackage);
+                if (indexed != null) {
+                    classNames.addAll(indexed);
+                    continue;
+                }
+                LOG.warn("No handler index covers {}, scanning the classpath", basePackage);
+                if (scanner == null) {
+                    scanner = new ClassPathScanningCandidateComponentProvider(true, environment);
+                }
+                for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                    classNames.add(candidate.getBeanClassName());
+                }
+            }
+        }
+        List<Class<?>> classes = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            try {
+                classes.add(ClassUtils.forName(className.trim(), classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new IllegalStateException("Unable to load handler " + className, e);
+            }
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,501 @@
+package com.arcxp.platform.sdk.bootstrap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.Profiles;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.ResourcePropertySource;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+/**
+ * Minimal dependency injection container used by {@link ArcStreamHandler} in place of a Spring application context.
+ * It understands the subset of Spring used by the SDK and by typical handlers, so that {@code @Component} handler
+ * classes run unchanged:
+ * <ul>
+ *     <li>constructor, field and method injection with {@code @Autowired} or {@code @Inject}, by type, including
+ *     {@code List}, {@code Optional} and {@code ObjectProvider} injection points and {@code @Primary} beans</li>
+ *     <li>{@code @Value} placeholders resolved against the environment</li>
+ *     <li>{@code @Bean} methods, {@code @Profile}, {@code @PostConstruct}, {@code @PreDestroy},
+ *     {@link InitializingBean}, {@link DisposableBean}, {@link EnvironmentAware} and
+ *     {@link SmartInitializingSingleton}</li>
+ * </ul>
+ * Qualifiers, conditions, scopes other than singleton, SpEL and proxies (AOP, {@code @Configuration} inter-bean
+ * calls) are not supported. Field and method injection cycles are resolved with early references like Spring does;
+ * constructor cycles fail.
+ */
+public final class LightweightContainer implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LightweightContainer.class);
+
+    private final ConfigurableEnvironment environment;
+
+    private final List<Definition> definitions = new ArrayList<>();
+
+    private final List<Object> created = new ArrayList<>();
+
+    public LightweightContainer(ConfigurableEnvironment environment) {
+        this.environment = environment;
+        registerSingleton(environment);
+    }
+
+    /**
+     * Creates the environment of a function the way the Spring entry point does: system properties and
+     * environment variables, then {@code application-${ENV}.properties}, {@code application.properties} and
+     * {@code secret-${ENV}.properties} from the classpath. {@code ENV} defaults to {@code local} and is the active
+     * profile.
+     *
+     * @return The environment
+     */
+    public static ConfigurableEnvironment createEnvironment() {
+        StandardEnvironment environment = new StandardEnvironment();
+        String envName = environment.getProperty("ENV", "local");
+        environment.setActiveProfiles(envName);
+        MutablePropertySources sources = environment.getPropertySources();
+        addProperties(sources, "application-" + envName + ".properties");
+        addProperties(sources, "application.properties");
+        addProperties(sources, "secret-" + envName + ".properties");
+        return environment;
+    }
+
+    private static void addProperties(MutablePropertySources sources, String resource) {
+        ClassPathResource properties = new ClassPathResource(resource);
+        if (properties.exists()) {
+            try {
+                sources.addLast(new ResourcePropertySource(properties));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read " + resource, e);
+            }
+        }
+    }
+
+    public ConfigurableEnvironment getEnvironment() {
+        return environment;
+    }
+
+    /**
+     * Registers an existing object as a bean.
+     *
+     * @param instance The bean
+     */
+    public void registerSingleton(Object instance) {
+        Definition definition = new Definition(instance.getClass(), null, null, false);
+        definition.instance = instance;
+        definitions.add(definition);
+    }
+
+    /**
+     * Registers a component class, and the beans declared by its {@code @Bean} methods. Classes whose
+     * {@code @Profile} is not active are skipped.
+     *
+     * @param type The component class
+     */
+    public void register(Class<?> type) {
+        if (!isActive(type)) {
+            return;
+        }
+        Definition component = new Definition(type, null, null, isPrimary(type));
+        definitions.add(component);
+        ReflectionUtils.doWithMethods(type, method -> {
+            if (isActive(method)) {
+                definitions.add(new Definition(method.getReturnType(), component, method, isPrimary(method)));
+            }
+        }, method -> AnnotationUtils.findAnnotation(method, Bean.class) != null);
+    }
+
+    /**
+     * Creates every registered bean, then notifies the {@link SmartInitializingSingleton} beans.
+     */
+    public void start() {
+        for (Definition definition : new ArrayList<>(definitions)) {
+            instance(definition);
+        }
+        for (Object bean : new ArrayList<>(created)) {
+            if (bean instanceof SmartInitializingSingleton) {
+                ((SmartInitializingSingleton) bean).afterSingletonsInstantiated();
+            }
+        }
+    }
+
+    /**
+     * The only bean of a type, or its {@code @Primary} bean.
+     *
+     * @param type The bean type
+     * @param <T>  The bean type
+     * @return The bean
+     * @throws IllegalStateException If there is no such bean, or several without a primary one
+     */
+    public <T> T getBean(Class<T> type) {
+        T bean = findBean(type);
+        if (bean == null) {
+            throw new IllegalStateException("No bean of type " + type.getName());
+        }
+        return bean;
+    }
+
+    /**
+     * Every bean of a type, in registration order.
+     *
+     * @param type The bean type
+     * @param <T>  The bean type
+     * @return The beans
+     */
+    public <T> List<T> getBeans(Class<T> type) {
+        List<T> beans = new ArrayList<>();
+        for (Definition definition : candidates(type)) {
+            beans.add(type.cast(instance(definition)));
+        }
+        return beans;
+    }
+
+    /**
+     * Destroys the beans in reverse creation order.
+     */
+    @Override
+    public void close() {
+        for (int i = created.size() - 1; i >= 0; i--) {
+            Object bean = created.get(i);
+            for (Method method : lifecycleMethods(bean.getClass(), PreDestroy.class)) {
+                try {
+                    invoke(bean, method);
+                } catch (RuntimeException e) {
+                    LOG.warn("Error destroying " + bean.getClass().getName(), e);
+                }
+            }
+            if (bean instanceof DisposableBean) {
+                try {
+                    ((DisposableBean) bean).destroy();
+                } catch (Exception e) {
+                    LOG.warn("Error destroying " + bean.getClass().getName(), e);
+                }
+            }
+        }
+        created.clear();
+    }
+
+    private <T> T findBean(Class<T> type) {
+        List<Definition> candidates = candidates(type);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        Definition selected = candidates.get(0);
+        if (candidates.size() > 1) {
+            selected = null;
+            for (Definition candidate : candidates) {
+                if (candidate.primary) {
+                    if (selected != null) {
+                        throw new IllegalStateException("More than one primary bean of type " + type.getName());
+                    }
+                    selected = candidate;
+                }
+            }
+            if (selected == null) {
+                throw new IllegalStateException("Expected a single bean of type " + type.getName() + " but found "
+                        + candidates.size());
+            }
+        }
+        return type.cast(instance(selected));
+    }
+
+    private List<Definition> candidates(Class<?> type) {
+        Class<?> boxed = ClassUtils.resolvePrimitiveIfNecessary(type);
+        List<Definition> candidates = new ArrayList<>();
+        for (Definition definition : definitions) {
+            if (boxed.isAssignableFrom(definition.type)
+                    || (definition.instance != null && boxed.isInstance(definition.instance))) {
+                candidates.add(definition);
+            }
+        }
+        return candidates;
+    }
+
+    private Object instance(Definition definition) {
+        if (definition.instance != null) {
+            return definition.instance;
+        }
+        if (definition.creating) {
+            if (definition.early != null) {
+                return definition.early;
+            }
+            throw new IllegalStateException("Circular dependency on " + definition.type.getName());
+        }
+        definition.creating = true;
+        try {
+            Object bean;
+            if (definition.factoryMethod == null) {
+                Constructor<?> constructor = constructor(definition.type);
+                ReflectionUtils.makeAccessible(constructor);
+                bean = constructor.newInstance(arguments(constructor));
+                definition.early = bean;
+            } else {
+                Method method = definition.factoryMethod;
+                Object owner = Modifier.isStatic(method.getModifiers()) ? null : instance(definition.factory);
+                ReflectionUtils.makeAccessible(method);
+                bean = method.invoke(owner, arguments(method));
+                if (bean == null) {
+                    throw new IllegalStateException("@Bean method " + method + " returned null");
+                }
+            }
+            initialize(bean);
+            definition.instance = bean;
+            created.add(bean);
+            return bean;
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Unable to create " + definition.type.getName(), e.getTargetException());
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to create " + definition.type.getName(), e);
+        } finally {
+            definition.creating = false;
+            definition.early = null;
+        }
+    }
+
+    private void initialize(Object bean) throws InvocationTargetException, IllegalAccessException {
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> type = bean.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            hierarchy.add(0, type);
+        }
+        for (Class<?> type : hierarchy) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && isInjected(field)) {
+                    ReflectionUtils.makeAccessible(field);
+                    field.set(bean, resolve(new InjectionPoint(field)));
+                }
+            }
+            for (Method method : ReflectionUtils.getDeclaredMethods(type)) {
+                if (!Modifier.isStatic(method.getModifiers()) && isInjected(method) && !method.isBridge()
+                        && ClassUtils.getMostSpecificMethod(method, bean.getClass()).equals(method)) {
+                    ReflectionUtils.makeAccessible(method);
+                    method.invoke(bean, arguments(method));
+                }
+            }
+        }
+        if (bean instanceof EnvironmentAware) {
+            ((EnvironmentAware) bean).setEnvironment(environment);
+        }
+        for (Method method : lifecycleMethods(bean.getClass(), PostConstruct.class)) {
+            invoke(bean, method);
+        }
+        if (bean instanceof InitializingBean) {
+            try {
+                ((InitializingBean) bean).afterPropertiesSet();
+            } catch (Exception e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+    }
+
+    private static boolean isInjected(java.lang.reflect.AnnotatedElement element) {
+        return element.isAnnotationPresent(Autowired.class) || element.isAnnotationPresent(Inject.class)
+                || element.isAnnotationPresent(Value.class);
+    }
+
+    private static List<Method> lifecycleMethods(Class<?> type, Class<? extends Annotation> annotation) {
+        List<Method> methods = new ArrayList<>();
+        ReflectionUtils.doWithMethods(type, methods::add,
+                method -> method.isAnnotationPresent(annotation) && method.getParameterCount() == 0);
+        Collections.reverse(methods);
+        return methods;
+    }
+
+    private static void invoke(Object bean, Method method) {
+        ReflectionUtils.makeAccessible(method);
+        ReflectionUtils.invokeMethod(method, bean);
+    }
+
+    private static Constructor<?> constructor(Class<?> type) {
+        Constructor<?>[] constructors = type.getDeclaredConstructors();
+        if (constructors.length == 1) {
+            return constructors[0];
+        }
+        for (Constructor<?> constructor : constructors) {
+            if (constructor.isAnnotationPresent(Autowired.class) || constructor.isAnnotationPresent(Inject.class)) {
+                return constructor;
+            }
+        }
+        try {
+            return type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("No injectable constructor on " + type.getName(), e);
+        }
+    }
+
+    private Object[] arguments(Executable executable) {
+        Object[] arguments = new Object[executable.getParameterCount()];
+        for (int i = 0; i < arguments.length; i++) {
+            InjectionPoint point = new InjectionPoint(MethodParameter.forExecutable(executable, i));
+            if (point.value == null && executable.isAnnotationPresent(Value.class) && arguments.length == 1) {
+                point.value = executable.getAnnotation(Value.class);
+            }
+            arguments[i] = resolve(point);
+        }
+        return arguments;
+    }
+
+    private Object resolve(InjectionPoint point) {
+        Class<?> type = point.type.toClass();
+        if (point.value != null) {
+            String expression = point.value.value();
+            if (expression.startsWith("#{")) {
+                throw new IllegalStateException("SpEL expressions are not supported: " + expression);
+            }
+            String value = environment.resolveRequiredPlaceholders(expression);
+            return environment.getConversionService().convert(value, type);
+        }
+        if (type == List.class || type == Collection.class) {
+            return getBeans(point.type.asCollection().resolveGeneric(0));
+        }
+        if (type == Optional.class) {
+            return Optional.ofNullable(findBean(point.type.resolveGeneric(0)));
+        }
+        if (type == ObjectProvider.class) {
+            return new Provider<>(point.type.resolveGeneric(0));
+        }
+        Object bean = findBean(type);
+        if (bean == null && point.required) {
+            throw new IllegalStateException("No bean of type " + type.getName() + " for " + point.description);
+        }
+        return bean;
+    }
+
+    private boolean isActive(java.lang.reflect.AnnotatedElement element) {
+        Profile profile = AnnotationUtils.findAnnotation(element, Profile.class);
+        return profile == null || environment.acceptsProfiles(Profiles.of(profile.value()));
+    }
+
+    private static boolean isPrimary(java.lang.reflect.AnnotatedElement element) {
+        return AnnotationUtils.findAnnotation(element, Primary.class) != null;
+    }
+
+    /**
+     * A registered bean, created on first use.
+     */
+    private static final class Definition {
+        private final Class<?> type;
+        private final Definition factory;
+        private final Method factoryMethod;
+        private final boolean primary;
+        private Object instance;
+        private Object early;
+        private boolean creating;
+
+        Definition(Class<?> type, Definition factory, Method factoryMethod, boolean primary) {
+            this.type = type;
+            this.factory = factory;
+            this.factoryMethod = factoryMethod;
+            this.primary = primary;
+        }
+    }
+
+    /**
+     * A field or parameter to inject.
+     */
+    private static final class InjectionPoint {
+        private final ResolvableType type;
+        private final boolean required;
+        private final String description;
+        private Value value;
+
+        InjectionPoint(Field field) {
+            this.type = ResolvableType.forField(field);
+            Autowired autowired = field.getAnnotation(Autowired.class);
+            this.required = autowired == null || autowired.required();
+            this.value = field.getAnnotation(Value.class);
+            this.description = field.toString();
+        }
+
+        InjectionPoint(MethodParameter parameter) {
+            this.type = ResolvableType.forMethodParameter(parameter);
+            Autowired autowired = parameter.getExecutable().getAnnotation(Autowired.class);
+            this.required = autowired == null || autowired.required();
+            this.value = parameter.getParameterAnnotation(Value.class);
+            this.description = parameter.toString();
+        }
+    }
+
+    /**
+     * Lazy access to the beans of a type.
+     */
+    private final class Provider<T> implements ObjectProvider<T> {
+        private final Class<T> type;
+
+        @SuppressWarnings("unchecked")
+        Provider(Class<?> type) {
+            this.type = (Class<T>) type;
+        }
+
+        @Override
+        public T getObject() {
+            return getBean(type);
+        }
+
+        @Override
+        public T getObject(Object... args) {
+            throw new UnsupportedOperationException("Beans are created without arguments");
+        }
+
+        @Override
+        public T getIfAvailable() throws BeansException {
+            return findBean(type);
+        }
+
+        @Override
+        public T getIfUnique() throws BeansException {
+            List<Definition> candidates = candidates(type);
+            return candidates.size() == 1 ? type.cast(instance(candidates.get(0))) : null;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return getBeans(type).iterator();
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return getBeans(type).stream();
+        }
+
+        @Override
+        public Stream<T> orderedStream() {
+            return stream();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.arcxp.platform.sdk.broker;
+
+import com.arcxp.platform.sdk.handlers.Payload;
+import com.arcxp.platform.sdk.handlers.async.EventException;
+import com.arcxp.platform.sdk.handlers.sync.RequestError;
+import com.arcxp.platform.sdk.handlers.sync.RequestException;
+import com.arcxp.platform.sdk.handlers.sync.RequestOutPayload;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Response to a batch of events, reporting the outcome of each event in the order it was received.
+ */
+public final class BatchResponse {
+
+    private final List<Result> results;
+
+    BatchResponse(List<Result> results) {
+        this.results = results;
+    }
+
+    /**
+     * The outcome of each event of the batch, in batch order.
+     *
+     * @return The per event results
+     */
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Outcome of a single event of a batch.
+     */
+    public static final class Result {
+        private final int index;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private final String uuid;
+        private final Status status;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private final RequestError error;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private final Payload response;
+
+        private Result(int index, String uuid, Status status, RequestError error, Payload response) {
+            this.index = index;
+            this.uuid = uuid;
+            this.status = status;
+            this.error = error;
+            this.response = response;
+        }
+
+        static Result handled(int index, Payload response) {
+            if (response instanceof RequestOutPayload && ((RequestOutPayload) response).getError() != null) {
+                return new Result(index, response.getUuid(), Status.FAILED, ((RequestOutPayload) response).getError(),
+                        response);
+            }
+            return new Result(index, response.getUuid(), Status.SUCCESS, null, response);
+        }
+
+        static Result failed(int index, String uuid, Throwable cause) {
+            String code = "9999";
+            if (cause instanceof EventException) {
+                code = ((EventException) cause).getCode();
+            } else if (cause instanceof RequestException) {
+                code = ((RequestException) cause).getCode();
+            }
+            return new Result(index, uuid, Status.FAILED, new RequestError(code, cause.getMessage()), null);
+        }
+
+        /**
+         * The position of the event in the batch.
+         *
+         * @return The zero based index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * The UUID of the event, when it could be read.
+         *
+         * @return The event UUID
+         */
+        public String getUuid() {
+            return uuid;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * The error raised while handling the event, if it failed.
+         *
+         * @return The error
+         */
+        public RequestError getError() {
+            return error;
+        }
+
+        /**
+         * The handled payload, as it would have been returned for the event on its own.
+         *
+         * @return The response payload
+         */
+        public Payload getResponse() {
+            return response;
+        }
+    }
+
+    /**
+     * Outcome of a batch event.
+     */
+    public enum Status {
+        SUCCESS,
+        FAILED
+    }
+}
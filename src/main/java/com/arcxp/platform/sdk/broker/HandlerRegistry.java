@@ -0,0 +1,325 @@
+package com.arcxp.platform.sdk.broker;
+
+import com.arcxp.platform.sdk.annotations.ArcAsyncEvent;
+import com.arcxp.platform.sdk.annotations.ArcEndpoint;
+import com.arcxp.platform.sdk.annotations.ArcEvent;
+import com.arcxp.platform.sdk.annotations.ArcRequestIntercept;
+import com.arcxp.platform.sdk.annotations.ArcResponseIntercept;
+import com.arcxp.platform.sdk.annotations.ArcSyncEvent;
+import com.arcxp.platform.sdk.handlers.async.EventHandler;
+import com.arcxp.platform.sdk.handlers.sync.RequestHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable routing table built once from the registered handlers. Annotation values are read a single time and
+ * indexed by type id and normalized (lower case) key, so resolving the handlers of a payload is one hash lookup.
+ * Keys with {@code *} wildcards or {@code {param}} templates are compiled into a {@link RouteTrie}. Sync requests
+ * and custom endpoints go to the most specific route only, so the trie is searched when no key matches exactly; an
+ * async event goes to the handlers of every route it matches, exact or pattern.
+ */
+final class HandlerRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HandlerRegistry.class);
+
+    static final EventHandler[] NO_EVENT_HANDLERS = new EventHandler[0];
+    static final RequestHandler[] NO_REQUEST_HANDLERS = new RequestHandler[0];
+
+    private static final String BEFORE_SUFFIX = "_BEFORE";
+    private static final String AFTER_SUFFIX = "_AFTER";
+
+    private final Routes<EventHandler> asyncEvents;
+    private final Routes<RequestHandler> requestIntercepts;
+    private final Routes<RequestHandler> responseIntercepts;
+    private final Routes<RequestHandler> customEndpoints;
+    private final Routes<RequestHandler> syncEvents;
+
+    private HandlerRegistry(Routes<EventHandler> asyncEvents,
+                            Routes<RequestHandler> requestIntercepts,
+                            Routes<RequestHandler> responseIntercepts,
+                            Routes<RequestHandler> customEndpoints,
+                            Routes<RequestHandler> syncEvents) {
+        this.asyncEvents = asyncEvents;
+        this.requestIntercepts = requestIntercepts;
+        this.responseIntercepts = responseIntercepts;
+        this.customEndpoints = customEndpoints;
+        this.syncEvents = syncEvents;
+    }
+
+    /**
+     * Builds the routing table for the given handlers. Duplicate registrations of a key by the same handler are
+     * collapsed and reported, and synchronous keys claimed by more than one handler are reported as conflicts.
+     *
+     * @param eventHandlers   The asynchronous event handlers, may be null
+     * @param requestHandlers The synchronous request handlers, may be null
+     * @return The routing table
+     */
+    static HandlerRegistry build(List<EventHandler> eventHandlers, List<RequestHandler> requestHandlers) {
+        Map<String, List<EventHandler>> asyncEvents = new LinkedHashMap<>();
+        Map<String, List<RequestHandler>> requestIntercepts = new LinkedHashMap<>();
+        Map<String, List<RequestHandler>> responseIntercepts = new LinkedHashMap<>();
+        Map<String, List<RequestHandler>> customEndpoints = new LinkedHashMap<>();
+        Map<String, List<RequestHandler>> syncEvents = new LinkedHashMap<>();
+
+        if (eventHandlers != null) {
+            for (EventHandler handler : eventHandlers) {
+                Class<?> type = handler.getClass();
+                ArcAsyncEvent annotation = type.getAnnotation(ArcAsyncEvent.class);
+                String[] keys = new String[0];
+                if (annotation == null) {
+                    ArcEvent legacyAnnotation = type.getAnnotation(ArcEvent.class);
+                    if (legacyAnnotation != null) {
+                        keys = legacyAnnotation.value();
+                    }
+                } else {
+                    keys = annotation.value();
+                }
+                for (String key : keys) {
+                    register(asyncEvents, key, handler, "async event");
+                }
+            }
+        }
+
+        if (requestHandlers != null) {
+            for (RequestHandler handler : requestHandlers) {
+                Class<?> type = handler.getClass();
+                ArcSyncEvent syncAnnotation = type.getAnnotation(ArcSyncEvent.class);
+
+                ArcRequestIntercept requestIntercept = type.getAnnotation(ArcRequestIntercept.class);
+                if (requestIntercept != null) {
+                    for (String key : requestIntercept.value()) {
+                        register(requestIntercepts, key, handler, "request intercept");
+                    }
+                } else if (syncAnnotation != null) {
+                    for (String key : syncAnnotation.value()) {
+                        if (endsWithIgnoreCase(key, BEFORE_SUFFIX)) {
+                            register(requestIntercepts, key.substring(0, key.length() - BEFORE_SUFFIX.length()),
+                                    handler, "request intercept");
+                        }
+                    }
+                }
+
+                ArcResponseIntercept responseIntercept = type.getAnnotation(ArcResponseIntercept.class);
+                if (responseIntercept != null) {
+                    for (String key : responseIntercept.value()) {
+                        register(responseIntercepts, key, handler, "response intercept");
+                    }
+                } else if (syncAnnotation != null) {
+                    for (String key : syncAnnotation.value()) {
+                        if (endsWithIgnoreCase(key, AFTER_SUFFIX)) {
+                            register(responseIntercepts, key.substring(0, key.length() - AFTER_SUFFIX.length()),
+                                    handler, "response intercept");
+                        }
+                    }
+                }
+
+                if (syncAnnotation != null) {
+                    for (String key : syncAnnotation.value()) {
+                        register(customEndpoints, key, handler, "custom endpoint");
+                        register(syncEvents, key, handler, "sync event");
+                    }
+                } else {
+                    ArcEndpoint endpoint = type.getAnnotation(ArcEndpoint.class);
+                    if (endpoint != null) {
+                        for (String key : endpoint.value()) {
+                            register(customEndpoints, key, handler, "custom endpoint");
+                        }
+                    }
+                }
+            }
+        }
+
+        reportConflicts(requestIntercepts, "request intercept");
+        reportConflicts(responseIntercepts, "response intercept");
+        reportConflicts(customEndpoints, "custom endpoint");
+        reportConflicts(syncEvents, "sync event");
+
+        return new HandlerRegistry(
+                freeze(asyncEvents, NO_EVENT_HANDLERS),
+                freeze(requestIntercepts, NO_REQUEST_HANDLERS),
+                freeze(responseIntercepts, NO_REQUEST_HANDLERS),
+                freeze(customEndpoints, NO_REQUEST_HANDLERS),
+                freeze(syncEvents, NO_REQUEST_HANDLERS));
+    }
+
+    /**
+     * The event handlers registered for an async event key. Every handler of a matching route is invoked, so that a
+     * handler of {@code commerce:ORDER_*} keeps receiving {@code commerce:ORDER_CREATED} when another handler
+     * registers that key.
+     *
+     * @param key The namespaced event key
+     * @return The handlers of the exact key, then those of the matching patterns from the most specific, each once,
+     *         never null
+     */
+    EventHandler[] eventHandlers(String key) {
+        return asyncEvents.matchAll(key, NO_EVENT_HANDLERS);
+    }
+
+    /**
+     * The request handlers registered for a sync request of the given type.
+     *
+     * @param typeId The payload type id
+     * @param key    The namespaced key, or the namespaced uri for custom endpoints
+     * @return The matching handlers in registration order, never null
+     */
+    RequestHandler[] requestHandlers(int typeId, String key) {
+        RouteTrie.Match<RequestHandler> match = requestRoute(typeId, key);
+        return match == null ? NO_REQUEST_HANDLERS : match.getHandlers();
+    }
+
+    /**
+     * The route of a sync request of the given type, with the parameters bound by a {@code {param}} template.
+     *
+     * @param typeId The payload type id
+     * @param key    The namespaced key, or the namespaced uri for custom endpoints
+     * @return The matching route, or null if no handler matches
+     */
+    RouteTrie.Match<RequestHandler> requestRoute(int typeId, String key) {
+        Routes<RequestHandler> routes;
+        switch (typeId) {
+            case 2:
+                routes = requestIntercepts;
+                break;
+            case 3:
+                routes = responseIntercepts;
+                break;
+            case 4:
+                routes = customEndpoints;
+                break;
+            case 5:
+                routes = syncEvents;
+                break;
+            default:
+                return null;
+        }
+        return routes.match(key);
+    }
+
+    static String normalize(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalizes a registered key, keeping the case of the parameter names of a template.
+     */
+    private static String normalizeRoute(String key) {
+        if (key.indexOf('{') < 0) {
+            return normalize(key);
+        }
+        StringBuilder normalized = new StringBuilder(key.length());
+        boolean inParam = false;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '{') {
+                inParam = true;
+            } else if (c == '}') {
+                inParam = false;
+            }
+            normalized.append(inParam ? c : Character.toLowerCase(c));
+        }
+        return normalized.toString();
+    }
+
+    private static <H> void register(Map<String, List<H>> routes, String key, H handler, String kind) {
+        List<H> handlers = routes.computeIfAbsent(normalizeRoute(key), k -> new ArrayList<>(1));
+        if (handlers.contains(handler)) {
+            LOG.warn("Duplicate {} registration of key {} by handler {}, it will only be invoked once", kind, key,
+                    handler.getClass().getName());
+            return;
+        }
+        handlers.add(handler);
+    }
+
+    private static <H> void reportConflicts(Map<String, List<H>> routes, String kind) {
+        for (Map.Entry<String, List<H>> route : routes.entrySet()) {
+            if (route.getValue().size() > 1) {
+                List<String> names = new ArrayList<>(route.getValue().size());
+                for (H handler : route.getValue()) {
+                    names.add(handler.getClass().getName());
+                }
+                LOG.warn("Conflicting {} registrations for key {}: {} will all be invoked in order", kind,
+                        route.getKey(), names);
+            }
+        }
+    }
+
+    private static <H> Routes<H> freeze(Map<String, List<H>> routes, H[] empty) {
+        Map<String, RouteTrie.Match<H>> exact = new HashMap<>(Math.max(16, routes.size() * 2));
+        Map<String, H[]> patterns = new LinkedHashMap<>();
+        for (Map.Entry<String, List<H>> route : routes.entrySet()) {
+            H[] handlers = route.getValue().toArray(empty);
+            if (RouteTrie.isPattern(route.getKey())) {
+                patterns.put(route.getKey(), handlers);
+            } else {
+                exact.put(route.getKey(), new RouteTrie.Match<>(handlers, null, Collections.emptyMap()));
+            }
+        }
+        return new Routes<>(Collections.unmodifiableMap(exact), RouteTrie.compile(patterns));
+    }
+
+    private static boolean endsWithIgnoreCase(String value, String suffix) {
+        return value.regionMatches(true, value.length() - suffix.length(), suffix, 0, suffix.length());
+    }
+
+    /**
+     * The routes of one kind of handler: the exact keys, and the trie of the patterns if any were registered.
+     */
+    private static final class Routes<H> {
+        private final Map<String, RouteTrie.Match<H>> exact;
+        private final RouteTrie<H> patterns;
+
+        Routes(Map<String, RouteTrie.Match<H>> exact, RouteTrie<H> patterns) {
+            this.exact = exact;
+            this.patterns = patterns;
+        }
+
+        RouteTrie.Match<H> match(String key) {
+            if (key == null) {
+                return null;
+            }
+            RouteTrie.Match<H> match = exact.get(normalize(key));
+            if (match != null) {
+                return match;
+            }
+            return patterns == null ? null : patterns.match(key);
+        }
+
+        H[] matchAll(String key, H[] empty) {
+            if (key == null) {
+                return empty;
+            }
+            RouteTrie.Match<H> match = exact.get(normalize(key));
+            if (patterns == null) {
+                return match == null ? empty : match.getHandlers();
+            }
+            List<H[]> matches = new ArrayList<>(2);
+            if (match != null) {
+                matches.add(match.getHandlers());
+            }
+            patterns.matchAll(key, matches);
+            if (matches.isEmpty()) {
+                return empty;
+            }
+            if (matches.size() == 1) {
+                return matches.get(0);
+            }
+            List<H> handlers = new ArrayList<>();
+            for (H[] route : matches) {
+                for (H handler : route) {
+                    if (!handlers.contains(handler)) {
+                        handlers.add(handler);
+                    }
+                }
+            }
+            return handlers.toArray(empty);
+        }
+    }
+}
@@ -1,41 +1,76 @@
 package com.arcxp.platform.sdk.broker;
 
-import com.arcxp.platform.sdk.annotations.ArcAsyncEvent;
-import com.arcxp.platform.sdk.annotations.ArcEndpoint;
-import com.arcxp.platform.sdk.annotations.ArcEvent;
-import com.arcxp.platform.sdk.annotations.ArcRequestIntercept;
-import com.arcxp.platform.sdk.annotations.ArcResponseIntercept;
-import com.arcxp.platform.sdk.annotations.ArcSyncEvent;
+import com.arcxp.platform.sdk.broker.dedup.DedupStore;
+import com.arcxp.platform.sdk.broker.dedup.InMemoryDedupStore;
+import com.arcxp.platform.sdk.handlers.InvocationContext;
 import com.arcxp.platform.sdk.handlers.Payload;
+import com.arcxp.platform.sdk.handlers.PayloadBodyReaders;
+import com.arcxp.platform.sdk.handlers.async.EventException;
 import com.arcxp.platform.sdk.handlers.async.EventHandler;
 import com.arcxp.platform.sdk.handlers.async.EventPayload;
+import com.arcxp.platform.sdk.handlers.async.TypedEventHandler;
+import com.arcxp.platform.sdk.handlers.sync.RequestError;
 import com.arcxp.platform.sdk.handlers.sync.RequestHandler;
 import com.arcxp.platform.sdk.handlers.sync.RequestOutPayload;
 import com.arcxp.platform.sdk.handlers.sync.RequestPayload;
+import com.arcxp.platform.sdk.handlers.sync.TypedRequestHandler;
+import com.arcxp.platform.sdk.metrics.BrokerMetrics;
+import com.arcxp.platform.sdk.metrics.MetricsRecorder;
+import com.arcxp.platform.sdk.tracing.LambdaTracer;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Broker class that delagates Lambda Payload Requests to the appropriate handlers for each Handler type.
  */
 
 @Component
-public final class MessageBroker {
+public final class MessageBroker implements SmartInitializingSingleton {
 
     private static final Logger LOG = LoggerFactory.getLogger(MessageBroker.class);
     private static final String DEFAULT_NAMESPACE = "commerce:";
 
+    /**
+     * The key of the synthetic messages the function is primed with. Messages with this key, or custom endpoint
+     * calls to {@link #WARMUP_URI}, are parsed and answered like any other, but are never routed to handlers, whatever
+     * wildcards or parameters the handlers register.
+     */
+    public static final String WARMUP_KEY = "arc:WARMUP";
+
+    /**
+     * The custom endpoint uri of the synthetic messages the function is primed with, see {@link #WARMUP_KEY}.
+     */
+    public static final String WARMUP_URI = "arc/warmup";
+
     private boolean shouldTransformPayload = true;
     private boolean shouldPropogateExceptions = false;
 
@@ -48,187 +83,707 @@ public final class MessageBroker {
     @Autowired
     private ObjectMapper objectMapper;
 
+    private volatile HandlerRegistry registry;
+    private volatile PayloadBodyReaders bodyReaders;
+
+    private int maxBatchSize = 100;
+    private BatchOrdering batchOrdering = BatchOrdering.ORDERED;
+    private int batchWorkers = 4;
+    private ExecutorService batchExecutor;
+
+    private boolean parallelEventHandlers = false;
+    private int eventWorkers = 8;
+    private long eventHandlerTimeoutMillis = 30000L;
+    private ExecutorService eventExecutor;
+
+    private boolean dedupEnabled = false;
+    private long dedupTtlMillis = TimeUnit.HOURS.toMillis(1);
+    private int dedupMaxEntries = 10000;
+    private DedupStore dedupStore;
+
+    private boolean deadlineEnabled = false;
+    private long deadlineMarginMillis = 500L;
+    private ExecutorService requestExecutor;
+
+    private final BrokerMetrics metrics = new BrokerMetrics();
+    private boolean metricsEnabled = true;
+    private MetricsRecorder metricsRecorder;
+    private LambdaTracer lambdaTracer;
+
     /**
-     * Broker handler method for handling both async and sync requests.
+     * Broker handler method for handling both async and sync requests. A message that is a JSON array, or an
+     * object with an {@code events} array and no {@code key}, {@code eventName}, {@code eventType} or {@code typeId},
+     * is handled as a batch and answered with a {@link BatchResponse}.
      *
      * @param message Raw Lambda Message Payload
      * @return Handled Response
      */
     public String handle(String message) {
-        Payload payload;
+        byte[] bytes = message == null ? null : message.getBytes(StandardCharsets.UTF_8);
+        try {
+            Object response = dispatch(bytes, 0, bytes == null ? 0 : bytes.length);
+            long start = metricsClock();
+            String result = stringifyResponse(response);
+            recordPhase(BrokerMetrics.Phase.SERIALIZE, start);
+            return result;
+        } finally {
+            flushMetrics();
+        }
+    }
 
+    /**
+     * Broker handler method for handling both async and sync requests from UTF-8 bytes. The message is parsed
+     * without decoding it to a String, and the response is serialized directly to bytes.
+     *
+     * @param message Raw Lambda Message Payload as UTF-8 JSON
+     * @return Handled Response as UTF-8 JSON
+     */
+    public byte[] handle(byte[] message) {
         try {
-            payload = createPayload(message);
-        } catch (Exception exception) {
-            LOG.error(exception.getMessage(), exception);
-            if (shouldPropogateExceptions) {
-                throw new EventPayloadException(exception.getMessage());
+            Object response = dispatch(message, 0, message == null ? 0 : message.length);
+            long start = metricsClock();
+            byte[] result = null;
+            try {
+                result = objectMapper.writeValueAsBytes(response);
+            } catch (JsonProcessingException e) {
+                LOG.error("Unable to serialize", e);
+            }
+            recordPhase(BrokerMetrics.Phase.SERIALIZE, start);
+            return result;
+        } finally {
+            flushMetrics();
+        }
+    }
+
+    /**
+     * Broker handler method for handling both async and sync requests from a stream, writing the response directly
+     * to the output. Neither stream is closed.
+     *
+     * @param input  Raw Lambda Message Payload as UTF-8 JSON
+     * @param output Stream the UTF-8 JSON response is written to
+     * @throws IOException If the message cannot be read or the response cannot be written
+     */
+    public void handle(InputStream input, OutputStream output) throws IOException {
+        MessageBuffer buffer = new MessageBuffer();
+        buffer.readFrom(input);
+        try {
+            Object response = dispatch(buffer.array(), 0, buffer.size());
+            long start = metricsClock();
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                objectMapper.writeValue(generator, response);
+            }
+            recordPhase(BrokerMetrics.Phase.SERIALIZE, start);
+        } finally {
+            flushMetrics();
+        }
+    }
+
+    private Object dispatch(byte[] message, int offset, int length) {
+        PayloadEnvelope envelope;
+        Payload payload = null;
+
+        long start = metricsClock();
+        try {
+            envelope = readEnvelope(message, offset, length);
+            if (envelope.isBatch()) {
+                checkBatchSize(envelope);
             } else {
-                throw new EventPayloadException();
+                payload = createPayload(envelope);
+            }
+        } catch (Exception exception) {
+            throw invalidPayload(exception);
+        }
+        recordPhase(BrokerMetrics.Phase.PARSE, start);
+
+        if (payload == null) {
+            return dispatchBatch(message, envelope);
+        }
+        return dispatch(payload);
+    }
+
+    private Payload dispatch(Payload payload) {
+        int dimensions = enterDimensions(payload, payload.getKey(), null);
+        try {
+            if (payload.getTypeId() == 1 /*Async Event*/) {
+                processPayload(payload);
+            } else if (!processPayloadWithReturn(payload)) {
+                return timedOut((RequestPayload) payload);
             }
+            return processErrors(payload);
+        } finally {
+            restoreDimensions(dimensions);
         }
+    }
 
-        if (payload.getTypeId() == 1 /*Async Event*/) {
-            processPayload(payload);
+    private EventPayloadException invalidPayload(Exception exception) {
+        LOG.error(exception.getMessage(), exception);
+        if (shouldPropogateExceptions) {
+            return new EventPayloadException(exception.getMessage());
         } else {
-            processPayloadWithReturn(payload);
+            return new EventPayloadException();
         }
-        Payload response = processErrors(payload);
+    }
 
-        return stringifyResponse(response);
+    private void checkBatchSize(PayloadEnvelope batch) {
+        if (batch.getEventCount() > maxBatchSize) {
+            throw new EventPayloadException("Batch of " + batch.getEventCount() + " events exceeds the maximum of "
+                    + maxBatchSize);
+        }
     }
 
-    private void processPayload(Payload payload) {
-        if (payload instanceof EventPayload && this.eventHandlers != null) {
-            for (EventHandler currentHandler : this.eventHandlers) {
-                ArcAsyncEvent annotation = currentHandler.getClass().getAnnotation(ArcAsyncEvent.class);
-                String[] vals = new String[0];
-                if (annotation == null) {
-                    ArcEvent legacyAnnotation = currentHandler.getClass().getAnnotation(ArcEvent.class);
-                    if (legacyAnnotation != null) {
-                        vals = legacyAnnotation.value();
+    /**
+     * Handles each event of a batch on its own, in order on the calling thread or concurrently on the batch worker
+     * pool. A failing event is reported in its result and does not affect the other events.
+     */
+    private BatchResponse dispatchBatch(byte[] message, PayloadEnvelope batch) {
+        int count = batch.getEventCount();
+        BatchResponse.Result[] results = new BatchResponse.Result[count];
+
+        if (batchOrdering == BatchOrdering.PARALLEL && count > 1) {
+            Map<String, String> context = MDC.getCopyOfContextMap();
+            InvocationContext invocation = InvocationContext.current();
+            List<Future<BatchResponse.Result>> futures = new ArrayList<>(count);
+            ExecutorService executor = batchExecutor();
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                futures.add(executor.submit(() -> {
+                    if (context != null) {
+                        MDC.setContextMap(context);
                     }
-                } else {
-                    vals = annotation.value();
+                    try (InvocationContext.Scope scope = invocation.attach()) {
+                        return dispatchBatchEvent(message, batch, index);
+                    } finally {
+                        MDC.clear();
+                    }
+                }));
+            }
+            for (int i = 0; i < count; i++) {
+                try {
+                    results[i] = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    results[i] = BatchResponse.Result.failed(i, null, e);
+                } catch (ExecutionException e) {
+                    results[i] = BatchResponse.Result.failed(i, null, e.getCause());
                 }
-                for (String key : vals) {
-                    if (payload.getKey().equalsIgnoreCase(key)) {
-                        currentHandler.handle((EventPayload) payload);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                results[i] = dispatchBatchEvent(message, batch, i);
+            }
+        }
+
+        return new BatchResponse(Arrays.asList(results));
+    }
+
+    private BatchResponse.Result dispatchBatchEvent(byte[] message, PayloadEnvelope batch, int index) {
+        String uuid = null;
+        try {
+            long start = metricsClock();
+            PayloadEnvelope envelope = readEnvelope(message, batch.getEventOffset(index), batch.getEventLength(index));
+            if (envelope.isBatch()) {
+                throw new EventPayloadException("Nested batches are not supported");
+            }
+            Payload payload = createPayload(envelope);
+            recordPhase(BrokerMetrics.Phase.PARSE, start);
+            uuid = payload.getUuid();
+            return BatchResponse.Result.handled(index, dispatch(payload));
+        } catch (Exception exception) {
+            LOG.error("Batch event " + index + " failed", exception);
+            return BatchResponse.Result.failed(index, uuid, exception);
+        }
+    }
+
+    private synchronized ExecutorService batchExecutor() {
+        if (batchExecutor == null) {
+            batchExecutor = newWorkerPool("arc-batch-", batchWorkers);
+        }
+        return batchExecutor;
+    }
+
+    private synchronized ExecutorService eventExecutor() {
+        if (eventExecutor == null) {
+            eventExecutor = newWorkerPool("arc-event-", eventWorkers);
+        }
+        return eventExecutor;
+    }
+
+    private synchronized ExecutorService requestExecutor() {
+        if (requestExecutor == null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("arc-request-");
+            threadFactory.setDaemon(true);
+            // Unbounded, as a handler abandoned at the deadline keeps its thread until it returns
+            requestExecutor = Executors.newCachedThreadPool(threadFactory);
+        }
+        return requestExecutor;
+    }
+
+    private static ExecutorService newWorkerPool(String threadNamePrefix, int threads) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    /**
+     * Stops the batch, event handler and request handler worker pools.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+            batchExecutor = null;
+        }
+        if (eventExecutor != null) {
+            eventExecutor.shutdown();
+            eventExecutor = null;
+        }
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+            requestExecutor = null;
+        }
+    }
+
+    private void processPayload(Payload payload) {
+        if (payload instanceof EventPayload) {
+            long start = metricsClock();
+            EventHandler[] handlers = WARMUP_KEY.equals(payload.getKey()) ? HandlerRegistry.NO_EVENT_HANDLERS
+                    : registry().eventHandlers(payload.getKey());
+            recordPhase(BrokerMetrics.Phase.ROUTE, start);
+            if (handlers.length > 0) {
+                trace(payload.getKey());
+            }
+            // Events without a uuid, which get an empty one when passed through untransformed, cannot be deduplicated
+            String uuid = dedupEnabled && handlers.length > 0 && !StringUtils.isBlank(payload.getUuid())
+                    ? payload.getUuid() : null;
+            if (uuid != null && !claimEvent(uuid)) {
+                LOG.info("Skipping duplicate event " + uuid + " for " + payload.getKey());
+                skipHandlers(payload.getKey(), handlers);
+                return;
+            }
+            boolean handled = false;
+            start = metricsClock();
+            try {
+                if (parallelEventHandlers && handlers.length > 1) {
+                    fanOut((EventPayload) payload, handlers);
+                } else {
+                    for (EventHandler currentHandler : handlers) {
+                        invokeEventHandler(currentHandler, (EventPayload) payload);
                     }
                 }
+                handled = true;
+            } finally {
+                recordPhase(BrokerMetrics.Phase.HANDLE, start);
+                if (uuid != null && !handled) {
+                    releaseEvent(uuid);
+                }
+            }
+        }
+
+    }
+
+    private void invokeEventHandler(EventHandler handler, EventPayload payload) {
+        if (!metricsEnabled && !emfEnabled()) {
+            handler.handle(payload);
+            return;
+        }
+        int dimensions = enterDimensions(payload, payload.getKey(), handler);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            handler.handle(payload);
+            failed = false;
+        } finally {
+            recordHandler(payload.getKey(), handler, System.nanoTime() - start, failed);
+            restoreDimensions(dimensions);
+        }
+    }
+
+    /**
+     * Records a handler invocation in the broker metrics, and in the invocation metrics under the dimensions of
+     * the handler.
+     */
+    private void recordHandler(String key, Object handler, long nanos, boolean failed) {
+        if (metricsEnabled) {
+            metrics.handler(key, handler).record(nanos, failed);
+        }
+        if (emfEnabled()) {
+            metricsRecorder.time("HandlerLatency", nanos);
+            if (failed) {
+                metricsRecorder.count("HandlerErrors");
+            }
+        }
+    }
+
+    private boolean emfEnabled() {
+        MetricsRecorder recorder = this.metricsRecorder;
+        return recorder != null && recorder.isEnabled();
+    }
+
+    private int enterDimensions(Payload payload, String key, Object handler) {
+        if (!emfEnabled()) {
+            return -1;
+        }
+        return metricsRecorder.enterDimensions(key, payload.getTypeId(), handler == null ? null : handler.getClass());
+    }
+
+    private void restoreDimensions(int previous) {
+        if (previous >= 0) {
+            metricsRecorder.restoreDimensions(previous);
+        }
+    }
+
+    private void trace(String key) {
+        LambdaTracer tracer = this.lambdaTracer;
+        if (tracer != null) {
+            tracer.trace(key);
+        }
+    }
+
+    private void flushMetrics() {
+        if (emfEnabled()) {
+            metricsRecorder.flush();
+        }
+    }
+
+    private void skipHandlers(String key, Object[] handlers) {
+        if (metricsEnabled) {
+            for (Object handler : handlers) {
+                metrics.handler(key, handler).skip();
+            }
+        }
+    }
+
+    private long metricsClock() {
+        return metricsEnabled ? System.nanoTime() : 0L;
+    }
+
+    private void recordPhase(BrokerMetrics.Phase phase, long start) {
+        if (metricsEnabled) {
+            metrics.recordPhase(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Claims an async event in the dedup store. A store that cannot be reached does not block processing: the
+     * event is handled, as it would be without deduplication.
+     */
+    private boolean claimEvent(String uuid) {
+        try {
+            return dedupStore().markIfAbsent(uuid, dedupTtlMillis);
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to check event " + uuid + " for duplicates", e);
+            return true;
+        }
+    }
+
+    /**
+     * Releases the claim of an async event whose handlers failed, so that its redelivery is handled again. Every
+     * matching handler runs again on redelivery, including those that succeeded.
+     */
+    private void releaseEvent(String uuid) {
+        try {
+            dedupStore().release(uuid);
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to release event " + uuid, e);
+        }
+    }
+
+    private synchronized DedupStore dedupStore() {
+        if (dedupStore == null) {
+            dedupStore = new InMemoryDedupStore(dedupMaxEntries);
+        }
+        return dedupStore;
+    }
+
+    /**
+     * Runs every handler matching an async event concurrently and waits for all of them, up to the event handler
+     * timeout or the invocation deadline, whichever comes first. A failing or timed out handler is logged on its own
+     * and does not stop the others; the first failure is rethrown once all handlers are done, with any further
+     * failures attached as suppressed exceptions.
+     */
+    private void fanOut(EventPayload payload, EventHandler[] handlers) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        InvocationContext invocation = InvocationContext.current();
+        ExecutorService executor = eventExecutor();
+        List<Future<?>> futures = new ArrayList<>(handlers.length);
+        for (EventHandler handler : handlers) {
+            futures.add(executor.submit(() -> {
+                if (context != null) {
+                    MDC.setContextMap(context);
+                }
+                try (InvocationContext.Scope scope = invocation.attach()) {
+                    invokeEventHandler(handler, payload);
+                } finally {
+                    MDC.clear();
+                }
+            }));
+        }
+
+        long timeoutMillis = Math.min(eventHandlerTimeoutMillis, handlerBudgetMillis(invocation));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        RuntimeException failure = null;
+        for (int i = 0; i < handlers.length; i++) {
+            String name = handlers[i].getClass().getSimpleName();
+            RuntimeException cause = null;
+            try {
+                futures.get(i).get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                LOG.error("Handler:" + name + " failed for " + payload.getKey(), e.getCause());
+                cause = asRuntimeException(e.getCause());
+            } catch (TimeoutException e) {
+                futures.get(i).cancel(true);
+                cause = new EventException("TIMEOUT", "Handler:" + name + " did not complete within "
+                        + timeoutMillis + "ms");
+                LOG.error(cause.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.get(i).cancel(true);
+                cause = new EventException("INTERRUPTED", "Interrupted waiting for handler:" + name);
+            }
+            if (cause != null) {
+                if (failure == null) {
+                    failure = cause;
+                } else if (failure != cause) {
+                    failure.addSuppressed(cause);
+                }
             }
         }
+        if (failure != null) {
+            throw failure;
+        }
+    }
 
+    private static RuntimeException asRuntimeException(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        EventException wrapped = new EventException("9999", cause.getMessage());
+        wrapped.initCause(cause);
+        return wrapped;
     }
 
-    private void processPayloadWithReturn(Payload payload) {
-        if (payload instanceof RequestPayload && this.requestHandlers != null) {
+    /**
+     * Runs the handlers of a synchronous request. Within an invocation that has a deadline, the handlers run on a
+     * worker thread and are abandoned when they have not returned shortly before the deadline, so that an error is
+     * still answered to Arc before Lambda stops the function.
+     *
+     * @return False if the handlers were abandoned
+     */
+    private boolean processPayloadWithReturn(Payload payload) {
+        if (payload instanceof RequestPayload) {
             RequestPayload rpl = (RequestPayload) payload;
-            for (RequestHandler requestHandler : this.requestHandlers) {
-                String[] vals = new String[0];
-                String rplKey = rpl.getKey();
-                if (rpl.getTypeId() == 2) {
-                    ArcRequestIntercept legacyAnnotation = requestHandler.getClass()
-                            .getAnnotation(ArcRequestIntercept.class);
-                    if (legacyAnnotation == null) {
-                        ArcSyncEvent annotation = requestHandler.getClass().getAnnotation(ArcSyncEvent.class);
-                        if (annotation != null) {
-                            rplKey = rpl.getKey() + "_BEFORE";
-                            vals = annotation.value();
-                        }
-                    } else {
-                        vals = legacyAnnotation.value();
-                    }
-                } else if (rpl.getTypeId() == 3) {
-                    ArcResponseIntercept legacyAnnotation = requestHandler.getClass()
-                            .getAnnotation(ArcResponseIntercept.class);
-                    if (legacyAnnotation == null) {
-                        ArcSyncEvent annotation = requestHandler.getClass().getAnnotation(ArcSyncEvent.class);
-                        if (annotation != null) {
-                            rplKey = rpl.getKey() + "_AFTER";
-                            vals = annotation.value();
-                        }
-                    } else {
-                        vals = legacyAnnotation.value();
-                    }
-                } else if (rpl.getTypeId() == 4) {
-                    ArcSyncEvent annotation = requestHandler.getClass().getAnnotation(ArcSyncEvent.class);
-                    if (annotation == null) {
-                        ArcEndpoint legacyAnnotation = requestHandler.getClass().getAnnotation(ArcEndpoint.class);
-                        if (legacyAnnotation != null) {
-                            vals = legacyAnnotation.value();
-                        }
-                    } else {
-                        vals = annotation.value();
-                    }
-                    rplKey = addNamespace(rpl.getUri());
-                } else if (rpl.getTypeId() == 5) {
-                    ArcSyncEvent annotation = requestHandler.getClass().getAnnotation(ArcSyncEvent.class);
-                    if (annotation == null) {
-                        continue;
-                    }
-                    vals = annotation.value();
+            String rplKey = rpl.getKey();
+            if (rpl.getTypeId() == 4) {
+                rplKey = rpl.getUri() == null ? null : addNamespace(rpl.getUri());
+            }
+            long start = metricsClock();
+            boolean warmup = rpl.getTypeId() == 4 ? WARMUP_URI.equals(rpl.getUri()) : WARMUP_KEY.equals(rplKey);
+            RouteTrie.Match<RequestHandler> route = warmup ? null : registry().requestRoute(rpl.getTypeId(), rplKey);
+            RequestHandler[] handlers = HandlerRegistry.NO_REQUEST_HANDLERS;
+            if (route != null) {
+                handlers = route.getHandlers();
+                rpl.setPathParams(route.getParams());
+                if (route.getPattern() != null) {
+                    rplKey = route.getPattern();
                 }
-                for (String key : vals) {
-                    if (rplKey.equalsIgnoreCase(key)) {
-                        LOG.info("Handler:" + requestHandler.getClass().getSimpleName() + " URI:" + rpl.getUri());
-                        requestHandler.handleWithReturn(rpl);
-                    }
+            }
+            recordPhase(BrokerMetrics.Phase.ROUTE, start);
+            if (handlers.length > 0) {
+                trace(rplKey);
+            }
+            InvocationContext invocation = InvocationContext.current();
+            start = metricsClock();
+            try {
+                if (deadlineEnabled && invocation.hasDeadline() && handlers.length > 0) {
+                    return runRequestHandlersWithin(rpl, rplKey, handlers, invocation);
                 }
+                runRequestHandlers(rpl, rplKey, handlers);
+            } finally {
+                recordPhase(BrokerMetrics.Phase.HANDLE, start);
             }
         }
+        return true;
+    }
 
+    private void runRequestHandlers(RequestPayload payload, String key, RequestHandler[] handlers) {
+        for (RequestHandler requestHandler : handlers) {
+            LOG.info("Handler:" + requestHandler.getClass().getSimpleName() + " URI:" + payload.getUri());
+            if (!metricsEnabled && !emfEnabled()) {
+                requestHandler.handleWithReturn(payload);
+                continue;
+            }
+            int dimensions = enterDimensions(payload, key, requestHandler);
+            RequestError error = payload.getError();
+            long start = System.nanoTime();
+            try {
+                requestHandler.handleWithReturn(payload);
+            } finally {
+                recordHandler(key, requestHandler, System.nanoTime() - start, payload.getError() != error);
+                restoreDimensions(dimensions);
+            }
+        }
     }
 
-    private Payload createPayload(String message) throws JsonProcessingException {
-        Payload payload = null;
-        ObjectNode requestNode;
+    private boolean runRequestHandlersWithin(RequestPayload payload, String key, RequestHandler[] handlers,
+                                             InvocationContext invocation) {
+        long budgetMillis = handlerBudgetMillis(invocation);
+        if (budgetMillis <= 0L) {
+            LOG.error("No time left to handle " + key);
+            skipHandlers(key, handlers);
+            return false;
+        }
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        Future<?> future = requestExecutor().submit(() -> {
+            if (context != null) {
+                MDC.setContextMap(context);
+            }
+            try (InvocationContext.Scope scope = invocation.attach()) {
+                runRequestHandlers(payload, key, handlers);
+            } finally {
+                MDC.clear();
+            }
+        });
+        try {
+            future.get(budgetMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            LOG.error("Handlers of " + key + " did not complete within " + budgetMillis + "ms");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return false;
+        } catch (ExecutionException e) {
+            throw asRuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * The time handlers may take within an invocation, keeping a margin to answer before the deadline.
+     */
+    private long handlerBudgetMillis(InvocationContext invocation) {
+        if (!deadlineEnabled || !invocation.hasDeadline()) {
+            return Long.MAX_VALUE;
+        }
+        return invocation.getRemainingMillis() - deadlineMarginMillis;
+    }
+
+    /**
+     * The answer to a request whose handlers were abandoned. The body is left out, as an abandoned handler may still
+     * be changing it.
+     */
+    private RequestOutPayload timedOut(RequestPayload payload) {
+        RequestOutPayload out = new RequestOutPayload();
+        out.setUuid(payload.getUuid());
+        out.setError(new RequestError("TIMEOUT", "Request was not handled before the invocation deadline"));
+        out.setCurrentUserId(payload.getCurrentUserId());
+        return out;
+    }
+
+    /**
+     * Builds the handler routing table once all singletons exist, so that the lazily injected handler lists are
+     * resolved and registration problems are reported at startup rather than on the first event.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        registry();
+    }
+
+    private HandlerRegistry registry() {
+        HandlerRegistry current = this.registry;
+        if (current == null) {
+            synchronized (this) {
+                current = this.registry;
+                if (current == null) {
+                    current = HandlerRegistry.build(this.eventHandlers, this.requestHandlers);
+                    prepareTypedHandlers();
+                    this.registry = current;
+                }
+            }
+        }
+        return current;
+    }
 
+    private PayloadEnvelope readEnvelope(byte[] message, int offset, int length) throws IOException {
         try {
-            requestNode = (ObjectNode) objectMapper.readTree(message);
+            return PayloadEnvelope.parse(objectMapper, message, offset, length);
         } catch (JsonProcessingException e) {
             LOG.error("Unable to deserialize incoming message payload", e);
             throw e;
         }
+    }
+
+    private Payload createPayload(PayloadEnvelope envelope) {
+        Payload payload = null;
 
         // We should not transform the payload, and instead pass json directly to handlers. Payload is routed to a
         // handler based on the `key` property.
         if (!shouldTransformPayload) {
-            boolean async = !requestNode.has("typeId") || "1".equals(requestNode.get("typeId").asText());
+            boolean async = envelope.getTypeId() == null || "1".equals(envelope.getTypeId().asText());
             payload = getDefaultPayload(async);
 
-            // Override with values from requestNode
-            overridePayloadWithRequestNode(payload, requestNode);
+            // Override with values from the envelope
+            overridePayloadWithEnvelope(payload, envelope);
 
             return payload;
         }
 
-        if (requestNode.has("version") && requestNode.get("version").asInt() > 1) {
-            int typeId = requestNode.get("typeId").asInt();
+        if (envelope.getVersion() != null && envelope.getVersion().asInt() > 1) {
+            int typeId = envelope.getTypeId().asInt();
             if (typeId == 1 || typeId == 5) {
                 if (typeId == 1) {
                     payload = new EventPayload();
                 } else {
                     payload = new RequestPayload();
                 }
-                payload.setCurrentUserId(requestNode.get("currentUserId").asText());
-                payload.setVersion(requestNode.get("version").asInt());
-                payload.setKey(addNamespace(requestNode.get("eventName").asText()));
+                payload.setCurrentUserId(envelope.getCurrentUserId().asText());
+                payload.setVersion(envelope.getVersion().asInt());
+                payload.setKey(addNamespace(envelope.getEventName().asText()));
                 payload.setTypeId(typeId);
 
                 // optional fields
-                if (requestNode.hasNonNull("eventTime")) {
-                    payload.setTime(new Date(requestNode.get("eventTime").asLong()));
+                if (PayloadEnvelope.hasNonNull(envelope.getEventTime())) {
+                    payload.setTime(new Date(envelope.getEventTime().asLong()));
                 }
-                if (requestNode.hasNonNull("uuid")) {
-                    payload.setUuid(requestNode.get("uuid").asText());
+                if (PayloadEnvelope.hasNonNull(envelope.getUuid())) {
+                    payload.setUuid(envelope.getUuid().asText());
                 }
             }
         } else {
             // Legacy structure
-            if (requestNode.has("eventType")) {
+            if (envelope.getEventType() != null) {
                 payload = new EventPayload();
                 payload.setVersion(1);
-                payload.setKey(addNamespace(requestNode.get("eventType").asText()));
+                payload.setKey(addNamespace(envelope.getEventType().asText()));
                 payload.setTypeId(1);
-                ((EventPayload) payload).setTime(new Date(requestNode.get("eventTime").asLong()));
-            } else if (requestNode.has("key")) {
+                ((EventPayload) payload).setTime(new Date(envelope.getEventTime().asLong()));
+            } else if (envelope.getKey() != null) {
                 payload = new RequestPayload();
                 payload.setVersion(1);
                 RequestPayload rpl = (RequestPayload) payload;
-                rpl.setUuid(requestNode.get("uuid").asText());
-                rpl.setKey(addNamespace(requestNode.get("key").asText()));
-                rpl.setTypeId(requestNode.get("typeId").asInt());
-                rpl.setUri(requestNode.get("uri").asText());
-                rpl.setCurrentUserId(requestNode.get("currentUserId").asText());
+                rpl.setUuid(envelope.getUuid().asText());
+                rpl.setKey(addNamespace(envelope.getKey().asText()));
+                rpl.setTypeId(envelope.getTypeId().asInt());
+                rpl.setUri(envelope.getUri().asText());
+                rpl.setCurrentUserId(envelope.getCurrentUserId().asText());
             }
         }
 
-        payload.setBody((ObjectNode) requestNode.get("body"));
+        if (payload == null) {
+            throw new EventPayloadException("Unsupported message payload structure");
+        }
+        if (envelope.hasBody()) {
+            if (envelope.getRawBody() == null) {
+                throw new EventPayloadException("Message body must be a JSON object");
+            }
+            payload.setRawBody(envelope.getRawBody(), bodyReaders());
+        }
         return payload;
     }
 
-    private String stringifyResponse(Payload out) {
+    private String stringifyResponse(Object out) {
         String result = null;
         try {
             result = objectMapper.writeValueAsString(out);
@@ -266,12 +821,86 @@ public final class MessageBroker {
         return key;
     }
 
-    public void setEventHandlers(List<EventHandler> eventHandlers) {
+    /**
+     * Resolves the body types of typed handlers once, so that bodies are bound with cached readers and writers.
+     */
+    private void prepareTypedHandlers() {
+        if (this.eventHandlers != null) {
+            for (EventHandler handler : this.eventHandlers) {
+                if (handler instanceof TypedEventHandler) {
+                    ((TypedEventHandler<?>) handler).prepare(this.objectMapper);
+                }
+            }
+        }
+        if (this.requestHandlers != null) {
+            for (RequestHandler handler : this.requestHandlers) {
+                if (handler instanceof TypedRequestHandler) {
+                    ((TypedRequestHandler<?, ?>) handler).prepare(this.objectMapper);
+                }
+            }
+        }
+    }
+
+    /**
+     * The latency and error metrics of the broker and its handlers.
+     *
+     * @return The broker metrics
+     */
+    public BrokerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The recorder the latency and errors of handlers are written to in the CloudWatch Embedded Metric Format. It is
+     * flushed at the end of every message.
+     *
+     * @param metricsRecorder The metrics recorder
+     */
+    @Autowired(required = false)
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * The tracer started once a message is routed to a handler.
+     *
+     * @param lambdaTracer The Lambda tracer
+     */
+    @Autowired(required = false)
+    public void setLambdaTracer(LambdaTracer lambdaTracer) {
+        this.lambdaTracer = lambdaTracer;
+    }
+
+    public synchronized void setEventHandlers(List<EventHandler> eventHandlers) {
         this.eventHandlers = eventHandlers;
+        this.registry = null;
     }
 
-    public void setRequestHandlers(List<RequestHandler> requestHandlers) {
+    public synchronized void setRequestHandlers(List<RequestHandler> requestHandlers) {
         this.requestHandlers = requestHandlers;
+        this.registry = null;
+    }
+
+    /**
+     * Growable buffer whose backing array is parsed in place, avoiding the copy made by {@code toByteArray()}.
+     */
+    private static final class MessageBuffer extends ByteArrayOutputStream {
+
+        MessageBuffer() {
+            super(8192);
+        }
+
+        void readFrom(InputStream input) throws IOException {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = input.read(chunk)) != -1) {
+                write(chunk, 0, read);
+            }
+        }
+
+        byte[] array() {
+            return buf;
+        }
     }
 
     public static class Data {
@@ -287,37 +916,204 @@ public final class MessageBroker {
     }
 
     /**
-     * Overrides the properties of a given Payload object with the values present in an ObjectNode.
-     * The method checks for the presence of each expected property within the ObjectNode. If a property
+     * The largest number of events accepted in one batch. Larger batches are rejected as a whole.
+     *
+     * @param maxBatchSize The maximum batch size
+     */
+    @Value("${arc.broker.batch.maxSize:100}")
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Whether the events of a batch are handled one after another or concurrently.
+     *
+     * @param batchOrdering The batch ordering mode
+     */
+    @Value("${arc.broker.batch.ordering:ORDERED}")
+    public void setBatchOrdering(BatchOrdering batchOrdering) {
+        this.batchOrdering = batchOrdering;
+    }
+
+    /**
+     * The number of threads handling batch events in {@link BatchOrdering#PARALLEL} mode.
+     *
+     * @param batchWorkers The batch worker pool size
+     */
+    @Value("${arc.broker.batch.workers:4}")
+    public synchronized void setBatchWorkers(int batchWorkers) {
+        if (batchWorkers < 1) {
+            throw new IllegalArgumentException("Batch workers must be at least 1");
+        }
+        this.batchWorkers = batchWorkers;
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+            batchExecutor = null;
+        }
+    }
+
+    /**
+     * Whether the handlers matching an async event run concurrently instead of one after another.
+     *
+     * @param parallelEventHandlers True to fan async events out to their handlers in parallel
+     */
+    @Value("${arc.broker.async.parallel:false}")
+    public void setParallelEventHandlers(boolean parallelEventHandlers) {
+        this.parallelEventHandlers = parallelEventHandlers;
+    }
+
+    /**
+     * The number of threads running async event handlers in parallel mode.
+     *
+     * @param eventWorkers The event handler pool size
+     */
+    @Value("${arc.broker.async.workers:8}")
+    public synchronized void setEventWorkers(int eventWorkers) {
+        if (eventWorkers < 1) {
+            throw new IllegalArgumentException("Event workers must be at least 1");
+        }
+        this.eventWorkers = eventWorkers;
+        if (eventExecutor != null) {
+            eventExecutor.shutdown();
+            eventExecutor = null;
+        }
+    }
+
+    /**
+     * How long the broker waits for all parallel async event handlers before abandoning the slow ones.
+     *
+     * @param eventHandlerTimeoutMillis The timeout in milliseconds
+     */
+    @Value("${arc.broker.async.timeoutMillis:30000}")
+    public void setEventHandlerTimeoutMillis(long eventHandlerTimeoutMillis) {
+        this.eventHandlerTimeoutMillis = eventHandlerTimeoutMillis;
+    }
+
+    /**
+     * Whether async events whose uuid was already processed are skipped. Arc delivers async events at least once,
+     * so an event can be redelivered after its handlers ran.
+     *
+     * @param dedupEnabled True to skip redelivered async events
+     */
+    @Value("${arc.broker.dedup.enabled:false}")
+    public void setDedupEnabled(boolean dedupEnabled) {
+        this.dedupEnabled = dedupEnabled;
+    }
+
+    /**
+     * How long a processed async event is remembered.
+     *
+     * @param dedupTtlSeconds The time to live in seconds
+     */
+    @Value("${arc.broker.dedup.ttlSeconds:3600}")
+    public void setDedupTtlSeconds(long dedupTtlSeconds) {
+        this.dedupTtlMillis = TimeUnit.SECONDS.toMillis(dedupTtlSeconds);
+    }
+
+    /**
+     * The number of processed async events the default in-memory store remembers.
+     *
+     * @param dedupMaxEntries The capacity of the in-memory store
+     */
+    @Value("${arc.broker.dedup.maxEntries:10000}")
+    public synchronized void setDedupMaxEntries(int dedupMaxEntries) {
+        if (dedupMaxEntries < 1) {
+            throw new IllegalArgumentException("Dedup max entries must be at least 1");
+        }
+        this.dedupMaxEntries = dedupMaxEntries;
+    }
+
+    /**
+     * The store of processed async events, to share them across containers. Defaults to an in-memory store.
+     *
+     * @param dedupStore The dedup store
+     */
+    @Autowired(required = false)
+    public synchronized void setDedupStore(DedupStore dedupStore) {
+        this.dedupStore = dedupStore;
+    }
+
+    /**
+     * Whether the time spent in each phase of a message, and the latency and errors of every handler, are recorded
+     * in {@link #getMetrics()}.
+     *
+     * @param metricsEnabled True to record broker metrics
+     */
+    @Value("${arc.broker.metrics.enabled:true}")
+    public void setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+    }
+
+    /**
+     * Whether handlers are abandoned when they run into the deadline of the Lambda invocation. Synchronous requests
+     * are then answered with a {@code TIMEOUT} error, and parallel async event handlers fail with one. Synchronous
+     * handlers then run on a worker thread, which gets the MDC and the {@link InvocationContext} of the caller but no
+     * other thread-bound state, such as the current X-Ray segment.
+     *
+     * @param deadlineEnabled True to enforce the invocation deadline
+     */
+    @Value("${arc.broker.deadline.enabled:false}")
+    public void setDeadlineEnabled(boolean deadlineEnabled) {
+        this.deadlineEnabled = deadlineEnabled;
+    }
+
+    /**
+     * The time kept before the invocation deadline to answer once handlers are abandoned.
+     *
+     * @param deadlineMarginMillis The margin in milliseconds
+     */
+    @Value("${arc.broker.deadline.marginMillis:500}")
+    public void setDeadlineMarginMillis(long deadlineMarginMillis) {
+        this.deadlineMarginMillis = deadlineMarginMillis;
+    }
+
+    /**
+     * How the events of a batch are dispatched.
+     */
+    public enum BatchOrdering {
+        /**
+         * Events are handled one at a time, in batch order, on the invoking thread.
+         */
+        ORDERED,
+        /**
+         * Events are handled concurrently on a bounded worker pool.
+         */
+        PARALLEL
+    }
+
+    /**
+     * Overrides the properties of a given Payload object with the values present in the message envelope.
+     * The method checks for the presence of each expected property within the envelope. If a property
      * is found and is non-null, its value is used to update the corresponding property in the Payload object.
      * The method specifically handles the 'key' property and ensures it is not blank. If it is, an exception is thrown.
      * For the 'time' property, the value is expected to be in epoch seconds and is converted to milliseconds.
-     * The 'body' property is an ObjectNode and is merged with the existing body of the Payload.
+     * The 'body' property replaces the default empty body when it is a JSON object, and is left unparsed until a
+     * handler reads it.
      *
-     * @param payload     The Payload object to be updated.
-     * @param requestNode The ObjectNode containing potential override values.
+     * @param payload  The Payload object to be updated.
+     * @param envelope The message envelope containing potential override values.
      * @throws EventPayloadException If the 'key' property is missing or blank, or if the 'time' property is not in a
      *                               valid epoch format.
      */
-    private void overridePayloadWithRequestNode(Payload payload, ObjectNode requestNode) throws EventPayloadException {
+    private void overridePayloadWithEnvelope(Payload payload, PayloadEnvelope envelope) throws EventPayloadException {
         // Update key if it's present and not blank
-        if (requestNode.hasNonNull("key") && !StringUtils.isBlank(requestNode.get("key").asText())) {
-            payload.setKey(requestNode.get("key").asText());
+        if (PayloadEnvelope.hasNonNull(envelope.getKey()) && !StringUtils.isBlank(envelope.getKey().asText())) {
+            payload.setKey(envelope.getKey().asText());
         } else {
             throw new EventPayloadException("Key must be provided and cannot be blank");
         }
 
         // Update other fields if present
-        if (requestNode.hasNonNull("version")) {
-            payload.setVersion(requestNode.get("version").asInt());
+        if (PayloadEnvelope.hasNonNull(envelope.getVersion())) {
+            payload.setVersion(envelope.getVersion().asInt());
         }
 
-        if (requestNode.hasNonNull("typeId")) {
-            payload.setTypeId(requestNode.get("typeId").asInt());
+        if (PayloadEnvelope.hasNonNull(envelope.getTypeId())) {
+            payload.setTypeId(envelope.getTypeId().asInt());
         }
 
-        if (requestNode.hasNonNull("time")) {
-            String timeStr = requestNode.get("time").asText();
+        if (PayloadEnvelope.hasNonNull(envelope.getTime())) {
+            String timeStr = envelope.getTime().asText();
             try {
                 long time = Long.parseLong(timeStr);
                 payload.setTime(new Date(time * 1000));
@@ -326,17 +1122,17 @@ public final class MessageBroker {
             }
         }
 
-        if (requestNode.hasNonNull("uuid")) {
-            payload.setUuid(requestNode.get("uuid").asText());
+        if (PayloadEnvelope.hasNonNull(envelope.getUuid())) {
+            payload.setUuid(envelope.getUuid().asText());
         }
 
-        if (requestNode.hasNonNull("currentUserId")) {
-            payload.setCurrentUserId(requestNode.get("currentUserId").asText());
+        if (PayloadEnvelope.hasNonNull(envelope.getCurrentUserId())) {
+            payload.setCurrentUserId(envelope.getCurrentUserId().asText());
         }
 
-        // If the body is a nested object, you should merge it
-        if (requestNode.hasNonNull("body") && requestNode.get("body").isObject()) {
-            payload.getBody().setAll((ObjectNode) requestNode.get("body"));
+        // A nested object body replaces the empty default body
+        if (envelope.getRawBody() != null) {
+            payload.setRawBody(envelope.getRawBody(), bodyReaders());
         }
     }
 
@@ -357,7 +1153,18 @@ public final class MessageBroker {
         return payload;
     }
 
-    public void setObjectMapper(ObjectMapper objectMapper) {
+    public synchronized void setObjectMapper(ObjectMapper objectMapper) {
         this.objectMapper = objectMapper;
+        this.bodyReaders = null;
+        this.registry = null;
+    }
+
+    private PayloadBodyReaders bodyReaders() {
+        PayloadBodyReaders current = this.bodyReaders;
+        if (current == null || current.getObjectMapper() != this.objectMapper) {
+            current = new PayloadBodyReaders(this.objectMapper);
+            this.bodyReaders = current;
+        }
+        return current;
     }
 }
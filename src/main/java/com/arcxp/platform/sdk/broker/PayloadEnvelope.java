@@ -0,0 +1,251 @@
+package com.arcxp.platform.sdk.broker;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Envelope fields of an incoming Lambda message, read in a single streaming pass. Only the scalar envelope fields
+ * are materialized; the body object is captured as its raw UTF-8 bytes so that no tree is built for it here.
+ * A message that is a JSON array, or an object with an {@code events} array and none of the routing fields of a single
+ * event, is a batch: only the byte ranges of its events are recorded, and each event is parsed as its own envelope.
+ */
+final class PayloadEnvelope {
+
+    private JsonNode version;
+    private JsonNode typeId;
+    private JsonNode eventName;
+    private JsonNode eventType;
+    private JsonNode key;
+    private JsonNode uri;
+    private JsonNode uuid;
+    private JsonNode currentUserId;
+    private JsonNode eventTime;
+    private JsonNode time;
+
+    private boolean bodyPresent;
+    private byte[] rawBody;
+
+    private boolean array;
+    private int[] eventOffsets;
+    private int eventCount = -1;
+
+    private PayloadEnvelope() {
+    }
+
+    /**
+     * Reads the envelope of a message. Unknown fields are skipped without being materialized.
+     *
+     * @param objectMapper The mapper used to create the parser
+     * @param message      The raw UTF-8 message
+     * @param offset       The index of the first message byte
+     * @param length       The number of message bytes
+     * @return The parsed envelope
+     * @throws IOException If the message is not a well formed JSON object or array
+     */
+    static PayloadEnvelope parse(ObjectMapper objectMapper, byte[] message, int offset, int length)
+            throws IOException {
+        try (JsonParser parser = objectMapper.createParser(message, offset, length)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                PayloadEnvelope envelope = new PayloadEnvelope();
+                envelope.array = true;
+                envelope.readEvents(parser, offset);
+                return envelope;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new EventPayloadException("Message payload must be a JSON object");
+            }
+            return readObject(parser, message, offset);
+        }
+    }
+
+    private static PayloadEnvelope readObject(JsonParser parser, byte[] source, int offset) throws IOException {
+        PayloadEnvelope envelope = new PayloadEnvelope();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "version":
+                    envelope.version = parser.readValueAsTree();
+                    break;
+                case "typeId":
+                    envelope.typeId = parser.readValueAsTree();
+                    break;
+                case "eventName":
+                    envelope.eventName = parser.readValueAsTree();
+                    break;
+                case "eventType":
+                    envelope.eventType = parser.readValueAsTree();
+                    break;
+                case "key":
+                    envelope.key = parser.readValueAsTree();
+                    break;
+                case "uri":
+                    envelope.uri = parser.readValueAsTree();
+                    break;
+                case "uuid":
+                    envelope.uuid = parser.readValueAsTree();
+                    break;
+                case "currentUserId":
+                    envelope.currentUserId = parser.readValueAsTree();
+                    break;
+                case "eventTime":
+                    envelope.eventTime = parser.readValueAsTree();
+                    break;
+                case "time":
+                    envelope.time = parser.readValueAsTree();
+                    break;
+                case "body":
+                    envelope.bodyPresent = true;
+                    if (value == JsonToken.START_OBJECT) {
+                        int start = (int) parser.getTokenLocation().getByteOffset();
+                        parser.skipChildren();
+                        int end = (int) parser.getCurrentLocation().getByteOffset();
+                        envelope.rawBody = Arrays.copyOfRange(source, offset + start, offset + end);
+                    } else {
+                        envelope.rawBody = null;
+                        parser.skipChildren();
+                    }
+                    break;
+                case "events":
+                    if (value == JsonToken.START_ARRAY) {
+                        envelope.readEvents(parser, offset);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return envelope;
+    }
+
+    /**
+     * Records the absolute byte range of every element of the array the parser is positioned on.
+     */
+    private void readEvents(JsonParser parser, int offset) throws IOException {
+        int[] offsets = new int[16];
+        int count = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            int start = (int) parser.getTokenLocation().getByteOffset();
+            parser.skipChildren();
+            int end = (int) parser.getCurrentLocation().getByteOffset();
+            if (count * 2 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[count * 2] = offset + start;
+            offsets[count * 2 + 1] = end - start;
+            count++;
+        }
+        this.eventOffsets = offsets;
+        this.eventCount = count;
+    }
+
+    JsonNode getVersion() {
+        return version;
+    }
+
+    JsonNode getTypeId() {
+        return typeId;
+    }
+
+    JsonNode getEventName() {
+        return eventName;
+    }
+
+    JsonNode getEventType() {
+        return eventType;
+    }
+
+    JsonNode getKey() {
+        return key;
+    }
+
+    JsonNode getUri() {
+        return uri;
+    }
+
+    JsonNode getUuid() {
+        return uuid;
+    }
+
+    JsonNode getCurrentUserId() {
+        return currentUserId;
+    }
+
+    JsonNode getEventTime() {
+        return eventTime;
+    }
+
+    JsonNode getTime() {
+        return time;
+    }
+
+    /**
+     * Whether the message carried a {@code body} field, whatever its value.
+     *
+     * @return True if a body field was present
+     */
+    boolean hasBody() {
+        return bodyPresent;
+    }
+
+    /**
+     * The raw UTF-8 JSON of the body, only set when the body is a JSON object.
+     *
+     * @return The body bytes or null
+     */
+    byte[] getRawBody() {
+        return rawBody;
+    }
+
+    /**
+     * Whether the message is a batch of events.
+     *
+     * @return True for a JSON array, or an object with an events array that has no {@code key}, {@code eventName},
+     *     {@code eventType} or {@code typeId}, which would make it a single event with an events field
+     */
+    boolean isBatch() {
+        return eventCount >= 0 && (array || key == null && eventName == null && eventType == null && typeId == null);
+    }
+
+    /**
+     * The number of events in a batch.
+     *
+     * @return The event count
+     */
+    int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * The index in the source bytes of the first byte of a batch event.
+     *
+     * @param index The event index
+     * @return The event offset
+     */
+    int getEventOffset(int index) {
+        return eventOffsets[index * 2];
+    }
+
+    /**
+     * The number of bytes of a batch event.
+     *
+     * @param index The event index
+     * @return The event length
+     */
+    int getEventLength(int index) {
+        return eventOffsets[index * 2 + 1];
+    }
+
+    static boolean hasNonNull(JsonNode node) {
+        return node != null && !node.isNull();
+    }
+}
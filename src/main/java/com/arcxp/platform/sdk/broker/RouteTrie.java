@@ -0,0 +1,389 @@
+package com.arcxp.platform.sdk.broker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Routes of an event key or custom endpoint uri that contain patterns. A route is made of segments separated by
+ * {@code :} or {@code /}, and a segment ends with at most one of:
+ * <ul>
+ *     <li>{@code *}, which matches the rest of the segment, so {@code commerce:ORDER_*} matches
+ *     {@code commerce:ORDER_CREATED};</li>
+ *     <li>{@code {name}}, which matches the rest of the segment, at least one character, and binds it to
+ *     {@code name}, so {@code commerce:/orders/{id}/items} matches {@code commerce:/orders/42/items} with
+ *     {@code id=42}.</li>
+ * </ul>
+ * Text after a {@code *} or {@code {name}} in the same segment, as in {@code commerce:*_CREATED}, is rejected.
+ *
+ * <p>Literal characters are compared without regard to case, and the query string of a uri is not matched. When
+ * several routes match a key, {@link #match} returns the most specific: at every position a literal character is
+ * preferred to a parameter, and a parameter to a wildcard. {@link #matchAll} returns every matching route.</p>
+ *
+ * <p>The routes are compiled into a deterministic automaton whose states are the ordered sets of routes that can
+ * still match, so a lookup reads each character of the key once, without backtracking, whatever the number and shape
+ * of the routes; the parameters of the matching route are then bound in a second pass over the key. The automaton is
+ * built once with the registry; routes that overlap at many positions make it larger, not the lookups slower.</p>
+ *
+ * @param <H> The handler type
+ */
+final class RouteTrie<H> {
+
+    private final State<H> start;
+
+    private RouteTrie(State<H> start) {
+        this.start = start;
+    }
+
+    /**
+     * Whether a key contains a wildcard or a parameter, and so has to be routed by a trie.
+     *
+     * @param key The key
+     * @return True for a pattern
+     */
+    static boolean isPattern(String key) {
+        return key.indexOf('*') >= 0 || key.indexOf('{') >= 0;
+    }
+
+    /**
+     * Compiles the given patterns.
+     *
+     * @param routes The handlers of each pattern
+     * @param <H>    The handler type
+     * @return The trie, or null if there are no patterns
+     * @throws IllegalArgumentException if a pattern has an unclosed parameter, or text after a wildcard or parameter
+     *                                  in the same segment
+     */
+    static <H> RouteTrie<H> compile(Map<String, H[]> routes) {
+        if (routes.isEmpty()) {
+            return null;
+        }
+        Node<H> root = new Node<>();
+        for (Map.Entry<String, H[]> route : routes.entrySet()) {
+            insert(root, route.getKey(), route.getValue());
+        }
+        return new RouteTrie<>(state(Collections.singletonList(root), new HashMap<>()));
+    }
+
+    /**
+     * Finds the most specific route matching a key.
+     *
+     * @param key The key
+     * @return The match, or null if no route matches
+     */
+    Match<H> match(String key) {
+        int end = end(key);
+        State<H> state = run(key, end);
+        if (state == null) {
+            return null;
+        }
+        for (Node<H> node : state.nodes) {
+            if (node.handlers != null) {
+                return new Match<>(node.handlers, node.pattern, bind(node, key, end));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the handlers of every route matching a key, from the most specific route to the least.
+     *
+     * @param key     The key
+     * @param matches The list the handlers of each matching route are added to
+     */
+    void matchAll(String key, List<H[]> matches) {
+        State<H> state = run(key, end(key));
+        if (state == null) {
+            return;
+        }
+        for (Node<H> node : state.nodes) {
+            if (node.handlers != null) {
+                matches.add(node.handlers);
+            }
+        }
+    }
+
+    private static int end(String key) {
+        int end = key.indexOf('?');
+        return end < 0 ? key.length() : end;
+    }
+
+    /**
+     * Runs the automaton over a key, one segment and then one separator at a time.
+     *
+     * @return The state reached at the end of the key, or null once no route can match
+     */
+    private State<H> run(String key, int end) {
+        State<H> state = start;
+        int position = 0;
+        while (true) {
+            Chars<H> chars = state.tokens;
+            State<H> next = null;
+            boolean exact = true;
+            while (position < end && !isSeparator(key.charAt(position))) {
+                Chars<H> child = chars.next.get(Character.toLowerCase(key.charAt(position)));
+                if (child == null) {
+                    // No route spells out more of the segment, only the patterns matched so far can
+                    next = chars.beyond;
+                    exact = false;
+                    position = segmentEnd(key, position, end);
+                    break;
+                }
+                chars = child;
+                position++;
+            }
+            state = exact ? chars.exact : next;
+            if (state == null || position == end) {
+                return state;
+            }
+            Chars<H> separator = state.tokens.next.get(key.charAt(position));
+            state = separator == null ? null : separator.exact;
+            if (state == null) {
+                return null;
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Binds the parameters of a matching route to the segments of the key.
+     */
+    private static <H> Map<String, String> bind(Node<H> node, String key, int end) {
+        if (node.paramNames.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> params = new LinkedHashMap<>(node.paramNames.size() * 2);
+        int segment = 0;
+        int param = 0;
+        int position = 0;
+        while (param < node.paramNames.size()) {
+            int segmentEnd = segmentEnd(key, position, end);
+            if (segment == node.paramSegments[param]) {
+                params.put(node.paramNames.get(param),
+                        key.substring(position + node.paramOffsets[param], segmentEnd));
+                param++;
+            }
+            segment++;
+            position = segmentEnd + 1;
+        }
+        return Collections.unmodifiableMap(params);
+    }
+
+    private static <H> void insert(Node<H> root, String pattern, H[] handlers) {
+        Node<H> node = root;
+        List<String> params = new ArrayList<>(2);
+        List<Integer> paramSegments = new ArrayList<>(2);
+        List<Integer> paramOffsets = new ArrayList<>(2);
+        int segment = 0;
+        int position = 0;
+        while (true) {
+            int segmentEnd = segmentEnd(pattern, position, pattern.length());
+            String text = pattern.substring(position, segmentEnd);
+            int wildcard = text.indexOf('*');
+            int open = text.indexOf('{');
+            if (wildcard >= 0 && (open < 0 || wildcard < open)) {
+                if (wildcard != text.length() - 1) {
+                    throw new IllegalArgumentException("Text after * in a segment of route " + pattern);
+                }
+                node = node.wildcards.computeIfAbsent(prefix(text, wildcard), k -> new Node<>());
+            } else if (open >= 0) {
+                int close = text.indexOf('}', open);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed parameter in route " + pattern);
+                }
+                if (close != text.length() - 1) {
+                    throw new IllegalArgumentException("Text after a parameter in a segment of route " + pattern);
+                }
+                node = node.parameters.computeIfAbsent(prefix(text, open), k -> new Node<>());
+                params.add(text.substring(open + 1, close));
+                paramSegments.add(segment);
+                paramOffsets.add(open);
+            } else {
+                node = node.literals.computeIfAbsent(text.toLowerCase(Locale.ROOT), k -> new Node<>());
+            }
+            if (segmentEnd == pattern.length()) {
+                break;
+            }
+            node = node.literals.computeIfAbsent(String.valueOf(pattern.charAt(segmentEnd)), k -> new Node<>());
+            segment++;
+            position = segmentEnd + 1;
+        }
+        node.handlers = handlers;
+        node.pattern = pattern;
+        node.paramNames = params;
+        node.paramSegments = toArray(paramSegments);
+        node.paramOffsets = toArray(paramOffsets);
+    }
+
+    private static String prefix(String text, int end) {
+        return text.substring(0, end).toLowerCase();
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * The state of the automaton for an ordered set of routes, building the states it leads to. States of the same
+     * set are shared.
+     */
+    private static <H> State<H> state(List<Node<H>> nodes, Map<List<Node<H>>, State<H>> states) {
+        State<H> state = states.get(nodes);
+        if (state != null) {
+            return state;
+        }
+        state = new State<>(nodes);
+        states.put(nodes, state);
+        for (Node<H> node : nodes) {
+            for (String literal : node.literals.keySet()) {
+                state.tokens.add(literal);
+            }
+            for (String prefix : node.parameters.keySet()) {
+                state.tokens.add(prefix);
+            }
+            for (String prefix : node.wildcards.keySet()) {
+                state.tokens.add(prefix);
+            }
+        }
+        link(state.tokens, "", nodes, states);
+        return state;
+    }
+
+    private static <H> void link(Chars<H> chars, String text, List<Node<H>> nodes,
+                                 Map<List<Node<H>>, State<H>> states) {
+        chars.exact = next(nodes, text, true, states);
+        chars.beyond = next(nodes, text, false, states);
+        for (Map.Entry<Character, Chars<H>> child : chars.next.entrySet()) {
+            link(child.getValue(), text + child.getKey(), nodes, states);
+        }
+    }
+
+    /**
+     * The state reached from the given routes by a segment that is, or starts with and goes on past, the given text.
+     * The routes of each node are ordered from the most specific: the literal segment, then the patterns from the
+     * longest prefix, a parameter before a wildcard of the same prefix.
+     */
+    private static <H> State<H> next(List<Node<H>> nodes, String text, boolean exact,
+                                     Map<List<Node<H>>, State<H>> states) {
+        List<Node<H>> next = new ArrayList<>();
+        for (Node<H> node : nodes) {
+            if (exact) {
+                Node<H> literal = node.literals.get(text);
+                if (literal != null) {
+                    next.add(literal);
+                }
+            }
+            for (int length = text.length(); length >= 0; length--) {
+                String prefix = text.substring(0, length);
+                // A parameter matches at least one character, a wildcard possibly none
+                Node<H> param = exact && length == text.length() ? null : node.parameters.get(prefix);
+                if (param != null) {
+                    next.add(param);
+                }
+                Node<H> wildcard = node.wildcards.get(prefix);
+                if (wildcard != null) {
+                    next.add(wildcard);
+                }
+            }
+        }
+        return next.isEmpty() ? null : state(next, states);
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == ':';
+    }
+
+    private static int segmentEnd(String key, int position, int end) {
+        for (int i = position; i < end; i++) {
+            if (isSeparator(key.charAt(i))) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * A route prefix ending with a segment or a separator.
+     */
+    private static final class Node<H> {
+        private final Map<String, Node<H>> literals = new LinkedHashMap<>(4);
+        private final Map<String, Node<H>> parameters = new LinkedHashMap<>(2);
+        private final Map<String, Node<H>> wildcards = new LinkedHashMap<>(2);
+        private H[] handlers;
+        private String pattern;
+        private List<String> paramNames = Collections.emptyList();
+        private int[] paramSegments;
+        private int[] paramOffsets;
+    }
+
+    /**
+     * A state of the automaton: the routes that can still match, most specific first, and the states the next
+     * segment or separator leads to.
+     */
+    private static final class State<H> {
+        private final List<Node<H>> nodes;
+        private final Chars<H> tokens = new Chars<>();
+
+        State(List<Node<H>> nodes) {
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * Character trie of the segments and pattern prefixes that follow a state.
+     */
+    private static final class Chars<H> {
+        private final Map<Character, Chars<H>> next = new HashMap<>(4);
+        private State<H> exact;
+        private State<H> beyond;
+
+        void add(String text) {
+            Chars<H> chars = this;
+            for (int i = 0; i < text.length(); i++) {
+                chars = chars.next.computeIfAbsent(text.charAt(i), k -> new Chars<>());
+            }
+        }
+    }
+
+    /**
+     * The handlers of the route matching a key, and the parameters bound by the match.
+     *
+     * @param <H> The handler type
+     */
+    static final class Match<H> {
+        private final H[] handlers;
+        private final String pattern;
+        private final Map<String, String> params;
+
+        Match(H[] handlers, String pattern, Map<String, String> params) {
+            this.handlers = handlers;
+            this.pattern = pattern;
+            this.params = params;
+        }
+
+        H[] getHandlers() {
+            return handlers;
+        }
+
+        /**
+         * The pattern that matched, so that requests to many uris can be measured as one route.
+         *
+         * @return The normalized pattern, or null for an exact match
+         */
+        String getPattern() {
+            return pattern;
+        }
+
+        Map<String, String> getParams() {
+            return params;
+        }
+    }
+}
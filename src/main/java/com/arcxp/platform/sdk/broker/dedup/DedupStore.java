@@ -0,0 +1,27 @@
+package com.arcxp.platform.sdk.broker.dedup;
+
+/**
+ * Records the async events that have been processed, so that events redelivered by Arc are not handled twice. The
+ * broker uses an {@link InMemoryDedupStore} per container by default; declare a bean implementing this interface to
+ * share the processed events across containers.
+ *
+ * <p>Implementations must be thread safe, as events of a parallel batch are claimed concurrently.</p>
+ */
+public interface DedupStore {
+
+    /**
+     * Claims an event for processing.
+     *
+     * @param id        The uuid of the event
+     * @param ttlMillis How long the claim is remembered
+     * @return True if the event was not claimed before and should be processed, false if it is a duplicate
+     */
+    boolean markIfAbsent(String id, long ttlMillis);
+
+    /**
+     * Forgets the claim of an event whose handlers failed, so that its redelivery is processed again.
+     *
+     * @param id The uuid of the event
+     */
+    void release(String id);
+}
@@ -0,0 +1,106 @@
+package com.arcxp.platform.sdk.broker.dedup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link DedupStore} backed by a local file, so that several brokers, in one JVM or in separate processes, share
+ * their processed events the way containers would share a remote store. Each claim locks the file, reads it, and
+ * rewrites it without the expired claims, which is only suitable for tests and local runs.
+ *
+ * <p>The file holds one claim per line: the id, a tab and the expiry time in epoch milliseconds.</p>
+ */
+public final class FileDedupStore implements DedupStore {
+
+    private final Path file;
+
+    /**
+     * Creates a store. The file is created on the first claim.
+     *
+     * @param file The file the claims are kept in
+     */
+    public FileDedupStore(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized boolean markIfAbsent(String id, long ttlMillis) {
+        checkId(id);
+        try (FileChannel channel = open(); FileLock lock = channel.lock()) {
+            long now = System.currentTimeMillis();
+            Map<String, Long> claims = read(channel, now);
+            if (claims.containsKey(id)) {
+                return false;
+            }
+            claims.put(id, now + ttlMillis);
+            write(channel, claims);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to claim " + id + " in " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void release(String id) {
+        checkId(id);
+        try (FileChannel channel = open(); FileLock lock = channel.lock()) {
+            Map<String, Long> claims = read(channel, System.currentTimeMillis());
+            claims.remove(id);
+            write(channel, claims);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to release " + id + " in " + file, e);
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void checkId(String id) {
+        if (id.indexOf('\t') >= 0 || id.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Ids cannot contain tabs or line breaks");
+        }
+    }
+
+    private static Map<String, Long> read(FileChannel channel, long now) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        Map<String, Long> claims = new LinkedHashMap<>();
+        String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        for (String line : content.split("\n")) {
+            int separator = line.lastIndexOf('\t');
+            if (separator > 0) {
+                long expires = Long.parseLong(line.substring(separator + 1).trim());
+                if (expires > now) {
+                    claims.put(line.substring(0, separator), expires);
+                }
+            }
+        }
+        return claims;
+    }
+
+    private static void write(FileChannel channel, Map<String, Long> claims) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, Long> claim : claims.entrySet()) {
+            content.append(claim.getKey()).append('\t').append(claim.getValue()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+        channel.truncate(0L);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        channel.force(false);
+    }
+}
@@ -0,0 +1,154 @@
+package com.arcxp.platform.sdk.broker.dedup;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded in-memory {@link DedupStore} for a single container. Ids are kept as 128-bit values in primitive arrays,
+ * so claiming an event allocates nothing: uuids are parsed into two longs and any other id is hashed to 128 bits.
+ *
+ * <p>The table is set associative: an id can only live in the {@value #WAYS} slots of its bucket. When all of them
+ * hold live claims, the claim expiring first is evicted, so under pressure an old event may be processed again but
+ * memory never grows past the configured capacity.</p>
+ */
+public final class InMemoryDedupStore implements DedupStore {
+
+    private static final int WAYS = 4;
+
+    private final long[] high;
+    private final long[] low;
+    private final long[] expires;
+    private final int bucketMask;
+    private final LongSupplier clock;
+
+    /**
+     * Creates a store.
+     *
+     * @param maxEntries The number of claims the store holds, rounded up to a power of two
+     */
+    public InMemoryDedupStore(int maxEntries) {
+        this(maxEntries, System::currentTimeMillis);
+    }
+
+    InMemoryDedupStore(int maxEntries, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Max entries must be at least 1");
+        }
+        int buckets = (maxEntries + WAYS - 1) / WAYS;
+        buckets = buckets == 1 ? 1 : Integer.highestOneBit((buckets - 1) << 1);
+        this.high = new long[buckets * WAYS];
+        this.low = new long[buckets * WAYS];
+        this.expires = new long[buckets * WAYS];
+        this.bucketMask = buckets - 1;
+        this.clock = clock;
+    }
+
+    /**
+     * The number of claims the store can hold.
+     *
+     * @return The capacity
+     */
+    public int capacity() {
+        return expires.length;
+    }
+
+    @Override
+    public boolean markIfAbsent(String id, long ttlMillis) {
+        long hi = highBits(id);
+        long lo = lowBits(id, hi);
+        long now = clock.getAsLong();
+        int first = bucket(hi, lo);
+        synchronized (this) {
+            int victim = first;
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (expires[slot] > now) {
+                    if (high[slot] == hi && low[slot] == lo) {
+                        return false;
+                    }
+                    if (expires[victim] > now && expires[slot] < expires[victim]) {
+                        victim = slot;
+                    }
+                } else if (expires[victim] > now) {
+                    victim = slot;
+                }
+            }
+            high[victim] = hi;
+            low[victim] = lo;
+            expires[victim] = now + ttlMillis;
+            return true;
+        }
+    }
+
+    @Override
+    public void release(String id) {
+        long hi = highBits(id);
+        long lo = lowBits(id, hi);
+        int first = bucket(hi, lo);
+        synchronized (this) {
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (high[slot] == hi && low[slot] == lo) {
+                    expires[slot] = 0L;
+                }
+            }
+        }
+    }
+
+    private int bucket(long hi, long lo) {
+        long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return ((int) (h ^ (h >>> 32)) & bucketMask) * WAYS;
+    }
+
+    /**
+     * The most significant bits of a canonical uuid, or a hash of any other id.
+     */
+    private static long highBits(String id) {
+        if (isUuid(id)) {
+            return parseHex(id, 0, 8) << 32 | parseHex(id, 9, 13) << 16 | parseHex(id, 14, 18);
+        }
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h = (h ^ id.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * The least significant bits of a canonical uuid, or a second, independent hash of any other id.
+     */
+    private static long lowBits(String id, long hi) {
+        if (isUuid(id)) {
+            return parseHex(id, 19, 23) << 48 | parseHex(id, 24, 36);
+        }
+        long h = hi ^ id.length();
+        for (int i = 0; i < id.length(); i++) {
+            h = Long.rotateLeft(h ^ id.charAt(i) * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        // Keeps hashed ids apart from parsed uuids with the same bits, whose variant bits are never all zero
+        return h & 0x3FFFFFFFFFFFFFFFL;
+    }
+
+    private static boolean isUuid(String id) {
+        if (id.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        // Variant bits of RFC 4122 uuids, so that the marker used for hashed ids above cannot match
+        return Character.digit(id.charAt(19), 16) >= 8;
+    }
+
+    private static long parseHex(String id, int from, int to) {
+        long value = 0L;
+        for (int i = from; i < to; i++) {
+            value = value << 4 | Character.digit(id.charAt(i), 16);
+        }
+        return value;
+    }
+}
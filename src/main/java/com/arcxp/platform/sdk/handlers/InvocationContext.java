@@ -0,0 +1,134 @@
+package com.arcxp.platform.sdk.handlers;
+
+import com.amazonaws.services.lambda.runtime.Context;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Lambda invocation being handled on the current thread, with the time left before Lambda stops it. The entry
+ * points attach the context for the duration of an invocation; handlers read it with {@link #current()} to decide
+ * whether there is time left for more work, and {@link com.arcxp.platform.sdk.http.DefaultArcHttpClient} uses it to
+ * keep Arc API calls within the deadline.
+ */
+public final class InvocationContext {
+
+    private static final InvocationContext NONE = new InvocationContext(null, false, 0L);
+
+    private static final ThreadLocal<InvocationContext> CURRENT = new ThreadLocal<>();
+
+    private final String requestId;
+    private final boolean hasDeadline;
+    private final long deadlineNanos;
+
+    private InvocationContext(String requestId, boolean hasDeadline, long deadlineNanos) {
+        this.requestId = requestId;
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * The context of the invocation handled on the current thread.
+     *
+     * @return The current context, or a context without deadline outside of an invocation
+     */
+    public static InvocationContext current() {
+        InvocationContext current = CURRENT.get();
+        return current == null ? NONE : current;
+    }
+
+    /**
+     * A context without deadline.
+     *
+     * @return The context
+     */
+    public static InvocationContext none() {
+        return NONE;
+    }
+
+    /**
+     * A context ending the given time from now.
+     *
+     * @param requestId       The AWS request id, or null
+     * @param remainingMillis The time left in the invocation
+     * @return The context
+     */
+    public static InvocationContext withRemainingTime(String requestId, long remainingMillis) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(remainingMillis);
+        return new InvocationContext(requestId, true, deadlineNanos);
+    }
+
+    /**
+     * The context of a Lambda invocation.
+     *
+     * @param context The Lambda context, or null
+     * @return The context, without deadline if the Lambda context is null
+     */
+    public static InvocationContext of(Context context) {
+        if (context == null) {
+            return NONE;
+        }
+        return withRemainingTime(context.getAwsRequestId(), context.getRemainingTimeInMillis());
+    }
+
+    /**
+     * Makes this the context of the current thread until the returned scope is closed, which restores the previous
+     * context.
+     *
+     * @return The scope of the context
+     */
+    public Scope attach() {
+        InvocationContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    /**
+     * The AWS request id of the invocation.
+     *
+     * @return The request id, or null if unknown
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    /**
+     * The time left before the invocation is stopped.
+     *
+     * @return The remaining time in milliseconds, negative once the deadline has passed, or {@link Long#MAX_VALUE}
+     *         without deadline
+     */
+    public long getRemainingMillis() {
+        if (!hasDeadline) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return hasDeadline && deadlineNanos - System.nanoTime() <= 0L;
+    }
+
+    /**
+     * The period a context is attached to a thread.
+     */
+    public static final class Scope implements AutoCloseable {
+        private final InvocationContext previous;
+
+        private Scope(InvocationContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -1,19 +1,32 @@
 package com.arcxp.platform.sdk.handlers;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Date;
 
+import com.arcxp.platform.sdk.utils.MapUtils;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * Payload object to be sent to an integration handler.
  */
 
+@JsonPropertyOrder({"version", "key", "body", "typeId", "time", "uuid", "currentUserId"})
 public class Payload {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private int version;
     private String key;
-    private ObjectNode body;
+    /**
+     * Either the {@link ObjectNode} body or a {@link RawBody} that has not been parsed yet.
+     */
+    @JsonProperty("body")
+    private Object body;
+    private PayloadBodyReaders readers;
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private int typeId;
     @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -49,18 +62,119 @@ public class Payload {
     }
 
     /**
-     * Payload Body for this Event/Request.
+     * Payload Body for this Event/Request. The tree is built from the raw body on first access, after which it is
+     * the body of record: changes made to it are returned to the calling application.
      *
      * @return JSON Body of the payload
      */
+    @JsonIgnore
     public ObjectNode getBody() {
-        return body;
+        Object current = this.body;
+        if (current instanceof RawBody) {
+            synchronized (this) {
+                current = this.body;
+                if (current instanceof RawBody) {
+                    try {
+                        current = ((RawBody) current).toTree();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unable to read payload body", e);
+                    }
+                    this.body = current;
+                }
+            }
+        }
+        return (ObjectNode) current;
     }
 
     public void setBody(ObjectNode body) {
         this.body = body;
     }
 
+    /**
+     * Binds the Payload Body to a class. When the body has not been read as a tree it is bound directly from its
+     * raw bytes with a cached reader, so no intermediate tree is built.
+     *
+     * @param <T>  The type of the body
+     * @param type The class of the body
+     * @return The bound body, or null when the payload has no body
+     */
+    public <T> T getBodyAs(Class<T> type) {
+        return getBodyAs(readers().forType(type));
+    }
+
+    /**
+     * Binds the Payload Body with a prepared reader. When the body has not been read as a tree it is bound directly
+     * from its raw bytes.
+     *
+     * @param <T>    The type of the body
+     * @param reader The reader for the body type
+     * @return The bound body, or null when the payload has no body
+     */
+    public <T> T getBodyAs(ObjectReader reader) {
+        Object current = this.body;
+        try {
+            if (current instanceof RawBody) {
+                return reader.readValue(((RawBody) current).getJson());
+            }
+            if (current == null) {
+                return null;
+            }
+            return reader.readValue((ObjectNode) current);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to bind payload body to " + reader.getValueType(), e);
+        }
+    }
+
+    /**
+     * The Payload Body as UTF-8 JSON. These are the bytes received from the calling application unless the body
+     * has since been read or replaced as a tree, in which case the current tree is serialized.
+     * The returned array must not be modified.
+     *
+     * @return UTF-8 JSON of the body, or null when the payload has no body
+     */
+    @JsonIgnore
+    public byte[] getRawBody() {
+        Object current = this.body;
+        if (current instanceof RawBody) {
+            return ((RawBody) current).getJson();
+        }
+        if (current == null) {
+            return null;
+        }
+        try {
+            return readers().getObjectMapper().writeValueAsBytes(current);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write payload body", e);
+        }
+    }
+
+    /**
+     * Sets the body from the raw UTF-8 JSON of an object. The bytes are kept as they are until
+     * {@link #getBody()} is first called, bound directly by {@link #getBodyAs(Class)}, and written back unchanged
+     * if the payload is serialized before the tree is read.
+     *
+     * @param rawBody UTF-8 JSON object
+     * @param readers The readers used to parse and bind the body
+     */
+    public void setRawBody(byte[] rawBody, PayloadBodyReaders readers) {
+        this.readers = readers;
+        this.body = rawBody == null ? null : new RawBody(rawBody, readers);
+    }
+
+    /**
+     * Replaces the body with the raw UTF-8 JSON of an object, parsed on demand with the readers of this payload.
+     *
+     * @param rawBody UTF-8 JSON object
+     */
+    public void setRawBody(byte[] rawBody) {
+        setRawBody(rawBody, readers());
+    }
+
+    private PayloadBodyReaders readers() {
+        PayloadBodyReaders current = this.readers;
+        return current == null ? DefaultReaders.INSTANCE : current;
+    }
+
     /**
      * The type of request.
      * Ex
@@ -112,4 +226,11 @@ public class Payload {
     public void setCurrentUserId(String currentUserId) {
         this.currentUserId = currentUserId;
     }
+
+    /**
+     * Readers for payloads built without a broker, created on first use.
+     */
+    private static final class DefaultReaders {
+        private static final PayloadBodyReaders INSTANCE = new PayloadBodyReaders(MapUtils.createObjectMapper());
+    }
 }
@@ -0,0 +1,58 @@
+package com.arcxp.platform.sdk.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread safe cache of the Jackson readers used to bind payload bodies. A reader is created once per target type
+ * and shared by every payload parsed with the same mapper.
+ */
+public final class PayloadBodyReaders {
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectReader treeReader;
+
+    private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for payload body readers.
+     *
+     * @param objectMapper The mapper the readers are derived from
+     */
+    public PayloadBodyReaders(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.treeReader = objectMapper.readerFor(ObjectNode.class);
+    }
+
+    /**
+     * The cached reader binding JSON to the given type.
+     *
+     * @param type The target type
+     * @return The reader for the type
+     */
+    public ObjectReader forType(Class<?> type) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = readers.computeIfAbsent(type, objectMapper::readerFor);
+        }
+        return reader;
+    }
+
+    /**
+     * The reader producing {@link ObjectNode} trees.
+     *
+     * @return The tree reader
+     */
+    public ObjectReader forTree() {
+        return treeReader;
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+}
@@ -0,0 +1,145 @@
+package com.arcxp.platform.sdk.handlers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Payload body that has not been parsed into a tree. Holds the raw UTF-8 JSON of the body object, and is written
+ * back verbatim when the payload is serialized before anyone asked for the tree.
+ * Byte oriented generators copy the body bytes as they are, without decoding them to characters.
+ */
+final class RawBody implements JsonSerializable {
+
+    private final byte[] json;
+
+    private final PayloadBodyReaders readers;
+
+    RawBody(byte[] json, PayloadBodyReaders readers) {
+        this.json = json;
+        this.readers = readers;
+    }
+
+    byte[] getJson() {
+        return json;
+    }
+
+    ObjectNode toTree() throws IOException {
+        return readers.forTree().readValue(json);
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeRawValue(new Utf8Json(json));
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+        serialize(gen, serializers);
+    }
+
+    /**
+     * Raw JSON that UTF-8 generators copy as bytes. Character based generators fall back to the decoded value.
+     */
+    private static final class Utf8Json implements SerializableString {
+
+        private final byte[] utf8;
+
+        private SerializedString decoded;
+
+        Utf8Json(byte[] utf8) {
+            this.utf8 = utf8;
+        }
+
+        private SerializedString decoded() {
+            if (decoded == null) {
+                decoded = new SerializedString(new String(utf8, StandardCharsets.UTF_8));
+            }
+            return decoded;
+        }
+
+        @Override
+        public String getValue() {
+            return decoded().getValue();
+        }
+
+        @Override
+        public int charLength() {
+            return decoded().charLength();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return decoded().asQuotedChars();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return utf8;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return decoded().asQuotedUTF8();
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return decoded().appendQuotedUTF8(buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            return decoded().appendQuoted(buffer, offset);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            if (offset + utf8.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(utf8, 0, buffer, offset, utf8.length);
+            return utf8.length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            return decoded().appendUnquoted(buffer, offset);
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            return decoded().writeQuotedUTF8(out);
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(utf8);
+            return utf8.length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+            return decoded().putQuotedUTF8(buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) throws IOException {
+            if (utf8.length > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(utf8);
+            return utf8.length;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.arcxp.platform.sdk.handlers.async;
+
+import com.arcxp.platform.sdk.utils.MapUtils;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Event Handler for asynchronous events whose body is bound to a class. The body type is resolved from the type
+ * argument once, when the broker prepares its handlers, and the body is bound straight from the raw payload bytes.
+ *
+ * @param <T> The class of the event body
+ */
+public abstract class TypedEventHandler<T> extends EventHandler {
+
+    private volatile ObjectReader bodyReader;
+
+    /**
+     * Resolves the body type and caches its reader. Called by the broker when its routing table is built.
+     *
+     * @param objectMapper The mapper used to bind event bodies
+     */
+    public final void prepare(ObjectMapper objectMapper) {
+        JavaType bodyType = objectMapper.constructType(getClass()).findSuperType(TypedEventHandler.class)
+                .containedType(0);
+        this.bodyReader = objectMapper.readerFor(bodyType);
+    }
+
+    @Override
+    public final void handle(EventPayload eventPayload) {
+        ObjectReader reader = this.bodyReader;
+        if (reader == null) {
+            prepare(MapUtils.createObjectMapper());
+            reader = this.bodyReader;
+        }
+        handle(eventPayload, eventPayload.getBodyAs(reader));
+    }
+
+    /**
+     * Client implemented handle method for asynchronous events.
+     *
+     * @param eventPayload The asynchronous event payload
+     * @param body         The event body bound to its class, or null when the event has no body
+     */
+    public abstract void handle(EventPayload eventPayload, T body);
+}
@@ -2,7 +2,6 @@ package com.arcxp.platform.sdk.handlers.sync;
 
 import com.arcxp.platform.sdk.handlers.Payload;
 import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * Parsed Payload specific for the output from custom endpoints and intercepter handlers.
@@ -11,7 +10,6 @@ public class RequestOutPayload extends Payload {
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private String uuid;
-    private ObjectNode body;
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private RequestError error;
@@ -29,16 +27,6 @@ public class RequestOutPayload extends Payload {
         this.uuid = uuid;
     }
 
-    @Override
-    public ObjectNode getBody() {
-        return body;
-    }
-
-    @Override
-    public void setBody(ObjectNode body) {
-        this.body = body;
-    }
-
     public RequestError getError() {
         return error;
     }
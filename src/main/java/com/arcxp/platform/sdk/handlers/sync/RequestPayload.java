@@ -1,8 +1,12 @@
 package com.arcxp.platform.sdk.handlers.sync;
 
 import com.arcxp.platform.sdk.handlers.Payload;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * Parsed Payload specific for the input from custom endpoint and interceptor handlers.
  */
@@ -13,6 +17,8 @@ public final class RequestPayload extends Payload {
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private String uri;
 
+    @JsonIgnore
+    private Map<String, String> pathParams = Collections.emptyMap();
 
     /**
      * An error that is generated and thrown during the request to be sent back to the calling application.
@@ -41,4 +47,30 @@ public final class RequestPayload extends Payload {
     public void setUri(String uri) {
         this.uri = uri;
     }
+
+    /**
+     * The parameters bound by the {@code {param}} templates of the route that matched this request, such as
+     * {@code id} for a handler of {@code commerce:/orders/{id}/items}. Parameter names keep the case they are
+     * declared with.
+     *
+     * @return The path parameters, empty when the route has none
+     */
+    @JsonIgnore
+    public Map<String, String> getPathParams() {
+        return pathParams;
+    }
+
+    /**
+     * A path parameter bound by the route that matched this request.
+     *
+     * @param name The parameter name
+     * @return The value, or null if the route has no such parameter
+     */
+    public String getPathParam(String name) {
+        return pathParams.get(name);
+    }
+
+    public void setPathParams(Map<String, String> pathParams) {
+        this.pathParams = pathParams == null ? Collections.emptyMap() : pathParams;
+    }
 }
@@ -0,0 +1,77 @@
+package com.arcxp.platform.sdk.handlers.sync;
+
+import com.arcxp.platform.sdk.utils.MapUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.UncheckedIOException;
+
+/**
+ * Request Handler for synchronous requests whose body is bound to a class and whose response body is written from a
+ * class. Both types are resolved from the type arguments once, when the broker prepares its handlers, and bodies are
+ * bound from and written to raw bytes without building trees.
+ *
+ * @param <I> The class of the request body
+ * @param <O> The class of the response body, which must serialize to a JSON object
+ */
+public abstract class TypedRequestHandler<I, O> extends RequestHandler {
+
+    private volatile Codec codec;
+
+    /**
+     * Resolves the body types and caches their reader and writer. Called by the broker when its routing table is
+     * built.
+     *
+     * @param objectMapper The mapper used to bind and write bodies
+     */
+    public final void prepare(ObjectMapper objectMapper) {
+        JavaType handlerType = objectMapper.constructType(getClass()).findSuperType(TypedRequestHandler.class);
+        this.codec = new Codec(objectMapper.readerFor(handlerType.containedType(0)),
+                objectMapper.writerFor(handlerType.containedType(1)));
+    }
+
+    @Override
+    public final void handle(RequestPayload payload) {
+        Codec current = this.codec;
+        if (current == null) {
+            prepare(MapUtils.createObjectMapper());
+            current = this.codec;
+        }
+        I body = payload.getBodyAs(current.reader);
+        O response = handle(payload, body);
+        if (response != null) {
+            byte[] json;
+            try {
+                json = current.writer.writeValueAsBytes(response);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (json.length == 0 || json[0] != '{') {
+                throw new IllegalStateException("Response body must serialize to a JSON object");
+            }
+            payload.setRawBody(json);
+        }
+    }
+
+    /**
+     * Client implemented handle method for synchronous behavior.
+     *
+     * @param payload The Synchronous Request Payload
+     * @param body    The request body bound to its class, or null when the request has no body
+     * @return The response body, or null to leave the body of the payload unchanged
+     */
+    public abstract O handle(RequestPayload payload, I body);
+
+    private static final class Codec {
+        private final ObjectReader reader;
+        private final ObjectWriter writer;
+
+        Codec(ObjectReader reader, ObjectWriter writer) {
+            this.reader = reader;
+            this.writer = writer;
+        }
+    }
+}
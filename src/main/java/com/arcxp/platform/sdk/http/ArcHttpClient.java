@@ -1,7 +1,10 @@
 package com.arcxp.platform.sdk.http;
 
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
@@ -119,4 +122,52 @@ public interface ArcHttpClient {
      */
     <T> Response<T> delete(String url, Map<String, String> headers, Class<T> responseClass);
 
+    /**
+     * GET request with a response read token by token as it is received, for responses too large to hold in memory.
+     * The consumer is only called for a successful response with a body, and the connection is released when it
+     * returns or throws.
+     *
+     * @param url      The url to call
+     * @param headers  The additional headers to be sent with the request
+     * @param consumer Reads the body from the parser
+     * @return The response, with no data
+     * @throws UnsupportedOperationException if the client does not support streaming
+     */
+    default Response<Void> stream(String url, Map<String, String> headers, Consumer<JsonParser> consumer) {
+        throw new UnsupportedOperationException("Streaming is not supported by " + getClass().getName());
+    }
+
+    /**
+     * GET request with a response read one element at a time from a JSON array, for responses too large to hold in
+     * memory. Only the element being read is held in memory. The stream must be closed, which releases the
+     * connection, unless it is read to the end; use {@link Stream#iterator()} to iterate it instead.
+     *
+     * @param <T>          The type of the elements
+     * @param url          The url to call
+     * @param headers      The additional headers to be sent with the request
+     * @param arrayPointer The JSON pointer of the array in the response, such as {@code /items}, or an empty string
+     *                     if the response is the array
+     * @param elementClass The class of the elements
+     * @return The elements, or an empty stream if the request failed or the response has no array at the pointer
+     * @throws UnsupportedOperationException if the client does not support streaming
+     */
+    default <T> Stream<T> streamArray(String url, Map<String, String> headers, String arrayPointer,
+                                      Class<T> elementClass) {
+        throw new UnsupportedOperationException("Streaming is not supported by " + getClass().getName());
+    }
+
+    /**
+     * GET request with a response read from its raw body as it is received. The reader is only called for a
+     * successful response with a body, and the connection is released when it returns or throws.
+     *
+     * @param <R>     The type of the result read
+     * @param url     The url to call
+     * @param headers The additional headers to be sent with the request
+     * @param reader  Reads the body
+     * @return The response with the result of the reader as data
+     * @throws UnsupportedOperationException if the client does not support streaming
+     */
+    default <R> Response<R> read(String url, Map<String, String> headers, BodyReader<R> reader) {
+        throw new UnsupportedOperationException("Streaming is not supported by " + getClass().getName());
+    }
 }
@@ -0,0 +1,255 @@
+package com.arcxp.platform.sdk.http;
+
+import com.arcxp.platform.sdk.handlers.InvocationContext;
+import com.arcxp.platform.sdk.utils.ArcHelper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.StringBody;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The parts of an Arc API call shared by the blocking and the asynchronous clients: qualifying the url, the
+ * authentication and site headers, the JSON and multipart bodies, the invocation deadline and reading the response.
+ */
+final class ArcRequestSupport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ArcRequestSupport.class);
+
+    private final Environment env;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The timeouts of every request, which the deadline of the current invocation can only shorten.
+     */
+    private final RequestConfig requestConfig;
+
+    /**
+     * Whether object payloads are serialized onto the connection rather than to bytes.
+     */
+    private final boolean chunkedRequestBodies;
+
+    ArcRequestSupport(Environment env, ObjectMapper objectMapper, RequestConfig requestConfig) {
+        this.env = env;
+        this.objectMapper = objectMapper;
+        this.requestConfig = requestConfig;
+        this.chunkedRequestBodies = env.getProperty("arc.http.chunkedRequestBodies", Boolean.class, Boolean.FALSE);
+    }
+
+    RequestConfig getRequestConfig() {
+        return requestConfig;
+    }
+
+    /**
+     * Constructs a complete URL from a given path or returns the URL if already complete.
+     * If the input is a path (starting with "/"), it prepends the protocol (http or https
+     * based on a property) and the host to the path. If the input is already a complete URL,
+     * it is returned as-is.
+     *
+     * @param pathOrUrl the path (starting with "/") or the complete URL to process
+     * @return the complete URL as a {@code String}
+     */
+    String constructFullyQualifiedUrl(String pathOrUrl) {
+        // Check if it's a path
+        if (pathOrUrl.startsWith("/")) {
+            String protocol = env.getProperty("hostSecure", Boolean.class, true) ? "https" : "http";
+            return protocol + "://" + env.getProperty("host") + pathOrUrl;
+        }
+        return pathOrUrl;
+    }
+
+    /**
+     * Adds a JSON payload to the provided HTTP request. The payload can be an object, serialized as JSON, or a
+     * JSON-formatted string, byte array or input stream, sent as is. Objects are streamed onto the connection with
+     * chunked transfer encoding when {@code arc.http.chunkedRequestBodies} is set, and serialized to bytes otherwise,
+     * never to a string. Input streams are sent chunked, and read only once, so their requests are not retried.
+     *
+     * @param json    The payload to be added.
+     * @param request The HTTP request to which the JSON payload should be added.
+     *                This request must be capable of enclosing an entity (i.e., a POST or PUT request).
+     * @throws JsonProcessingException If the provided object cannot be converted to JSON.
+     *                                 This exception is caught internally and logged as an error.
+     */
+    void addPayload(Object json, HttpEntityEnclosingRequestBase request) {
+        try {
+            AbstractHttpEntity entity;
+            if (json instanceof String) {
+                entity = new StringEntity((String) json, StandardCharsets.UTF_8);
+            } else if (json instanceof byte[]) {
+                entity = new ByteArrayEntity((byte[]) json);
+            } else if (json instanceof InputStream) {
+                entity = new InputStreamEntity((InputStream) json);
+                entity.setChunked(true);
+            } else if (chunkedRequestBodies) {
+                entity = new JsonEntity(json, objectMapper);
+            } else {
+                entity = new ByteArrayEntity(objectMapper.writeValueAsBytes(json));
+            }
+            entity.setContentType("application/json");
+            request.setEntity(entity);
+        } catch (JsonProcessingException e) {
+            LOG.error("Error Writing Payload to JSON.", e);
+        }
+    }
+
+    /**
+     * The multipart form body of a request.
+     *
+     * @param data The form data
+     * @return The entity
+     */
+    HttpEntity multipartEntity(MultiPartFormData data) {
+        if (data.getContentType().equals(MultiPartFormData.ContentType.APPLICATION_JSON)) {
+            return MultipartEntityBuilder.create()
+                    .addPart(data.getName(), new StringBody(data.getBody().toString(), ContentType.APPLICATION_JSON))
+                    .build();
+        }
+        throw new RuntimeException("invalid content type");
+    }
+
+    void addHeaders(HttpUriRequest request, Map<String, String> headers) {
+        if (request != null) {
+            addArcAuthHeaders(request);
+            if (headers != null) {
+                headers.entrySet().stream().forEach((entry) -> {
+                    request.addHeader(entry.getKey(), entry.getValue());
+                });
+            }
+        }
+    }
+
+    private void addArcAuthHeaders(HttpUriRequest request) {
+        if (request.getURI() != null && ArcHelper.isArcAPI(request.getURI().getHost())) {
+            String arcToken = getArcToken();
+            if (StringUtils.isEmpty(arcToken)) {
+                LOG.warn("Arc Bearer Token not found.");
+            } else {
+                request.addHeader("Authorization", "Bearer " + arcToken);
+            }
+        } else {
+            request.addHeader("arc-organization", env.getProperty("org"));
+            request.addHeader("arc-v2-username", "api");
+        }
+        request.addHeader("Arc-Site", env.getProperty("site"));
+    }
+
+    /**
+     * Check for a Personal Access Token at the IFX 2.0 expected path.
+     */
+    private String getArcToken() {
+        String arcToken = env.getProperty("PERSONAL_ACCESS_TOKEN");
+
+        if (StringUtils.isEmpty(arcToken)) {
+            arcToken = env.getProperty("personal.access.token");
+        }
+
+        return arcToken;
+    }
+
+    /**
+     * Identifies a request by its method, url and headers. The headers carry the credentials and the site, and any
+     * header the response may vary on, so requests with the same key get the same response. The response cache leaves
+     * the conditional headers out, as it sets them itself to revalidate an entry; requests that share a response in
+     * flight keep them, as a conditional request may be answered {@code 304} with no body.
+     *
+     * @param request            The request, with all its headers set
+     * @param conditionalHeaders Whether {@code If-None-Match} and {@code If-Modified-Since} are part of the key
+     * @return The key
+     */
+    static String requestKey(HttpUriRequest request, boolean conditionalHeaders) {
+        List<String> headers = new ArrayList<>();
+        for (Header header : request.getAllHeaders()) {
+            String name = header.getName().toLowerCase(Locale.ROOT);
+            if (conditionalHeaders || !name.equals("if-none-match") && !name.equals("if-modified-since")) {
+                headers.add(name + ':' + header.getValue());
+            }
+        }
+        Collections.sort(headers);
+        StringBuilder key = new StringBuilder(request.getMethod()).append(' ').append(request.getURI());
+        for (String header : headers) {
+            key.append('\n').append(header);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Clamps the timeouts of a request to the time left in the current invocation, so that a slow Arc API does not
+     * hold the function past its Lambda timeout.
+     *
+     * @param request The request to send
+     * @return False if the invocation has no time left
+     */
+    boolean applyDeadline(HttpUriRequest request) {
+        InvocationContext invocation = InvocationContext.current();
+        if (!invocation.hasDeadline() || !(request instanceof HttpRequestBase)) {
+            return true;
+        }
+        long remainingMillis = invocation.getRemainingMillis();
+        if (remainingMillis <= 0L) {
+            return false;
+        }
+        int limit = (int) Math.min(Integer.MAX_VALUE, remainingMillis);
+        ((HttpRequestBase) request).setConfig(RequestConfig.copy(requestConfig)
+                .setConnectTimeout(clamp(requestConfig.getConnectTimeout(), limit))
+                .setConnectionRequestTimeout(clamp(requestConfig.getConnectionRequestTimeout(), limit))
+                .setSocketTimeout(clamp(requestConfig.getSocketTimeout(), limit))
+                .build());
+        return true;
+    }
+
+    private static int clamp(int timeout, int limit) {
+        return timeout <= 0 ? limit : Math.min(timeout, limit);
+    }
+
+    /**
+     * Sets the status and the data of a response from the body received. An {@code ObjectNode} body gets the status
+     * code added as {@code httpStatusCode}.
+     *
+     * @param arcResponse   The response to fill
+     * @param code          The status code
+     * @param content       The body, may be empty
+     * @param responseClass The class of the data
+     * @throws IOException if the body cannot be read as the response class
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    <T> void readResponse(Response arcResponse, int code, byte[] content, Class<T> responseClass)
+            throws IOException {
+        arcResponse.setStatus(code);
+        if (ArrayUtils.isEmpty(content)) {
+            arcResponse.setData(null);
+        } else if (responseClass.isAssignableFrom(ObjectNode.class)) {
+            ObjectNode node = (ObjectNode) objectMapper.readTree(content);
+            node.put("httpStatusCode", code);
+            arcResponse.setData(node);
+        } else {
+            T result = objectMapper.readValue(content, responseClass);
+            arcResponse.setData(result);
+        }
+    }
+}
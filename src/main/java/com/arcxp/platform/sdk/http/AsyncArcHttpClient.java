@@ -0,0 +1,131 @@
+package com.arcxp.platform.sdk.http;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Non-blocking Arc Commerce Http Client for calls to Commerce Apis. Requests are sent as soon as they are made, so a
+ * handler can start several calls and join them in about the time of the slowest one.
+ *
+ * <p>The futures complete the way {@link ArcHttpClient} returns: a request that fails is logged and completes with a
+ * response without data, and a status of zero when no response was received. The futures complete on the I/O
+ * threads of the client, so dependent stages that block should run with the {@code *Async} methods of
+ * {@link CompletableFuture}.</p>
+ */
+public interface AsyncArcHttpClient {
+
+
+    /**
+     * GET request with an unstructured response.
+     *
+     * @param url     The url to call
+     * @param headers The additional headers to be sent with the request
+     * @return The future response with unstructured ObjectNode data
+     */
+    CompletableFuture<Response<ObjectNode>> get(String url, Map<String, String> headers);
+
+    /**
+     * GET request with a typed(structured) response.
+     *
+     * @param <T>           The type of response object
+     * @param url           The url to call
+     * @param headers       The additional headers to be sent with the request
+     * @param responseClass The class of the response object
+     * @return The future response with data populated in the response class
+     */
+    <T> CompletableFuture<Response<T>> get(String url, Map<String, String> headers, Class<T> responseClass);
+
+    /**
+     * POST request with an unstructured response.
+     *
+     * @param url     The url to call
+     * @param headers The additional headers to be sent with the request
+     * @param json    The body of the request
+     * @return The future response with unstructured ObjectNode data
+     */
+    CompletableFuture<Response<ObjectNode>> post(String url, Map<String, String> headers, Object json);
+
+    /**
+     * Multipart Form POST request with an unstructured response.
+     *
+     * @param url     The url to call
+     * @param headers The additional headers to be sent with the request
+     * @param data    Multipart Form Data body of the request
+     * @return The future response with unstructured ObjectNode data
+     */
+    CompletableFuture<Response<ObjectNode>> post(String url, Map<String, String> headers, MultiPartFormData data);
+
+    /**
+     * POST request with a typed(structured) response.
+     *
+     * @param <T>           The type of response object
+     * @param url           The url to call
+     * @param headers       The additional headers to be sent with the request
+     * @param json          The body of the request
+     * @param responseClass The class of the response object
+     * @return The future response with data populated in the response class
+     */
+    <T> CompletableFuture<Response<T>> post(String url, Map<String, String> headers, Object json,
+                                            Class<T> responseClass);
+
+    /**
+     * Multipart Form POST request with a typed(structured) response.
+     *
+     * @param <T>           The type of response object
+     * @param url           The url to call
+     * @param headers       The additional headers to be sent with the request
+     * @param data          Multipart Form Data body of the request
+     * @param responseClass The class of the response object
+     * @return The future response with data populated in the response class
+     */
+    <T> CompletableFuture<Response<T>> post(String url, Map<String, String> headers, MultiPartFormData data,
+                                            Class<T> responseClass);
+
+    /**
+     * PUT request with an unstructured response.
+     *
+     * @param url     The url to call
+     * @param headers The additional headers to be sent with the request
+     * @param json    The body of the request
+     * @return The future response with unstructured ObjectNode data
+     */
+    CompletableFuture<Response<ObjectNode>> put(String url, Map<String, String> headers, Object json);
+
+    /**
+     * PUT request with a typed(structured) response.
+     *
+     * @param <T>           The type of response object
+     * @param url           The url to call
+     * @param headers       The additional headers to be sent with the request
+     * @param json          The body of the request
+     * @param responseClass The class of the response object
+     * @return The future response with data populated in the response class
+     */
+    <T> CompletableFuture<Response<T>> put(String url, Map<String, String> headers, Object json,
+                                           Class<T> responseClass);
+
+
+    /**
+     * DELETE request with an unstructured response.
+     *
+     * @param url     The url to call
+     * @param headers The additional headers to be sent with the request
+     * @return The future response with unstructured ObjectNode data
+     */
+    CompletableFuture<Response<ObjectNode>> delete(String url, Map<String, String> headers);
+
+
+    /**
+     * DELETE request with a typed(structured) response.
+     *
+     * @param <T>           The type of response object
+     * @param url           The url to call
+     * @param headers       The additional headers to be sent with the request
+     * @param responseClass The class of the response object
+     * @return The future response with data populated in the response class
+     */
+    <T> CompletableFuture<Response<T>> delete(String url, Map<String, String> headers, Class<T> responseClass);
+
+}
@@ -0,0 +1,23 @@
+package com.arcxp.platform.sdk.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the body of a response as it is received, without holding all of it in memory.
+ *
+ * @param <R> The type of the result read
+ */
+@FunctionalInterface
+public interface BodyReader<R> {
+
+    /**
+     * Reads the body. The connection is released when the reader returns, so the body must not be used afterwards,
+     * nor closed by the reader.
+     *
+     * @param body The body of the response
+     * @return The result, set as the data of the response
+     * @throws IOException if the body cannot be read
+     */
+    R read(InputStream body) throws IOException;
+}
@@ -0,0 +1,132 @@
+package com.arcxp.platform.sdk.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker of the calls to one host. After {@code failureThreshold} calls in a row fail, the circuit opens and
+ * calls fail at once without reaching the host. Once {@code openMillis} have passed, a single trial call is let
+ * through: the circuit closes if it succeeds, and opens again if it fails.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * The states of a circuit.
+     */
+    public enum State {
+        /**
+         * Calls go through.
+         */
+        CLOSED,
+        /**
+         * Calls fail at once.
+         */
+        OPEN,
+        /**
+         * A trial call is in flight, other calls fail at once.
+         */
+        HALF_OPEN
+    }
+
+    private final String host;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+    private final Consumer<State> listener;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long openings;
+
+    CircuitBreaker(String host, int failureThreshold, long openMillis, LongSupplier clock, Consumer<State> listener) {
+        this.host = host;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    /**
+     * Whether a call may be sent now. When the circuit has been open long enough, the call is the trial call.
+     *
+     * @return False if the call must fail at once
+     */
+    synchronized boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt >= openMillis) {
+                    transition(State.HALF_OPEN);
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+        }
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || state == State.CLOSED && consecutiveFailures >= failureThreshold) {
+            openedAt = clock.getAsLong();
+            openings++;
+            transition(State.OPEN);
+        }
+    }
+
+    /**
+     * Ends a call that neither succeeded nor failed, such as one whose body could not be serialized. A trial call
+     * puts the circuit back to open, so that the next call is the trial call.
+     */
+    synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            state = State.OPEN;
+        }
+    }
+
+    private void transition(State next) {
+        if (next == State.OPEN) {
+            LOG.warn("Circuit to {} opened after {} failures in a row, calls fail for {}ms", host,
+                    consecutiveFailures, openMillis);
+        } else {
+            LOG.info("Circuit to {} {}", host, next == State.CLOSED ? "closed" : "half open, sending a trial call");
+        }
+        state = next;
+        listener.accept(next);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * How many times the circuit has opened.
+     *
+     * @return The number of openings
+     */
+    public synchronized long getOpenings() {
+        return openings;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+}
@@ -0,0 +1,382 @@
+package com.arcxp.platform.sdk.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.entity.DeflateInputStream;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicHeader;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of the requests and responses of the blocking Arc HTTP client, read from the
+ * {@code arc.http.compression.*} properties. Requests advertise {@code gzip} and {@code deflate}, and compressed
+ * responses are decoded as they are read, up to {@code arc.http.compression.maxDecompressedBytes}, so that a small
+ * response cannot expand into more than the function can hold. Request bodies of at least
+ * {@code arc.http.compression.requestMinBytes} are gzipped for the urls starting with one of
+ * {@code arc.http.compression.requestPrefixes}, as only some Arc APIs accept compressed bodies.
+ */
+public final class ContentEncoding {
+
+    private final boolean enabled;
+    private final long maxDecompressedBytes;
+    private final long requestMinBytes;
+    private final Set<String> requestPrefixes;
+
+    private final LongAdder responseBytesReceived = new LongAdder();
+    private final LongAdder responseBytesDecoded = new LongAdder();
+    private final LongAdder requestBytesWritten = new LongAdder();
+    private final LongAdder requestBytesSent = new LongAdder();
+
+    ContentEncoding(boolean enabled, long maxDecompressedBytes, long requestMinBytes, Set<String> requestPrefixes) {
+        this.enabled = enabled;
+        this.maxDecompressedBytes = maxDecompressedBytes;
+        this.requestMinBytes = requestMinBytes;
+        this.requestPrefixes = requestPrefixes;
+    }
+
+    /**
+     * Reads the settings from the environment, using the defaults for the properties that are not set.
+     *
+     * @param env The environment
+     * @return The settings
+     */
+    public static ContentEncoding from(Environment env) {
+        return new ContentEncoding(env.getProperty("arc.http.compression.enabled", Boolean.class, Boolean.TRUE),
+                env.getProperty("arc.http.compression.maxDecompressedBytes", Long.class, 100L * 1024 * 1024),
+                env.getProperty("arc.http.compression.requestMinBytes", Long.class, 1024L),
+                StringUtils.commaDelimitedListToSet(env.getProperty("arc.http.compression.requestPrefixes", "")));
+    }
+
+    /**
+     * Replaces the content compression of a client builder with this one, or turns it off if it is not enabled.
+     *
+     * @param builder The builder
+     */
+    void configure(HttpClientBuilder builder) {
+        builder.disableContentCompression();
+        if (enabled) {
+            // First, so that the length and encoding headers are set from the compressed body
+            builder.addInterceptorFirst((HttpRequestInterceptor) (request, context) -> encode(request));
+            builder.addInterceptorLast((HttpResponseInterceptor) (response, context) -> decode(response));
+        }
+    }
+
+    private void encode(HttpRequest request) {
+        if (!request.containsHeader("Accept-Encoding")) {
+            request.addHeader("Accept-Encoding", "gzip, deflate");
+        }
+        if (requestPrefixes.isEmpty() || !(request instanceof HttpEntityEnclosingRequest)) {
+            return;
+        }
+        HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+        HttpEntity entity = enclosing.getEntity();
+        // Bodies of unknown length are streamed, which is only worth it for large ones
+        if (entity != null && entity.getContentEncoding() == null
+                && (entity.getContentLength() < 0L || entity.getContentLength() >= requestMinBytes)
+                && acceptsCompressedBodies(request)) {
+            enclosing.setEntity(new GzipEntity(entity));
+        }
+    }
+
+    private boolean acceptsCompressedBodies(HttpRequest request) {
+        URI uri;
+        if (request instanceof HttpRequestWrapper && ((HttpRequestWrapper) request).getOriginal()
+                instanceof HttpUriRequest) {
+            uri = ((HttpUriRequest) ((HttpRequestWrapper) request).getOriginal()).getURI();
+        } else {
+            uri = URI.create(request.getRequestLine().getUri());
+        }
+        String url = uri.toString();
+        for (String prefix : requestPrefixes) {
+            String target = prefix.startsWith("/") ? uri.getRawPath() : url;
+            if (target != null && target.startsWith(prefix.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void decode(HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        Header encoding = entity == null ? null : entity.getContentEncoding();
+        if (encoding == null) {
+            return;
+        }
+        String codec = encoding.getValue().trim().toLowerCase(Locale.ROOT);
+        if (codec.equals("gzip") || codec.equals("x-gzip") || codec.equals("deflate")) {
+            response.setEntity(new DecodingEntity(entity, codec.equals("deflate")));
+            response.removeHeaders("Content-Length");
+            response.removeHeaders("Content-Encoding");
+            response.removeHeaders("Content-MD5");
+        }
+    }
+
+    /**
+     * The bytes compressed and decoded since the client was created.
+     *
+     * @return The statistics
+     */
+    public Stats getStats() {
+        return new Stats(responseBytesReceived.sum(), responseBytesDecoded.sum(), requestBytesWritten.sum(),
+                requestBytesSent.sum());
+    }
+
+    /**
+     * A compressed response body, decoded as it is read.
+     */
+    private final class DecodingEntity extends HttpEntityWrapper {
+
+        private final boolean deflate;
+
+        private InputStream content;
+
+        DecodingEntity(HttpEntity wrapped, boolean deflate) {
+            super(wrapped);
+            this.deflate = deflate;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            if (content == null) {
+                InputStream received = new CountingInputStream(wrappedEntity.getContent(), responseBytesReceived,
+                        Long.MAX_VALUE);
+                content = new CountingInputStream(deflate ? new DeflateInputStream(received)
+                        : new GZIPInputStream(received), responseBytesDecoded, maxDecompressedBytes);
+            }
+            return content;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1L;
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return null;
+        }
+    }
+
+    /**
+     * A request body gzipped as it is written.
+     */
+    private final class GzipEntity extends HttpEntityWrapper {
+
+        GzipEntity(HttpEntity wrapped) {
+            super(wrapped);
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            CountingOutputStream sent = new CountingOutputStream(out);
+            long written = compress(sent);
+            requestBytesWritten.add(written);
+            requestBytesSent.add(sent.count);
+        }
+
+        /**
+         * The gzipped body, compressed in memory, for the clients and loggers that read bodies rather than writing
+         * them. Only the bodies written to the connection are counted as sent.
+         */
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            compress(compressed);
+            return new ByteArrayInputStream(compressed.toByteArray());
+        }
+
+        /**
+         * Writes the gzipped body.
+         *
+         * @return The bytes of the body before compression
+         */
+        private long compress(OutputStream out) throws IOException {
+            GZIPOutputStream gzip = new GZIPOutputStream(out, 8192);
+            CountingOutputStream written = new CountingOutputStream(gzip);
+            wrappedEntity.writeTo(written);
+            // Not closed, as the connection stays open for the response
+            gzip.finish();
+            return written.count;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1L;
+        }
+
+        @Override
+        public boolean isChunked() {
+            return true;
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return new BasicHeader("Content-Encoding", "gzip");
+        }
+    }
+
+    /**
+     * Counts the bytes read, and fails once more than a limit have been read.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final LongAdder total;
+        private final long limit;
+        private long count;
+
+        CountingInputStream(InputStream in, LongAdder total, long limit) {
+            super(in);
+            this.total = total;
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) throws IOException {
+            count += read;
+            total.add(read);
+            if (count > limit) {
+                throw new IOException("Response body exceeds " + limit + " bytes once decompressed");
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+    }
+
+    /**
+     * The bytes compressed and decoded by a client.
+     */
+    public static final class Stats {
+        private final long responseBytesReceived;
+        private final long responseBytesDecoded;
+        private final long requestBytesWritten;
+        private final long requestBytesSent;
+
+        Stats(long responseBytesReceived, long responseBytesDecoded, long requestBytesWritten, long requestBytesSent) {
+            this.responseBytesReceived = responseBytesReceived;
+            this.responseBytesDecoded = responseBytesDecoded;
+            this.requestBytesWritten = requestBytesWritten;
+            this.requestBytesSent = requestBytesSent;
+        }
+
+        /**
+         * The compressed bytes of the response bodies read.
+         *
+         * @return The number of bytes
+         */
+        public long getResponseBytesReceived() {
+            return responseBytesReceived;
+        }
+
+        /**
+         * The bytes decoded from the compressed response bodies.
+         *
+         * @return The number of bytes
+         */
+        public long getResponseBytesDecoded() {
+            return responseBytesDecoded;
+        }
+
+        /**
+         * The bytes of the request bodies gzipped, before compression.
+         *
+         * @return The number of bytes
+         */
+        public long getRequestBytesWritten() {
+            return requestBytesWritten;
+        }
+
+        /**
+         * The bytes of the gzipped request bodies sent.
+         *
+         * @return The number of bytes
+         */
+        public long getRequestBytesSent() {
+            return requestBytesSent;
+        }
+
+        /**
+         * The bytes that did not cross the network thanks to compression, in both directions.
+         *
+         * @return The number of bytes saved
+         */
+        public long getBytesSaved() {
+            return responseBytesDecoded - responseBytesReceived + requestBytesWritten - requestBytesSent;
+        }
+
+        @Override
+        public String toString() {
+            return "responseBytesReceived=" + responseBytesReceived + " responseBytesDecoded=" + responseBytesDecoded
+                    + " requestBytesWritten=" + requestBytesWritten + " requestBytesSent=" + requestBytesSent;
+        }
+    }
+}
@@ -1,64 +1,279 @@
 package com.arcxp.platform.sdk.http;
 
-import com.arcxp.platform.sdk.utils.ArcHelper;
+import com.arcxp.platform.sdk.handlers.InvocationContext;
+import com.arcxp.platform.sdk.metrics.MetricsRecorder;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.apache.commons.lang.ArrayUtils;
-import org.apache.commons.lang.StringUtils;
-import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
-import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * Default Implementation of Arc HTTP Client based on Apache Http Components.
+ * Default Implementation of Arc HTTP Client based on Apache Http Components. Connections are pooled and reused across
+ * invocations, with the limits and timeouts of {@link HttpClientSettings}. Connections that have expired or been idle
+ * too long are closed before a request is sent, rather than by a background thread, so that connections left open
+ * while the container was frozen are dropped on the first request after it thaws.
+ *
+ * <p>When {@code arc.http.cache.enabled} is set, the responses to GET requests are cached across invocations by an
+ * {@link HttpResponseCache}.</p>
+ *
+ * <p>GET requests with the same url and headers, including the credentials and the site, that are sent while one is
+ * already in flight wait for its response instead of sending their own.</p>
+ *
+ * <p>Requests that fail to connect or get a {@code 429}, {@code 502}, {@code 503} or {@code 504} are sent again as
+ * allowed by the {@link RetryPolicy}, within the time left in the invocation. Each host has a {@link CircuitBreaker}
+ * that stops sending requests to it for a while after {@code arc.http.circuitBreaker.failureThreshold} requests in a
+ * row failed, so that a struggling Arc API is not kept busy by calls bound to fail.</p>
+ *
+ * <p>Large responses can be read as they are received with {@code stream}, {@code streamArray} and {@code read},
+ * which hold neither the whole body nor its whole tree in memory.</p>
+ *
+ * <p>Responses are compressed when the server supports it, and request bodies when configured, by the
+ * {@link ContentEncoding}.</p>
  */
 public class DefaultArcHttpClient implements ArcHttpClient {
 
     private static final Logger LOG = LoggerFactory.getLogger(DefaultArcHttpClient.class);
 
-    private final CloseableHttpClient httpclient;
+    private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
 
-    private final ObjectMapper objectMapper;
+    private volatile CloseableHttpClient httpclient;
+
+    private volatile PoolingHttpClientConnectionManager connectionManager;
+
+    private volatile long lastEviction = System.nanoTime();
 
     private final Environment env;
 
+    private final ObjectMapper objectMapper;
+
+    private final HttpClientSettings settings;
+
+    private final ArcRequestSupport support;
+
+    private final HttpResponseCache responseCache;
+
+    private final ContentEncoding contentEncoding;
+
+    /**
+     * Whether identical GET requests sent at the same time share one response.
+     */
+    private final boolean coalesceGets;
+
+    private final ConcurrentMap<String, CompletableFuture<Exchange>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder collapsedRequests = new LongAdder();
+
+    private final RetryPolicy retryPolicy;
+
+    /**
+     * Failures in a row that open the circuit to a host, 0 if circuits never open.
+     */
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    private final LongAdder retries = new LongAdder();
+
+    private final LongAdder shortCircuitedRequests = new LongAdder();
+
+    private volatile MetricsRecorder metricsRecorder;
+
     public DefaultArcHttpClient(Environment env, ObjectMapper objectMapper) {
+        this.env = env;
+        this.objectMapper = objectMapper;
+        this.settings = HttpClientSettings.from(env);
+        this.support = new ArcRequestSupport(env, objectMapper, settings.createRequestConfig());
+        this.responseCache = HttpResponseCache.from(env);
+        this.contentEncoding = ContentEncoding.from(env);
+        this.coalesceGets = env.getProperty("arc.http.coalesceGets", Boolean.class, Boolean.TRUE);
+        this.retryPolicy = RetryPolicy.from(env);
+        this.failureThreshold = env.getProperty("arc.http.circuitBreaker.failureThreshold", Integer.class, 5);
+        this.openMillis = env.getProperty("arc.http.circuitBreaker.openMillis", Long.class, 30000L);
+        this.httpclient = createHttpClient();
+
+        LOG.info("Arc HTTP Client Created");
+
+    }
+
+    private CloseableHttpClient createHttpClient() {
+        HttpClientBuilder builder;
         if (Boolean.parseBoolean(env.getProperty("tracing"))) {
-            this.httpclient = com.amazonaws.xray.proxies.apache.http.HttpClientBuilder.create().build();
+            builder = com.amazonaws.xray.proxies.apache.http.HttpClientBuilder.create();
         } else {
-            this.httpclient = HttpClientBuilder.create().build();
+            builder = HttpClientBuilder.create();
         }
+        PoolingHttpClientConnectionManager pool = settings.createConnectionManager();
+        this.connectionManager = pool;
+        contentEncoding.configure(builder);
+        // Retries are left to the retry policy, which backs off and honours the circuit breakers
+        return builder.setConnectionManager(pool)
+                .setDefaultRequestConfig(support.getRequestConfig())
+                .disableAutomaticRetries()
+                .build();
+    }
 
-        this.env = env;
+    /**
+     * The connection pool and timeout settings of this client.
+     *
+     * @return The settings
+     */
+    public HttpClientSettings getSettings() {
+        return settings;
+    }
 
-        this.objectMapper = objectMapper;
-        LOG.info("Arc HTTP Client Created");
+    /**
+     * The cache of the responses to GET requests.
+     *
+     * @return The cache, or null if caching is not enabled
+     */
+    public HttpResponseCache getResponseCache() {
+        return responseCache;
+    }
 
+    /**
+     * The recorder the retries and circuit breaker transitions are counted by, as {@code HttpRetries},
+     * {@code HttpShortCircuits}, {@code HttpCircuitOpened} and {@code HttpCircuitClosed}, with the dimensions of the
+     * handler sending the request.
+     *
+     * @param metricsRecorder The metrics recorder
+     */
+    @Autowired(required = false)
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * The compression of the requests and responses, with the bytes it saved.
+     *
+     * @return The content encoding
+     */
+    public ContentEncoding getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * How many GET requests were not sent because an identical request was in flight, whose response they shared.
+     *
+     * @return The number of collapsed requests
+     */
+    public long getCollapsedRequests() {
+        return collapsedRequests.sum();
+    }
+
+    /**
+     * How many times a request was sent again after a failure.
+     *
+     * @return The number of retries
+     */
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * How many requests failed at once, without being sent, because the circuit to their host was open.
+     *
+     * @return The number of short-circuited requests
+     */
+    public long getShortCircuitedRequests() {
+        return shortCircuitedRequests.sum();
+    }
+
+    /**
+     * The circuit breakers of the hosts called so far, with their state and how many times they opened.
+     *
+     * @return The circuit breakers
+     */
+    public Collection<CircuitBreaker> getCircuitBreakers() {
+        return Collections.unmodifiableCollection(circuitBreakers.values());
+    }
+
+    /**
+     * The state of the connection pool, for monitoring: the connections leased by requests in flight, the idle
+     * connections available for reuse, and the requests waiting for a connection.
+     *
+     * @return The totals of all routes
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Closes the pooled connections that have expired or have been idle longer than the idle timeout, at most once a
+     * second.
+     */
+    private void evictConnections() {
+        long now = System.nanoTime();
+        if (now - lastEviction < EVICTION_INTERVAL_NANOS) {
+            return;
+        }
+        lastEviction = now;
+        PoolingHttpClientConnectionManager pool = this.connectionManager;
+        pool.closeExpiredConnections();
+        if (settings.getIdleTimeoutMillis() >= 0L) {
+            pool.closeIdleConnections(settings.getIdleTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Replaces the underlying client, closing the connections it holds. Connections opened before a SnapStart or
+     * CRaC checkpoint are not usable after the restore, so they are dropped before the checkpoint and the client is
+     * rebuilt after it. Requests in flight on the previous client are not interrupted.
+     */
+    public synchronized void resetConnections() {
+        CloseableHttpClient previous = this.httpclient;
+        this.httpclient = createHttpClient();
+        try {
+            previous.close();
+        } catch (IOException e) {
+            LOG.warn("Error closing Arc HTTP connections", e);
+        }
     }
 
     @Override
     public <T> Response<T> get(String url, Map<String, String> headers, Class<T> responseClass) {
-        HttpGet get = new HttpGet(constructFullyQualifiedUrl(url));
+        HttpGet get = new HttpGet(support.constructFullyQualifiedUrl(url));
         return request(get, headers, responseClass);
     }
 
@@ -68,8 +283,8 @@ public class DefaultArcHttpClient implements ArcHttpClient {
 
     @Override
     public <T> Response<T> post(String url, Map<String, String> headers, Object json, Class<T> responseClass) {
-        HttpPost post = new HttpPost(constructFullyQualifiedUrl(url));
-        addPayload(json, post);
+        HttpPost post = new HttpPost(support.constructFullyQualifiedUrl(url));
+        support.addPayload(json, post);
         return request(post, headers, responseClass);
     }
 
@@ -80,17 +295,8 @@ public class DefaultArcHttpClient implements ArcHttpClient {
     @Override
     public <T> Response<T> post(String url, Map<String, String> headers, MultiPartFormData data,
                                 Class<T> responseClass) {
-        HttpPost post = new HttpPost(constructFullyQualifiedUrl(url));
-        HttpEntity entity = null;
-        if (data.getContentType().equals(MultiPartFormData.ContentType.APPLICATION_JSON)) {
-            entity = MultipartEntityBuilder.create()
-                    .addPart(data.getName(), new StringBody(data.getBody().toString(), ContentType.APPLICATION_JSON))
-                    .build();
-        } else {
-            throw new RuntimeException("invalid content type");
-        }
-
-        post.setEntity(entity);
+        HttpPost post = new HttpPost(support.constructFullyQualifiedUrl(url));
+        post.setEntity(support.multipartEntity(data));
         return request(post, headers, responseClass);
     }
 
@@ -101,8 +307,8 @@ public class DefaultArcHttpClient implements ArcHttpClient {
 
     @Override
     public <T> Response<T> put(String url, Map<String, String> headers, Object json, Class<T> responseClass) {
-        HttpPut put = new HttpPut(constructFullyQualifiedUrl(url));
-        addPayload(json, put);
+        HttpPut put = new HttpPut(support.constructFullyQualifiedUrl(url));
+        support.addPayload(json, put);
         return request(put, headers, responseClass);
     }
 
@@ -112,77 +318,111 @@ public class DefaultArcHttpClient implements ArcHttpClient {
 
     @Override
     public <T> Response<T> delete(String url, Map<String, String> headers, Class<T> responseClass) {
-        return request(new HttpDelete(constructFullyQualifiedUrl(url)), headers, responseClass);
+        return request(new HttpDelete(support.constructFullyQualifiedUrl(url)), headers, responseClass);
     }
 
     public Response<ObjectNode> delete(String url, Map<String, String> headers) {
         return delete(url, headers, ObjectNode.class);
     }
 
-    /**
-     * Adds a JSON payload to the provided HTTP request. The payload can be a JSON object or a JSON-formatted string.
-     * The method sets the content type of the payload to `application/json` and encodes it using UTF-8.
-     *
-     * @param json    The JSON object or JSON-formatted string to be added as the payload.
-     *                If the object is not a string, it will be converted to a JSON string using an ObjectMapper.
-     * @param request The HTTP request to which the JSON payload should be added.
-     *                This request must be capable of enclosing an entity (i.e., a POST or PUT request).
-     * @throws JsonProcessingException If the provided object cannot be converted to a JSON string.
-     *                                 This exception is caught internally and logged as an error.
-     */
-    private void addPayload(Object json, HttpEntityEnclosingRequestBase request) {
-        try {
-            String jsonStr = null;
-            if (json instanceof String) {
-                jsonStr = (String) json;
-            } else {
-                jsonStr = objectMapper.writeValueAsString(json);
+    @Override
+    public Response<Void> stream(String url, Map<String, String> headers, Consumer<JsonParser> consumer) {
+        return read(url, headers, body -> {
+            try (JsonParser parser = createParser(body)) {
+                consumer.accept(parser);
             }
-            StringEntity entity = new StringEntity(jsonStr, StandardCharsets.UTF_8);
-            entity.setContentType("application/json");
-            request.setEntity(entity);
-        } catch (JsonProcessingException e) {
-            LOG.error("Error Writing Payload to JSON.", e);
-        }
+            return null;
+        });
     }
 
-    private void addHeaders(HttpUriRequest request, Map<String, String> headers) {
-        if (request != null) {
-            addArcAuthHeaders(request);
-            if (headers != null) {
-                headers.entrySet().stream().forEach((entry) -> {
-                    request.addHeader(entry.getKey(), entry.getValue());
-                });
+    @Override
+    public <T> Stream<T> streamArray(String url, Map<String, String> headers, String arrayPointer,
+                                     Class<T> elementClass) {
+        CloseableHttpResponse response = open(url, headers);
+        if (response == null) {
+            return Stream.empty();
+        }
+        try {
+            int status = response.getStatusLine().getStatusCode();
+            if (!isSuccess(status) || response.getEntity() == null) {
+                LOG.error("No array to stream from {}, status {}", url, status);
+                response.close();
+                return Stream.empty();
+            }
+            JsonParser parser = createParser(response.getEntity().getContent());
+            if (!JsonArrayIterator.seek(parser, JsonPointer.compile(arrayPointer))) {
+                LOG.error("No array at {} in the response from {}", arrayPointer, url);
+                response.close();
+                return Stream.empty();
             }
+            JsonArrayIterator<T> elements = new JsonArrayIterator<>(parser, objectMapper, elementClass, response);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED), false)
+                    .onClose(elements::close);
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.error("Error streaming arc http response", e);
+            closeQuietly(response);
+            return Stream.empty();
         }
     }
 
-    private void addArcAuthHeaders(HttpUriRequest request) {
-        if (request.getURI() != null && ArcHelper.isArcAPI(request.getURI().getHost())) {
-            String arcToken = getArcToken();
-            if (StringUtils.isEmpty(arcToken)) {
-                LOG.warn("Arc Bearer Token not found.");
-            } else {
-                request.addHeader("Authorization", "Bearer " + arcToken);
+    @Override
+    public <R> Response<R> read(String url, Map<String, String> headers, BodyReader<R> reader) {
+        Response<R> arcResponse = new Response<>();
+        CloseableHttpResponse response = open(url, headers);
+        if (response == null) {
+            return arcResponse;
+        }
+        try {
+            int status = response.getStatusLine().getStatusCode();
+            arcResponse.setStatus(status);
+            if (isSuccess(status) && response.getEntity() != null) {
+                // The body is not closed, as closing it would read what is left of it: closing the response
+                // drops the connection instead, unless the body was read to the end
+                arcResponse.setData(reader.read(response.getEntity().getContent()));
             }
-        } else {
-            request.addHeader("arc-organization", env.getProperty("org"));
-            request.addHeader("arc-v2-username", "api");
+        } catch (IOException e) {
+            LOG.error("Error reading arc http response", e);
+        } finally {
+            closeQuietly(response);
         }
-        request.addHeader("Arc-Site", env.getProperty("site"));
+        return arcResponse;
     }
 
     /**
-     * Check for a Personal Access Token at the IFX 2.0 expected path.
+     * Sends a GET request whose response is read as it is received, bypassing the response cache and coalescing.
+     *
+     * @return The response, which the caller must close, or null if the request failed
      */
-    private String getArcToken() {
-        String arcToken = env.getProperty("PERSONAL_ACCESS_TOKEN");
-
-        if (StringUtils.isEmpty(arcToken)) {
-            arcToken = env.getProperty("personal.access.token");
+    private CloseableHttpResponse open(String url, Map<String, String> headers) {
+        HttpGet get = new HttpGet(support.constructFullyQualifiedUrl(url));
+        try {
+            if (!support.applyDeadline(get)) {
+                LOG.error("No time left in the invocation to send {} {}", get.getMethod(), get.getURI());
+                return null;
+            }
+            support.addHeaders(get, headers);
+            return send(get);
+        } catch (IOException e) {
+            LOG.error("Error sending arc http request", e);
+            return null;
         }
+    }
 
-        return arcToken;
+    private JsonParser createParser(InputStream body) throws IOException {
+        // Closing the parser must not close the body, which would read what is left of it
+        return objectMapper.getFactory().createParser(body).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
+    private static boolean isSuccess(int status) {
+        return status >= HttpStatus.SC_OK && status < HttpStatus.SC_MULTIPLE_CHOICES;
+    }
+
+    private static void closeQuietly(CloseableHttpResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            LOG.warn("Error closing arc http response", e);
+        }
     }
 
     /**
@@ -204,24 +444,20 @@ public class DefaultArcHttpClient implements ArcHttpClient {
         Response arcResponse = new Response();
         byte[] content = null;
         try {
-            addHeaders(request, headers);
-
-            try (CloseableHttpResponse response = this.httpclient.execute(request)) {
-                int code = response.getStatusLine().getStatusCode();
-                arcResponse.setStatus(code);
-                HttpEntity entityResponse = response.getEntity();
-                content = EntityUtils.toByteArray(entityResponse);
-                if (ArrayUtils.isEmpty(content)) {
-                    arcResponse.setData(null);
-                } else if (responseClass.isAssignableFrom(ObjectNode.class)) {
-                    ObjectNode node = (ObjectNode) objectMapper.readTree(content);
-                    node.put("httpStatusCode", code);
-                    arcResponse.setData(node);
-                } else {
-                    T result = objectMapper.readValue(content, responseClass);
-                    arcResponse.setData(result);
-                }
+            if (!support.applyDeadline(request)) {
+                LOG.error("No time left in the invocation to send {} {}", request.getMethod(), request.getURI());
+                return arcResponse;
             }
+            support.addHeaders(request, headers);
+
+            Exchange exchange = coalesceGets && "GET".equals(request.getMethod())
+                    ? coalesce(request) : exchange(request);
+            if (exchange == null) {
+                return arcResponse;
+            }
+            arcResponse.setStatus(exchange.status);
+            content = exchange.content;
+            support.readResponse(arcResponse, exchange.status, content, responseClass);
         } catch (JsonParseException e) {
             LOG.error("Failed to parse response. Status {}. Response {}.", arcResponse.getStatus(),
                     new String(content, StandardCharsets.UTF_8));
@@ -233,29 +469,219 @@ public class DefaultArcHttpClient implements ArcHttpClient {
     }
 
     /**
-     * Constructs a complete URL from a given path or returns the URL if already complete.
-     * If the input is a path (starting with "/"), it prepends the protocol (http or https
-     * based on a property) and the host to the path. If the input is already a complete URL,
-     * it is returned as-is.
+     * Sends a GET request, unless an identical one is already in flight, in which case its response is shared. Each
+     * caller reads its own data from the shared body.
      *
-     * @param pathOrUrl the path (starting with "/") or the complete URL to process
-     * @return the complete URL as a {@code String}
+     * @return The response, or null if the invocation ran out of time waiting for the shared response
      */
+    private Exchange coalesce(HttpUriRequest request) throws Exception {
+        String key = ArcRequestSupport.requestKey(request, true);
+        CompletableFuture<Exchange> flight = new CompletableFuture<>();
+        CompletableFuture<Exchange> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            collapsedRequests.increment();
+            return await(leader, request);
+        }
+        try {
+            Exchange exchange = exchange(request);
+            flight.complete(exchange);
+            return exchange;
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
 
-    private String constructFullyQualifiedUrl(String pathOrUrl) {
-        // Check if it's a path
-        if (pathOrUrl.startsWith("/")) {
-            String protocol = env.getProperty("hostSecure", Boolean.class, true) ? "https" : "http";
-            return protocol + "://" + env.getProperty("host") + pathOrUrl;
+    private static Exchange await(CompletableFuture<Exchange> flight, HttpUriRequest request) throws Exception {
+        InvocationContext invocation = InvocationContext.current();
+        try {
+            if (invocation.hasDeadline()) {
+                return flight.get(Math.max(0L, invocation.getRemainingMillis()), TimeUnit.MILLISECONDS);
+            }
+            return flight.get();
+        } catch (TimeoutException e) {
+            LOG.error("No time left in the invocation to wait for {} {}", request.getMethod(), request.getURI());
+            return null;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
         }
-        return pathOrUrl;
     }
-}
 
+    /**
+     * Sends a request, or answers it from the response cache.
+     *
+     * @return The response, or null if the circuit to the host is open
+     */
+    private Exchange exchange(HttpUriRequest request) throws IOException {
+        HttpResponseCache.Lookup cached = responseCache == null ? null : responseCache.lookup(request);
+        HttpResponseCache.Entry entry = cached == null ? null : cached.fresh();
+        if (entry != null) {
+            return new Exchange(entry.getStatus(), entry.getBody());
+        }
+        CloseableHttpResponse response = send(request);
+        if (response == null) {
+            return null;
+        }
+        try (CloseableHttpResponse received = response) {
+            int status = received.getStatusLine().getStatusCode();
+            byte[] content = received.getEntity() == null ? null : EntityUtils.toByteArray(received.getEntity());
+            if (cached != null) {
+                entry = responseCache.update(cached, request, received, content);
+                if (entry != null) {
+                    return new Exchange(entry.getStatus(), entry.getBody());
+                }
+            }
+            return new Exchange(status, content);
+        }
+    }
+
+    /**
+     * Sends a request, retrying failed attempts as allowed by the retry policy, and recording them with the circuit
+     * breaker of the host. The body of the response returned is left unread.
+     *
+     * @return The response, which the caller must close, or null if the circuit to the host is open
+     */
+    private CloseableHttpResponse send(HttpUriRequest request) throws IOException {
+        CircuitBreaker breaker = circuitBreaker(request);
+        boolean retryable = retryPolicy.canRetry(request);
+        for (int attempt = 1; ; attempt++) {
+            if (breaker != null && !breaker.allowRequest()) {
+                shortCircuitedRequests.increment();
+                count("HttpShortCircuits");
+                LOG.error("Circuit to {} is open, not sending {} {}", breaker.getHost(), request.getMethod(),
+                        request.getURI());
+                return null;
+            }
+            evictConnections();
+
+            CloseableHttpResponse response;
+            try {
+                response = attempt(request, breaker);
+            } catch (JsonProcessingException e) {
+                // A body that cannot be serialized is not the host failing
+                throw e;
+            } catch (IOException e) {
+                long delay = retryable ? retryDelay(attempt, null, breaker) : -1L;
+                if (delay < 0L) {
+                    throw e;
+                }
+                pause(request, delay, e);
+                continue;
+            }
+            boolean failed = RetryPolicy.isRetryable(response.getStatusLine().getStatusCode());
+            long delay = failed && retryable ? retryDelay(attempt, response, breaker) : -1L;
+            if (delay < 0L) {
+                return response;
+            }
+            // Release the connection before waiting
+            EntityUtils.consumeQuietly(response.getEntity());
+            response.close();
+            pause(request, delay, response.getStatusLine());
+        }
+    }
 
+    /**
+     * Sends a request once, recording the outcome with the circuit breaker of the host. An attempt that ends without
+     * an outcome, such as a body that cannot be serialized, releases the trial call of a half open circuit.
+     */
+    private CloseableHttpResponse attempt(HttpUriRequest request, CircuitBreaker breaker) throws IOException {
+        boolean recorded = false;
+        try {
+            CloseableHttpResponse response = this.httpclient.execute(request);
+            if (breaker != null) {
+                int status = response.getStatusLine().getStatusCode();
+                // Throttling is the host protecting itself, not failing
+                if (RetryPolicy.isRetryable(status) && status != HttpStatus.SC_TOO_MANY_REQUESTS) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+            }
+            recorded = true;
+            return response;
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            if (breaker != null) {
+                breaker.onFailure();
+            }
+            recorded = true;
+            throw e;
+        } finally {
+            if (breaker != null && !recorded) {
+                breaker.release();
+            }
+        }
+    }
 
+    /**
+     * How long to wait before sending a request again, unless it has been sent the most times allowed, the circuit
+     * to its host opened, or the invocation would run out of time.
+     *
+     * @return The delay in milliseconds, or a negative value if the request must not be sent again
+     */
+    private long retryDelay(int attempt, HttpResponse response, CircuitBreaker breaker) {
+        if (attempt >= retryPolicy.getMaxAttempts()
+                || breaker != null && breaker.getState() == CircuitBreaker.State.OPEN) {
+            return -1L;
+        }
+        long delay = retryPolicy.delayMillis(attempt, response);
+        InvocationContext invocation = InvocationContext.current();
+        if (invocation.hasDeadline() && delay >= invocation.getRemainingMillis()) {
+            return -1L;
+        }
+        return delay;
+    }
 
+    private void pause(HttpUriRequest request, long delay, Object failure) throws IOException {
+        LOG.warn("Retrying {} {} in {}ms after {}", request.getMethod(), request.getURI(), delay, failure);
+        retries.increment();
+        count("HttpRetries");
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted before retrying " + request.getURI());
+        }
+        if (!support.applyDeadline(request)) {
+            throw new InterruptedIOException("No time left in the invocation to retry " + request.getURI());
+        }
+    }
 
+    private CircuitBreaker circuitBreaker(HttpUriRequest request) {
+        if (failureThreshold <= 0 || request.getURI().getHost() == null) {
+            return null;
+        }
+        String host = URIUtils.extractHost(request.getURI()).toHostString();
+        return circuitBreakers.computeIfAbsent(host, key -> new CircuitBreaker(key, failureThreshold, openMillis,
+                () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()), state -> {
+                    if (state == CircuitBreaker.State.OPEN) {
+                        count("HttpCircuitOpened");
+                    } else if (state == CircuitBreaker.State.CLOSED) {
+                        count("HttpCircuitClosed");
+                    }
+                }));
+    }
 
+    private void count(String metric) {
+        MetricsRecorder recorder = this.metricsRecorder;
+        if (recorder != null) {
+            recorder.count(metric);
+        }
+    }
 
+    /**
+     * The status and body of a response. The body is shared by coalesced requests and the cache, and never modified.
+     */
+    private static final class Exchange {
+        private final int status;
+        private final byte[] content;
 
+        Exchange(int status, byte[] content) {
+            this.status = status;
+            this.content = content;
+        }
+    }
+}
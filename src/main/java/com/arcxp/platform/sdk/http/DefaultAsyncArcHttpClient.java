@@ -0,0 +1,266 @@
+package com.arcxp.platform.sdk.http;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default Implementation of the non-blocking Arc HTTP Client based on Apache HttpAsyncClient. Requests get the same
+ * headers, url qualification, timeouts and invocation deadline as {@link DefaultArcHttpClient}, and connections are
+ * pooled with the same {@link HttpClientSettings}.
+ *
+ * <p>The client and its I/O threads are started by the first request, so functions that never call it do not pay for
+ * them. Requests are not traced by X-Ray, which only instruments the blocking client.</p>
+ */
+public class DefaultAsyncArcHttpClient implements AsyncArcHttpClient, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultAsyncArcHttpClient.class);
+
+    private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final HttpClientSettings settings;
+
+    private final ArcRequestSupport support;
+
+    private CloseableHttpAsyncClient httpclient;
+
+    private PoolingNHttpClientConnectionManager connectionManager;
+
+    private volatile long lastEviction = System.nanoTime();
+
+    public DefaultAsyncArcHttpClient(Environment env, ObjectMapper objectMapper) {
+        this.settings = HttpClientSettings.from(env);
+        this.support = new ArcRequestSupport(env, objectMapper, settings.createRequestConfig());
+    }
+
+    @Override
+    public <T> CompletableFuture<Response<T>> get(String url, Map<String, String> headers, Class<T> responseClass) {
+        return request(new HttpGet(support.constructFullyQualifiedUrl(url)), headers, responseClass);
+    }
+
+    @Override
+    public CompletableFuture<Response<ObjectNode>> get(String url, Map<String, String> headers) {
+        return get(url, headers, ObjectNode.class);
+    }
+
+    @Override
+    public <T> CompletableFuture<Response<T>> post(String url, Map<String, String> headers, Object json,
+                                                   Class<T> responseClass) {
+        HttpPost post = new HttpPost(support.constructFullyQualifiedUrl(url));
+        support.addPayload(json, post);
+        return request(post, headers, responseClass);
+    }
+
+    @Override
+    public CompletableFuture<Response<ObjectNode>> post(String url, Map<String, String> headers, Object json) {
+        return post(url, headers, json, ObjectNode.class);
+    }
+
+    @Override
+    public <T> CompletableFuture<Response<T>> post(String url, Map<String, String> headers, MultiPartFormData data,
+                                                   Class<T> responseClass) {
+        HttpPost post = new HttpPost(support.constructFullyQualifiedUrl(url));
+        post.setEntity(buffer(support.multipartEntity(data)));
+        return request(post, headers, responseClass);
+    }
+
+    @Override
+    public CompletableFuture<Response<ObjectNode>> post(String url, Map<String, String> headers,
+                                                        MultiPartFormData data) {
+        return post(url, headers, data, ObjectNode.class);
+    }
+
+    @Override
+    public <T> CompletableFuture<Response<T>> put(String url, Map<String, String> headers, Object json,
+                                                  Class<T> responseClass) {
+        HttpPut put = new HttpPut(support.constructFullyQualifiedUrl(url));
+        support.addPayload(json, put);
+        return request(put, headers, responseClass);
+    }
+
+    @Override
+    public CompletableFuture<Response<ObjectNode>> put(String url, Map<String, String> headers, Object json) {
+        return put(url, headers, json, ObjectNode.class);
+    }
+
+    @Override
+    public <T> CompletableFuture<Response<T>> delete(String url, Map<String, String> headers,
+                                                     Class<T> responseClass) {
+        return request(new HttpDelete(support.constructFullyQualifiedUrl(url)), headers, responseClass);
+    }
+
+    @Override
+    public CompletableFuture<Response<ObjectNode>> delete(String url, Map<String, String> headers) {
+        return delete(url, headers, ObjectNode.class);
+    }
+
+    /**
+     * The state of the connection pool, for monitoring.
+     *
+     * @return The totals of all routes, all zero until the first request
+     */
+    public synchronized PoolStats getPoolStats() {
+        if (connectionManager == null) {
+            return new PoolStats(0, 0, 0, settings.getMaxConnections());
+        }
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Closes the client and its connections. Requests in flight fail, and the next request starts a new client.
+     * Used before a SnapStart or CRaC checkpoint, as for {@link DefaultArcHttpClient#resetConnections()}.
+     */
+    public synchronized void resetConnections() {
+        close();
+    }
+
+    @Override
+    @PreDestroy
+    public synchronized void close() {
+        CloseableHttpAsyncClient previous = this.httpclient;
+        this.httpclient = null;
+        this.connectionManager = null;
+        if (previous != null) {
+            try {
+                previous.close();
+            } catch (IOException e) {
+                LOG.warn("Error closing Arc HTTP connections", e);
+            }
+        }
+    }
+
+    private synchronized CloseableHttpAsyncClient client() throws IOException {
+        if (httpclient == null) {
+            PoolingNHttpClientConnectionManager pool = settings.createAsyncConnectionManager();
+            CloseableHttpAsyncClient client = HttpAsyncClients.custom()
+                    .setConnectionManager(pool)
+                    .setDefaultRequestConfig(support.getRequestConfig())
+                    .build();
+            client.start();
+            this.connectionManager = pool;
+            this.httpclient = client;
+            LOG.info("Arc Async HTTP Client Created");
+        } else {
+            evictConnections();
+        }
+        return httpclient;
+    }
+
+    /**
+     * Closes the pooled connections that have expired or have been idle longer than the idle timeout, at most once a
+     * second.
+     */
+    private void evictConnections() {
+        long now = System.nanoTime();
+        if (now - lastEviction < EVICTION_INTERVAL_NANOS) {
+            return;
+        }
+        lastEviction = now;
+        connectionManager.closeExpiredConnections();
+        if (settings.getIdleTimeoutMillis() >= 0L) {
+            connectionManager.closeIdleConnections(settings.getIdleTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends an HTTP request without waiting for the response. Cancelling the returned future aborts the request.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private <T> CompletableFuture<Response<T>> request(HttpUriRequest request, Map<String, String> headers,
+                                                      Class<T> responseClass) {
+        Response arcResponse = new Response();
+        CompletableFuture<Response<T>> result = new CompletableFuture<>();
+        if (!support.applyDeadline(request)) {
+            LOG.error("No time left in the invocation to send {} {}", request.getMethod(), request.getURI());
+            result.complete(arcResponse);
+            return result;
+        }
+        support.addHeaders(request, headers);
+
+        Future<HttpResponse> exchange;
+        try {
+            exchange = client().execute(request, new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse response) {
+                    byte[] content = null;
+                    try {
+                        arcResponse.setStatus(response.getStatusLine().getStatusCode());
+                        content = response.getEntity() == null ? null : EntityUtils.toByteArray(response.getEntity());
+                        support.readResponse(arcResponse, arcResponse.getStatus(), content, responseClass);
+                    } catch (JsonParseException e) {
+                        LOG.error("Failed to parse response. Status {}. Response {}.", arcResponse.getStatus(),
+                                new String(content, StandardCharsets.UTF_8));
+                    } catch (Exception e) {
+                        LOG.error("Error reading arc http response", e);
+                    }
+                    result.complete(arcResponse);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    LOG.error("Error sending arc http request", e);
+                    result.complete(arcResponse);
+                }
+
+                @Override
+                public void cancelled() {
+                    result.cancel(false);
+                }
+            });
+        } catch (Exception e) {
+            LOG.error("Error sending arc http request", e);
+            result.complete(arcResponse);
+            return result;
+        }
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Copies a streamed entity into memory, as the non-blocking client reads the body of a request through
+     * {@link HttpEntity#getContent()}, which multipart entities only support for small bodies.
+     */
+    private static HttpEntity buffer(HttpEntity entity) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            ByteArrayEntity buffered = new ByteArrayEntity(out.toByteArray());
+            buffered.setContentType(entity.getContentType());
+            return buffered;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the multipart body", e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.arcxp.platform.sdk.http;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connection pool and timeout settings of the Arc HTTP clients, read from the {@code arc.http.*} properties.
+ * Durations are in milliseconds; a timeout of zero waits indefinitely, and a negative connection TTL keeps
+ * connections for as long as the server allows.
+ */
+public final class HttpClientSettings {
+
+    private final int maxConnections;
+    private final int maxConnectionsPerRoute;
+    private final long connectionTtlMillis;
+    private final long idleTimeoutMillis;
+    private final int validateAfterInactivityMillis;
+    private final int connectTimeoutMillis;
+    private final int connectionRequestTimeoutMillis;
+    private final int socketTimeoutMillis;
+
+    private HttpClientSettings(Environment env) {
+        this.maxConnections = env.getProperty("arc.http.maxConnections", Integer.class, 50);
+        this.maxConnectionsPerRoute = env.getProperty("arc.http.maxConnectionsPerRoute", Integer.class, 20);
+        this.connectionTtlMillis = env.getProperty("arc.http.connectionTtlMillis", Long.class, 300000L);
+        this.idleTimeoutMillis = env.getProperty("arc.http.idleTimeoutMillis", Long.class, 30000L);
+        this.validateAfterInactivityMillis = env.getProperty("arc.http.validateAfterInactivityMillis",
+                Integer.class, 2000);
+        this.connectTimeoutMillis = env.getProperty("arc.http.connectTimeoutMillis", Integer.class, 5000);
+        this.connectionRequestTimeoutMillis = env.getProperty("arc.http.connectionRequestTimeoutMillis",
+                Integer.class, 5000);
+        this.socketTimeoutMillis = env.getProperty("arc.http.socketTimeoutMillis", Integer.class, 30000);
+    }
+
+    /**
+     * Reads the settings from the environment, using the defaults for the properties that are not set.
+     *
+     * @param env The environment
+     * @return The settings
+     */
+    public static HttpClientSettings from(Environment env) {
+        return new HttpClientSettings(env);
+    }
+
+    /**
+     * Creates a connection pool with these settings.
+     *
+     * @return The connection manager
+     */
+    PoolingHttpClientConnectionManager createConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(connectionTtlMillis, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setValidateAfterInactivity(validateAfterInactivityMillis);
+        return connectionManager;
+    }
+
+    /**
+     * Creates a connection pool for non-blocking requests with these settings. Connections are not validated after
+     * inactivity, which the non-blocking pool does not support.
+     *
+     * @return The connection manager
+     * @throws IOReactorException if the I/O reactor cannot be created
+     */
+    PoolingNHttpClientConnectionManager createAsyncConnectionManager() throws IOReactorException {
+        PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(
+                new DefaultConnectingIOReactor(),
+                null,
+                RegistryBuilder.<SchemeIOSessionStrategy>create()
+                        .register("http", NoopIOSessionStrategy.INSTANCE)
+                        .register("https", SSLIOSessionStrategy.getDefaultStrategy())
+                        .build(),
+                null,
+                null,
+                connectionTtlMillis,
+                TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        return connectionManager;
+    }
+
+    /**
+     * The timeouts of every request.
+     *
+     * @return The request config
+     */
+    RequestConfig createRequestConfig() {
+        return RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setConnectionRequestTimeout(connectionRequestTimeoutMillis)
+                .setSocketTimeout(socketTimeoutMillis)
+                .build();
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public long getConnectionTtlMillis() {
+        return connectionTtlMillis;
+    }
+
+    /**
+     * How long a pooled connection may stay unused before it is closed.
+     *
+     * @return The idle timeout in milliseconds, or a negative value to keep idle connections
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * How long a pooled connection may stay unused before it is checked to still be open when leased.
+     *
+     * @return The inactivity in milliseconds, or a negative value to never check
+     */
+    public int getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * How long a request waits for a connection from the pool.
+     *
+     * @return The timeout in milliseconds
+     */
+    public int getConnectionRequestTimeoutMillis() {
+        return connectionRequestTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+}
@@ -0,0 +1,398 @@
+package com.arcxp.platform.sdk.http;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.DateUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory cache of the responses to GET requests, following the HTTP caching rules of a private cache:
+ * {@code Cache-Control} {@code max-age}, {@code no-cache} and {@code no-store}, {@code Expires}, and the revalidation
+ * of stale responses with {@code If-None-Match} and {@code If-Modified-Since}. The freshness of the responses to some
+ * urls can be overridden by prefix, for Arc APIs that do not send caching headers.
+ *
+ * <p>Responses are cached per url and request headers, which include the credentials and the {@code Arc-Site}
+ * header, so that different identities or sites never share an entry. The cache is bounded by the size of the
+ * bodies it holds, and evicts the least recently used responses first.</p>
+ */
+public final class HttpResponseCache {
+
+    /**
+     * Bytes counted for an entry on top of its body and key.
+     */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+
+    private final Map<String, Long> ttlOverrides;
+
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxBytes     The most bytes of responses held
+     * @param ttlOverrides The freshness lifetime in milliseconds of the responses to the urls starting with each
+     *                     prefix, used instead of their caching headers. Prefixes starting with {@code /} are
+     *                     compared to the path of the url, others to the whole url.
+     */
+    public HttpResponseCache(long maxBytes, Map<String, Long> ttlOverrides) {
+        this(maxBytes, ttlOverrides, System::currentTimeMillis);
+    }
+
+    HttpResponseCache(long maxBytes, Map<String, Long> ttlOverrides, LongSupplier clock) {
+        this.maxBytes = maxBytes;
+        this.ttlOverrides = new LinkedHashMap<>(ttlOverrides);
+        this.clock = clock;
+    }
+
+    /**
+     * Creates the cache configured by the {@code arc.http.cache.*} properties.
+     *
+     * @param env The environment
+     * @return The cache, or null if caching is not enabled
+     */
+    public static HttpResponseCache from(Environment env) {
+        if (!env.getProperty("arc.http.cache.enabled", Boolean.class, Boolean.FALSE)) {
+            return null;
+        }
+        Map<String, Long> ttlOverrides = new LinkedHashMap<>();
+        for (String pair : StringUtils.commaDelimitedListToSet(env.getProperty("arc.http.cache.ttlOverrides", ""))) {
+            int separator = pair.lastIndexOf('=');
+            if (separator <= 0) {
+                if (!pair.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Invalid cache TTL " + pair + ", expected prefix=seconds");
+                }
+                continue;
+            }
+            ttlOverrides.put(pair.substring(0, separator).trim(),
+                    TimeUnit.SECONDS.toMillis(Long.parseLong(pair.substring(separator + 1).trim())));
+        }
+        return new HttpResponseCache(env.getProperty("arc.http.cache.maxBytes", Long.class, 10L * 1024 * 1024),
+                ttlOverrides);
+    }
+
+    /**
+     * Looks up the cached response to a request, once its headers are all set. When the cached response is stale but
+     * can be revalidated, the conditional headers are added to the request.
+     *
+     * @param request The request
+     * @return The lookup, or null if the request is not cacheable
+     */
+    Lookup lookup(HttpUriRequest request) {
+        if (!"GET".equals(request.getMethod()) || hasDirective(request.getHeaders("Cache-Control"), "no-store")) {
+            return null;
+        }
+        String key = ArcRequestSupport.requestKey(request, false);
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.freshUntil > clock.getAsLong()
+                && !hasDirective(request.getHeaders("Cache-Control"), "no-cache")) {
+            hits.increment();
+            return new Lookup(key, entry, true);
+        }
+        if (entry != null) {
+            if (entry.etag != null) {
+                request.setHeader("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.setHeader("If-Modified-Since", entry.lastModified);
+            }
+        }
+        return new Lookup(key, entry, false);
+    }
+
+    /**
+     * Records the response received for a request that was not answered from the cache. A {@code 304 Not Modified}
+     * refreshes the cached response, which is returned; any other response is cached if it may be.
+     *
+     * @param lookup   The lookup of the request
+     * @param request  The request
+     * @param response The response
+     * @param body     The body of the response
+     * @return The refreshed cached response for a {@code 304}, null otherwise
+     */
+    Entry update(Lookup lookup, HttpUriRequest request, HttpResponse response, byte[] body) {
+        int status = response.getStatusLine().getStatusCode();
+        long now = clock.getAsLong();
+        if (status == HttpStatus.SC_NOT_MODIFIED && lookup.entry != null) {
+            revalidations.increment();
+            Entry previous = lookup.entry;
+            Entry refreshed = new Entry(previous.status, previous.body,
+                    header(response, "ETag", previous.etag), header(response, "Last-Modified", previous.lastModified),
+                    freshUntil(request, response, now), lookup.key.length());
+            put(lookup.key, refreshed);
+            return refreshed;
+        }
+        misses.increment();
+        if (status != HttpStatus.SC_OK || hasDirective(response.getHeaders("Cache-Control"), "no-store")) {
+            remove(lookup.key);
+            return null;
+        }
+        Entry entry = new Entry(status, body == null ? new byte[0] : body, header(response, "ETag", null),
+                header(response, "Last-Modified", null), freshUntil(request, response, now), lookup.key.length());
+        if (entry.freshUntil <= now && entry.etag == null && entry.lastModified == null) {
+            // Neither fresh nor revalidatable, so caching it would never save a request
+            remove(lookup.key);
+            return null;
+        }
+        put(lookup.key, entry);
+        return null;
+    }
+
+    /**
+     * Removes every cached response.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0L;
+    }
+
+    /**
+     * The counters of the cache since it was created.
+     *
+     * @return The statistics
+     */
+    public Stats getStats() {
+        synchronized (this) {
+            return new Stats(hits.sum(), misses.sum(), revalidations.sum(), evictions.sum(), entries.size(), bytes);
+        }
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        if (entry.size > maxBytes) {
+            remove(key);
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+        bytes += entry.size;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            bytes -= evicted.size;
+            evictions.increment();
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.size;
+        }
+    }
+
+    /**
+     * When a response stops being fresh: the TTL override of its url if there is one, else its {@code max-age} or
+     * {@code Expires}. A response that must be revalidated, or has no freshness information, is stale at once.
+     */
+    private long freshUntil(HttpUriRequest request, HttpResponse response, long now) {
+        Long override = ttlOverride(request);
+        if (override != null) {
+            return now + override;
+        }
+        Header[] cacheControl = response.getHeaders("Cache-Control");
+        if (hasDirective(cacheControl, "no-cache")) {
+            return now;
+        }
+        for (Header header : cacheControl) {
+            for (HeaderElement element : header.getElements()) {
+                if ("max-age".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return now + TimeUnit.SECONDS.toMillis(Long.parseLong(element.getValue().trim()));
+                    } catch (NumberFormatException e) {
+                        return now;
+                    }
+                }
+            }
+        }
+        Header expires = response.getFirstHeader("Expires");
+        if (expires != null) {
+            Date expiry = DateUtils.parseDate(expires.getValue());
+            Header dateHeader = response.getFirstHeader("Date");
+            Date date = dateHeader == null ? null : DateUtils.parseDate(dateHeader.getValue());
+            if (expiry != null) {
+                // Relative to the Date of the response, so that the clock of the server does not matter
+                return now + expiry.getTime() - (date == null ? now : date.getTime());
+            }
+        }
+        return now;
+    }
+
+    private Long ttlOverride(HttpUriRequest request) {
+        if (ttlOverrides.isEmpty()) {
+            return null;
+        }
+        String url = request.getURI().toString();
+        String path = request.getURI().getRawPath();
+        String longest = null;
+        for (String prefix : ttlOverrides.keySet()) {
+            String target = prefix.startsWith("/") ? path : url;
+            if (target != null && target.startsWith(prefix) && (longest == null || prefix.length() > longest.length())) {
+                longest = prefix;
+            }
+        }
+        return longest == null ? null : ttlOverrides.get(longest);
+    }
+
+    private static boolean hasDirective(Header[] headers, String directive) {
+        for (Header header : headers) {
+            for (HeaderElement element : header.getElements()) {
+                if (directive.equalsIgnoreCase(element.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String header(HttpResponse response, String name, String fallback) {
+        Header header = response.getFirstHeader(name);
+        return header == null ? fallback : header.getValue();
+    }
+
+    /**
+     * The outcome of looking up a request.
+     */
+    static final class Lookup {
+        private final String key;
+        private final Entry entry;
+        private final boolean fresh;
+
+        Lookup(String key, Entry entry, boolean fresh) {
+            this.key = key;
+            this.entry = entry;
+            this.fresh = fresh;
+        }
+
+        /**
+         * The cached response, if it is fresh and can be returned without a request.
+         *
+         * @return The response, or null
+         */
+        Entry fresh() {
+            return fresh ? entry : null;
+        }
+    }
+
+    /**
+     * A cached response. The body is never modified, and is read into new data for every response returned.
+     */
+    static final class Entry {
+        private final int status;
+        private final byte[] body;
+        private final String etag;
+        private final String lastModified;
+        private final long freshUntil;
+        private final long size;
+
+        Entry(int status, byte[] body, String etag, String lastModified, long freshUntil, int keyLength) {
+            this.status = status;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.freshUntil = freshUntil;
+            this.size = body.length + 2L * keyLength + ENTRY_OVERHEAD;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * The counters of a cache.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long revalidations;
+        private final long evictions;
+        private final int entries;
+        private final long bytes;
+
+        Stats(long hits, long misses, long revalidations, long evictions, int entries, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.revalidations = revalidations;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        /**
+         * The requests answered from the cache without calling the server.
+         *
+         * @return The number of hits
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * The requests for which the server sent a full response.
+         *
+         * @return The number of misses
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * The requests for which the server confirmed that the cached response was still valid.
+         *
+         * @return The number of revalidations
+         */
+        public long getRevalidations() {
+            return revalidations;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + hits + " misses=" + misses + " revalidations=" + revalidations + " evictions="
+                    + evictions + " entries=" + entries + " bytes=" + bytes;
+        }
+    }
+}
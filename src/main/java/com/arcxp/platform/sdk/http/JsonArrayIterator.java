@@ -0,0 +1,124 @@
+package com.arcxp.platform.sdk.http;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the elements of a JSON array one at a time from a parser, so that only the element being read is held in
+ * memory. The resource the parser reads from is closed once the last element has been read, when reading fails, or
+ * when the iterator is closed.
+ *
+ * @param <T> The type of the elements
+ */
+final class JsonArrayIterator<T> implements Iterator<T>, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JsonArrayIterator.class);
+
+    private final JsonParser parser;
+    private final ObjectMapper objectMapper;
+    private final Class<T> elementClass;
+    private final Closeable resource;
+
+    private T next;
+    private boolean ready;
+    private boolean done;
+
+    JsonArrayIterator(JsonParser parser, ObjectMapper objectMapper, Class<T> elementClass, Closeable resource) {
+        this.parser = parser;
+        this.objectMapper = objectMapper;
+        this.elementClass = elementClass;
+        this.resource = resource;
+    }
+
+    /**
+     * Moves a parser that has not read anything yet to the start of the array at a JSON pointer, skipping everything
+     * before it. Pointer segments match object properties, or array indexes.
+     *
+     * @param parser  The parser
+     * @param pointer The location of the array, empty for the whole document
+     * @return False if there is no array at the pointer
+     * @throws IOException if the document cannot be read
+     */
+    static boolean seek(JsonParser parser, JsonPointer pointer) throws IOException {
+        JsonToken token = parser.nextToken();
+        while (!pointer.matches()) {
+            boolean found = false;
+            if (token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    token = parser.nextToken();
+                    if (name.equals(pointer.getMatchingProperty())) {
+                        found = true;
+                        break;
+                    }
+                    parser.skipChildren();
+                }
+            } else if (token == JsonToken.START_ARRAY && pointer.getMatchingIndex() >= 0) {
+                for (int index = 0; (token = parser.nextToken()) != JsonToken.END_ARRAY && token != null; index++) {
+                    if (index == pointer.getMatchingIndex()) {
+                        found = true;
+                        break;
+                    }
+                    parser.skipChildren();
+                }
+            }
+            if (!found) {
+                return false;
+            }
+            pointer = pointer.tail();
+        }
+        return token == JsonToken.START_ARRAY;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!ready && !done) {
+            try {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.END_ARRAY || token == null) {
+                    done = true;
+                    close();
+                } else {
+                    next = objectMapper.readValue(parser, elementClass);
+                    ready = true;
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+        return ready;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T element = next;
+        next = null;
+        ready = false;
+        return element;
+    }
+
+    @Override
+    public void close() {
+        done = true;
+        try {
+            parser.close();
+            resource.close();
+        } catch (IOException e) {
+            LOG.warn("Error closing streamed response", e);
+        }
+    }
+}
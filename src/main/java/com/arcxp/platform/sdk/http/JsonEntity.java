@@ -0,0 +1,59 @@
+package com.arcxp.platform.sdk.http;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Request body serialized as JSON straight onto the connection while the request is sent, so that neither a string
+ * nor a byte array of the whole body is held in memory. Its length is not known in advance, so it is sent with
+ * chunked transfer encoding. The object is serialized again if the request is retried.
+ */
+final class JsonEntity extends AbstractHttpEntity {
+
+    private final Object value;
+
+    private final ObjectWriter writer;
+
+    JsonEntity(Object value, ObjectMapper objectMapper) {
+        this.value = value;
+        // The connection stays open for the response once the body has been written
+        this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        setContentType("application/json");
+        setChunked(true);
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return -1L;
+    }
+
+    /**
+     * The body serialized in memory, for the clients that read request bodies rather than writing them.
+     */
+    @Override
+    public InputStream getContent() throws IOException {
+        return new ByteArrayInputStream(writer.writeValueAsBytes(value));
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        writer.writeValue(out, value);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,131 @@
+package com.arcxp.platform.sdk.http;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.DateUtils;
+import org.springframework.core.env.Environment;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * When and how soon a failed Arc API call is sent again, read from the {@code arc.http.retry.*} properties. Calls are
+ * retried when the connection fails or the server answers {@code 429}, {@code 502}, {@code 503} or {@code 504}, after
+ * a capped exponential backoff with full jitter, or after the delay of the {@code Retry-After} header of the
+ * response. Only idempotent methods are retried, unless {@code arc.http.retry.nonIdempotent} is set.
+ */
+public final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final boolean nonIdempotent;
+
+    RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, boolean nonIdempotent) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.nonIdempotent = nonIdempotent;
+    }
+
+    /**
+     * Reads the policy from the environment, using the defaults for the properties that are not set.
+     *
+     * @param env The environment
+     * @return The policy
+     */
+    public static RetryPolicy from(Environment env) {
+        return new RetryPolicy(env.getProperty("arc.http.retry.maxAttempts", Integer.class, 3),
+                env.getProperty("arc.http.retry.baseDelayMillis", Long.class, 100L),
+                env.getProperty("arc.http.retry.maxDelayMillis", Long.class, 2000L),
+                env.getProperty("arc.http.retry.nonIdempotent", Boolean.class, Boolean.FALSE));
+    }
+
+    /**
+     * How many times a call is sent at most, the first time included.
+     *
+     * @return The number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Whether a request may be sent again: its method is idempotent, or retrying other methods was enabled, and its
+     * body, if any, can be sent twice.
+     *
+     * @param request The request
+     * @return True if the request may be retried
+     */
+    boolean canRetry(HttpUriRequest request) {
+        if (maxAttempts <= 1) {
+            return false;
+        }
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+            if (enclosing.getEntity() != null && !enclosing.getEntity().isRepeatable()) {
+                return false;
+            }
+        }
+        switch (request.getMethod()) {
+            case "GET":
+            case "HEAD":
+            case "PUT":
+            case "DELETE":
+            case "OPTIONS":
+                return true;
+            default:
+                return nonIdempotent;
+        }
+    }
+
+    /**
+     * Whether a response status is worth retrying.
+     *
+     * @param status The status code
+     * @return True for a status the server may not answer again
+     */
+    static boolean isRetryable(int status) {
+        return status == HttpStatus.SC_TOO_MANY_REQUESTS || status == HttpStatus.SC_BAD_GATEWAY
+                || status == HttpStatus.SC_SERVICE_UNAVAILABLE || status == HttpStatus.SC_GATEWAY_TIMEOUT;
+    }
+
+    /**
+     * How long to wait before sending a call again.
+     *
+     * @param attempt  The number of attempts made so far
+     * @param response The response to the last attempt, or null if it failed without one
+     * @return The delay in milliseconds, or a negative value if the server asked to wait longer than
+     *     {@code arc.http.retry.maxDelayMillis}
+     */
+    long delayMillis(int attempt, HttpResponse response) {
+        long retryAfter = retryAfterMillis(response);
+        if (retryAfter >= 0L) {
+            return retryAfter <= maxDelayMillis ? retryAfter : -1L;
+        }
+        int exponent = Math.min(attempt - 1, 30);
+        long cap = Math.min(maxDelayMillis, baseDelayMillis << exponent);
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * The delay asked by the {@code Retry-After} header of a response, in seconds or as a date.
+     */
+    private static long retryAfterMillis(HttpResponse response) {
+        Header header = response == null ? null : response.getFirstHeader("Retry-After");
+        if (header == null) {
+            return -1L;
+        }
+        String value = header.getValue().trim();
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0L, Long.parseLong(value)));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parseDate(value);
+            return date == null ? -1L : Math.max(0L, date.getTime() - System.currentTimeMillis());
+        }
+    }
+}
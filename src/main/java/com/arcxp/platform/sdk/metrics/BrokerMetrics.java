@@ -0,0 +1,161 @@
+package com.arcxp.platform.sdk.metrics;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Instrumentation of the {@link com.arcxp.platform.sdk.broker.MessageBroker}: the time spent in each phase of a
+ * message, and the {@link HandlerMetrics} of every handler and event key. Recording is lock-free and does not
+ * allocate once a handler has been seen, so it stays well under a microsecond per event.
+ *
+ * <p>Metrics accumulate for the life of the container. Take a {@link #snapshot()} to read them, and {@link #reset()}
+ * them to start a new period; values recorded during a reset may be kept or lost.</p>
+ */
+public final class BrokerMetrics {
+
+    private final EnumMap<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+
+    private final ConcurrentMap<String, ConcurrentMap<Class<?>, HandlerMetrics>> handlers =
+            new ConcurrentHashMap<>();
+
+    public BrokerMetrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Records the time spent in a phase of a message.
+     *
+     * @param phase The phase
+     * @param nanos The time in nanoseconds
+     */
+    public void recordPhase(Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+    }
+
+    /**
+     * The metrics of a handler for an event key, created on first use.
+     *
+     * @param key     The routed event key
+     * @param handler The handler
+     * @return The handler metrics
+     */
+    public HandlerMetrics handler(String key, Object handler) {
+        String routeKey = key == null ? "" : key;
+        ConcurrentMap<Class<?>, HandlerMetrics> byHandler = handlers.get(routeKey);
+        if (byHandler == null) {
+            byHandler = handlers.computeIfAbsent(routeKey, k -> new ConcurrentHashMap<>());
+        }
+        Class<?> type = handler.getClass();
+        HandlerMetrics metrics = byHandler.get(type);
+        if (metrics == null) {
+            metrics = byHandler.computeIfAbsent(type, t -> new HandlerMetrics(routeKey, t.getName()));
+        }
+        return metrics;
+    }
+
+    /**
+     * Copies the metrics recorded so far.
+     *
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        Map<Phase, HistogramSnapshot> phaseSnapshots = new EnumMap<>(Phase.class);
+        for (Map.Entry<Phase, LatencyHistogram> phase : phases.entrySet()) {
+            phaseSnapshots.put(phase.getKey(), phase.getValue().snapshot());
+        }
+        List<HandlerMetrics.Snapshot> handlerSnapshots = new ArrayList<>();
+        for (ConcurrentMap<Class<?>, HandlerMetrics> byHandler : handlers.values()) {
+            for (HandlerMetrics metrics : byHandler.values()) {
+                handlerSnapshots.add(metrics.snapshot());
+            }
+        }
+        return new Snapshot(phaseSnapshots, handlerSnapshots);
+    }
+
+    /**
+     * Clears every metric. Handlers stay registered, so recording after a reset does not allocate.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : phases.values()) {
+            histogram.reset();
+        }
+        for (ConcurrentMap<Class<?>, HandlerMetrics> byHandler : handlers.values()) {
+            for (HandlerMetrics metrics : byHandler.values()) {
+                metrics.reset();
+            }
+        }
+    }
+
+    /**
+     * The phases of handling a message.
+     */
+    public enum Phase {
+        /**
+         * Reading the message envelope and building the payload.
+         */
+        PARSE,
+        /**
+         * Finding the handlers of the payload.
+         */
+        ROUTE,
+        /**
+         * Running the handlers.
+         */
+        HANDLE,
+        /**
+         * Writing the response.
+         */
+        SERIALIZE
+    }
+
+    /**
+     * The metrics of the broker up to the moment the snapshot was taken.
+     */
+    @JsonPropertyOrder({"phases", "handlers"})
+    public static final class Snapshot {
+        private final Map<Phase, HistogramSnapshot> phases;
+        private final List<HandlerMetrics.Snapshot> handlers;
+
+        Snapshot(Map<Phase, HistogramSnapshot> phases, List<HandlerMetrics.Snapshot> handlers) {
+            this.phases = Collections.unmodifiableMap(phases);
+            this.handlers = Collections.unmodifiableList(handlers);
+        }
+
+        public Map<Phase, HistogramSnapshot> getPhases() {
+            return phases;
+        }
+
+        public HistogramSnapshot getPhase(Phase phase) {
+            return phases.get(phase);
+        }
+
+        public List<HandlerMetrics.Snapshot> getHandlers() {
+            return handlers;
+        }
+
+        /**
+         * The metrics of a handler for an event key.
+         *
+         * @param key          The routed event key
+         * @param handlerClass The class of the handler
+         * @return The handler metrics, or null if the handler has not handled the key
+         */
+        public HandlerMetrics.Snapshot getHandler(String key, Class<?> handlerClass) {
+            for (HandlerMetrics.Snapshot handler : handlers) {
+                if (handler.getKey().equals(key) && handler.getHandler().equals(handlerClass.getName())) {
+                    return handler;
+                }
+            }
+            return null;
+        }
+    }
+}
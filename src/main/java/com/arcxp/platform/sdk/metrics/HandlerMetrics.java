@@ -0,0 +1,120 @@
+package com.arcxp.platform.sdk.metrics;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invocations of one handler for one event key: how long they took, how many failed, and how many were skipped
+ * because the event was a duplicate or there was no time left to run the handler.
+ */
+public final class HandlerMetrics {
+
+    private final String key;
+    private final String handler;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder skips = new LongAdder();
+
+    HandlerMetrics(String key, String handler) {
+        this.key = key;
+        this.handler = handler;
+    }
+
+    /**
+     * Records an invocation of the handler.
+     *
+     * @param nanos  How long the handler ran, in nanoseconds
+     * @param failed Whether the handler failed
+     */
+    public void record(long nanos, boolean failed) {
+        invocations.increment();
+        if (failed) {
+            errors.increment();
+        }
+        latency.record(nanos);
+    }
+
+    /**
+     * Records that the handler was not run for an event it matches.
+     */
+    public void skip() {
+        skips.increment();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getHandler() {
+        return handler;
+    }
+
+    /**
+     * Copies the counters and latencies.
+     *
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(key, handler, invocations.sum(), errors.sum(), skips.sum(), latency.snapshot());
+    }
+
+    void reset() {
+        invocations.reset();
+        errors.reset();
+        skips.reset();
+        latency.reset();
+    }
+
+    /**
+     * The invocations of a handler for an event key up to the moment the snapshot was taken.
+     */
+    @JsonPropertyOrder({"key", "handler", "invocations", "errors", "skips", "latency"})
+    public static final class Snapshot {
+        private final String key;
+        private final String handler;
+        private final long invocations;
+        private final long errors;
+        private final long skips;
+        private final HistogramSnapshot latency;
+
+        Snapshot(String key, String handler, long invocations, long errors, long skips, HistogramSnapshot latency) {
+            this.key = key;
+            this.handler = handler;
+            this.invocations = invocations;
+            this.errors = errors;
+            this.skips = skips;
+            this.latency = latency;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * The class of the handler.
+         *
+         * @return The class name
+         */
+        public String getHandler() {
+            return handler;
+        }
+
+        public long getInvocations() {
+            return invocations;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getSkips() {
+            return skips;
+        }
+
+        public HistogramSnapshot getLatency() {
+            return latency;
+        }
+    }
+}
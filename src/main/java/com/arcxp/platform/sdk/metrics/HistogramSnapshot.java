@@ -0,0 +1,90 @@
+package com.arcxp.platform.sdk.metrics;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies recorded by a {@link LatencyHistogram} up to the moment the snapshot was taken. Values are in
+ * nanoseconds.
+ */
+@JsonPropertyOrder({"count", "mean", "p50", "p90", "p99", "max"})
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long total;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long total, long max) {
+        long sum = 0L;
+        for (long bucket : counts) {
+            sum += bucket;
+        }
+        this.counts = counts;
+        this.count = sum;
+        this.total = total;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The mean latency.
+     *
+     * @return The mean in nanoseconds, zero when nothing was recorded
+     */
+    public long getMean() {
+        return count == 0L ? 0L : total / count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getP50() {
+        return getValueAtPercentile(50.0);
+    }
+
+    public long getP90() {
+        return getValueAtPercentile(90.0);
+    }
+
+    public long getP99() {
+        return getValueAtPercentile(99.0);
+    }
+
+    /**
+     * The latency below which the given percentage of the recorded latencies fall, as the highest value of the
+     * bucket it was counted in.
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return The latency in nanoseconds, zero when nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0L) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * count));
+        long seen = 0L;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " mean=" + micros(getMean()) + "us p50=" + micros(getP50()) + "us p90="
+                + micros(getP90()) + "us p99=" + micros(getP99()) + "us max=" + micros(max) + "us";
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
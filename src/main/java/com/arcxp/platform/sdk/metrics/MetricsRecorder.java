@@ -0,0 +1,472 @@
+package com.arcxp.platform.sdk.metrics;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Collects the custom metrics of an invocation and writes them to the function log in the CloudWatch Embedded Metric
+ * Format, which CloudWatch turns into metrics without any API call. Handlers inject the recorder and record
+ * counters, gauges and timers; the {@link com.arcxp.platform.sdk.broker.MessageBroker} adds the latency and errors
+ * of every handler, and flushes the recorder once the response of the invocation is written.
+ *
+ * <p>Metrics are dimensioned by the {@code EventKey}, {@code TypeId} and {@code Handler} being processed when they
+ * are recorded. They are appended to a fixed-size buffer; metrics recorded once it is full are dropped and counted.
+ * On flush the buffer is swapped and written on the calling thread, before the invocation returns and Lambda may
+ * freeze the container; metrics recorded meanwhile by other threads go to the other buffer.
+ * One log line is written per combination of dimensions, as the format carries a single value per dimension.</p>
+ */
+@Component
+public class MetricsRecorder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRecorder.class);
+
+    /**
+     * The largest number of values of a metric in one log line, as accepted by CloudWatch.
+     */
+    private static final int MAX_VALUES_PER_LINE = 100;
+
+    private static final ThreadLocal<int[]> CURRENT_DIMENSIONS = ThreadLocal.withInitial(() -> new int[] {0});
+
+    private final JsonFactory jsonFactory;
+    private final Consumer<String> sink;
+
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, Metric> metricsByName = new ConcurrentHashMap<>();
+    private final List<DimensionSet> dimensionSets = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, ConcurrentMap<Integer, ConcurrentMap<Class<?>, Integer>>> dimensionIndexes =
+            new ConcurrentHashMap<>();
+
+    private boolean enabled = false;
+    private String namespace = "ArcIFX";
+    private int bufferSize = 1024;
+
+    private Buffer active;
+    private BlockingQueue<Buffer> spares;
+
+    @Autowired
+    public MetricsRecorder(ObjectMapper objectMapper) {
+        this(objectMapper, System.out::println);
+    }
+
+    MetricsRecorder(ObjectMapper objectMapper, Consumer<String> sink) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.sink = sink;
+        this.dimensionSets.add(new DimensionSet(null, 0, null));
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param name  The metric name
+     * @param value The amount to add
+     */
+    public void count(String name, double value) {
+        record(name, Kind.COUNTER, value);
+    }
+
+    /**
+     * Adds one to a counter.
+     *
+     * @param name The metric name
+     */
+    public void count(String name) {
+        record(name, Kind.COUNTER, 1.0);
+    }
+
+    /**
+     * Sets a gauge. The last value recorded in an invocation is kept.
+     *
+     * @param name  The metric name
+     * @param value The value
+     */
+    public void gauge(String name, double value) {
+        record(name, Kind.GAUGE, value);
+    }
+
+    /**
+     * Records a duration. Every duration of an invocation is kept, so CloudWatch can compute percentiles.
+     *
+     * @param name  The metric name
+     * @param nanos The duration in nanoseconds
+     */
+    public void time(String name, long nanos) {
+        record(name, Kind.TIMER, nanos / 1_000_000.0);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Makes the given event key, type id and handler the dimensions of the metrics recorded on the current thread,
+     * until {@link #restoreDimensions(int)} is called.
+     *
+     * @param key     The event key, or null
+     * @param typeId  The payload type id
+     * @param handler The handler class, or null outside of a handler
+     * @return The previous dimensions, to restore
+     */
+    public int enterDimensions(String key, int typeId, Class<?> handler) {
+        int[] current = CURRENT_DIMENSIONS.get();
+        int previous = current[0];
+        if (enabled) {
+            current[0] = dimensionSet(key, typeId, handler);
+        }
+        return previous;
+    }
+
+    /**
+     * Restores the dimensions replaced by {@link #enterDimensions(String, int, Class)}.
+     *
+     * @param previous The value returned by {@code enterDimensions}
+     */
+    public void restoreDimensions(int previous) {
+        CURRENT_DIMENSIONS.get()[0] = previous;
+    }
+
+    /**
+     * Writes the metrics recorded since the last flush. They are written by the time this method returns.
+     */
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        Buffer full;
+        synchronized (this) {
+            if (active == null || active.size == 0 && active.dropped == 0) {
+                return;
+            }
+            Buffer spare = spares.poll();
+            if (spare == null) {
+                // Another flush is writing the spare buffer
+                spare = active;
+                full = active.copy();
+            } else {
+                full = active;
+            }
+            spare.clear();
+            active = spare;
+        }
+        try {
+            write(full, System.currentTimeMillis());
+        } finally {
+            if (full.pooled) {
+                spares.offer(full);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending metrics.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void record(String name, Kind kind, double value) {
+        if (!enabled) {
+            return;
+        }
+        int metric = metricIndex(name, kind);
+        int dimensions = CURRENT_DIMENSIONS.get()[0];
+        synchronized (this) {
+            if (active == null) {
+                start();
+            }
+            active.add(dimensions, metric, value);
+        }
+    }
+
+    private void start() {
+        active = new Buffer(bufferSize, true);
+        spares = new ArrayBlockingQueue<>(1);
+        spares.offer(new Buffer(bufferSize, true));
+    }
+
+    private int metricIndex(String name, Kind kind) {
+        Metric metric = metricsByName.get(name);
+        if (metric == null) {
+            synchronized (metrics) {
+                metric = metricsByName.get(name);
+                if (metric == null) {
+                    metric = new Metric(metrics.size(), name, kind);
+                    metrics.add(metric);
+                    metricsByName.put(name, metric);
+                }
+            }
+        }
+        if (metric.kind != kind) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.kind.name().toLowerCase());
+        }
+        return metric.index;
+    }
+
+    private int dimensionSet(String key, int typeId, Class<?> handler) {
+        String keyName = key == null ? "" : key;
+        Class<?> handlerType = handler == null ? Void.class : handler;
+        ConcurrentMap<Integer, ConcurrentMap<Class<?>, Integer>> byTypeId = dimensionIndexes.get(keyName);
+        if (byTypeId == null) {
+            byTypeId = dimensionIndexes.computeIfAbsent(keyName, k -> new ConcurrentHashMap<>());
+        }
+        ConcurrentMap<Class<?>, Integer> byHandler = byTypeId.get(typeId);
+        if (byHandler == null) {
+            byHandler = byTypeId.computeIfAbsent(typeId, t -> new ConcurrentHashMap<>());
+        }
+        Integer index = byHandler.get(handlerType);
+        if (index == null) {
+            synchronized (dimensionSets) {
+                index = byHandler.get(handlerType);
+                if (index == null) {
+                    index = dimensionSets.size();
+                    dimensionSets.add(new DimensionSet(key, typeId, handler == null ? null : handler.getSimpleName()));
+                    byHandler.put(handlerType, index);
+                }
+            }
+        }
+        return index;
+    }
+
+    private void write(Buffer buffer, long timestamp) {
+        if (buffer.dropped > 0) {
+            LOG.warn("Dropped {} metrics, the metrics buffer holds {}", buffer.dropped, buffer.capacity());
+        }
+        Map<Integer, Map<Integer, List<Double>>> byDimensions = new LinkedHashMap<>();
+        for (int i = 0; i < buffer.size; i++) {
+            Map<Integer, List<Double>> values = byDimensions.computeIfAbsent(buffer.dimensions[i],
+                k -> new LinkedHashMap<>());
+            Metric metric = metrics.get(buffer.metrics[i]);
+            List<Double> metricValues = values.computeIfAbsent(buffer.metrics[i], k -> new ArrayList<>());
+            if (metric.kind == Kind.TIMER || metricValues.isEmpty()) {
+                metricValues.add(buffer.values[i]);
+            } else if (metric.kind == Kind.COUNTER) {
+                metricValues.set(0, metricValues.get(0) + buffer.values[i]);
+            } else {
+                metricValues.set(0, buffer.values[i]);
+            }
+        }
+        for (Map.Entry<Integer, Map<Integer, List<Double>>> entry : byDimensions.entrySet()) {
+            DimensionSet dimensions = dimensionSets.get(entry.getKey());
+            for (int offset = 0; ; offset += MAX_VALUES_PER_LINE) {
+                String line = format(dimensions, entry.getValue(), offset, timestamp);
+                if (line == null) {
+                    break;
+                }
+                sink.accept(line);
+            }
+        }
+    }
+
+    /**
+     * Formats one log line with up to {@value #MAX_VALUES_PER_LINE} values of each metric, from the given offset.
+     *
+     * @return The line, or null if no metric has values past the offset
+     */
+    private String format(DimensionSet dimensions, Map<Integer, List<Double>> values, int offset, long timestamp) {
+        List<Map.Entry<Integer, List<Double>>> included = new ArrayList<>();
+        for (Map.Entry<Integer, List<Double>> metricValues : values.entrySet()) {
+            if (metricValues.getValue().size() > offset) {
+                included.add(metricValues);
+            }
+        }
+        if (included.isEmpty()) {
+            return null;
+        }
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("_aws");
+            generator.writeNumberField("Timestamp", timestamp);
+            generator.writeArrayFieldStart("CloudWatchMetrics");
+            generator.writeStartObject();
+            generator.writeStringField("Namespace", namespace);
+            generator.writeArrayFieldStart("Dimensions");
+            generator.writeStartArray();
+            if (dimensions.key != null) {
+                generator.writeString("EventKey");
+                generator.writeString("TypeId");
+            }
+            if (dimensions.handler != null) {
+                generator.writeString("Handler");
+            }
+            generator.writeEndArray();
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("Metrics");
+            for (Map.Entry<Integer, List<Double>> metricValues : included) {
+                Metric metric = metrics.get(metricValues.getKey());
+                generator.writeStartObject();
+                generator.writeStringField("Name", metric.name);
+                generator.writeStringField("Unit", metric.kind.unit);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeEndArray();
+            generator.writeEndObject();
+            if (dimensions.key != null) {
+                generator.writeStringField("EventKey", dimensions.key);
+                generator.writeStringField("TypeId", Integer.toString(dimensions.typeId));
+            }
+            if (dimensions.handler != null) {
+                generator.writeStringField("Handler", dimensions.handler);
+            }
+            for (Map.Entry<Integer, List<Double>> metricValues : included) {
+                List<Double> metricValueList = metricValues.getValue();
+                generator.writeFieldName(metrics.get(metricValues.getKey()).name);
+                if (metricValueList.size() == 1) {
+                    generator.writeNumber(metricValueList.get(0));
+                } else {
+                    generator.writeStartArray();
+                    int end = Math.min(metricValueList.size(), offset + MAX_VALUES_PER_LINE);
+                    for (int i = offset; i < end; i++) {
+                        generator.writeNumber(metricValueList.get(i));
+                    }
+                    generator.writeEndArray();
+                }
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            LOG.error("Unable to format metrics", e);
+            return null;
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Whether metrics are recorded and written to the log.
+     *
+     * @param enabled True to write metrics in the Embedded Metric Format
+     */
+    @Value("${arc.metrics.emf.enabled:false}")
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * The CloudWatch namespace of the metrics.
+     *
+     * @param namespace The namespace
+     */
+    @Value("${arc.metrics.emf.namespace:ArcIFX}")
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    /**
+     * How many values can be recorded between two flushes.
+     *
+     * @param bufferSize The buffer capacity
+     */
+    @Value("${arc.metrics.emf.bufferSize:1024}")
+    public synchronized void setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Metrics buffer size must be at least 1");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    private enum Kind {
+        COUNTER("Count"),
+        GAUGE("None"),
+        TIMER("Milliseconds");
+
+        private final String unit;
+
+        Kind(String unit) {
+            this.unit = unit;
+        }
+    }
+
+    private static final class Metric {
+        private final int index;
+        private final String name;
+        private final Kind kind;
+
+        Metric(int index, String name, Kind kind) {
+            this.index = index;
+            this.name = name;
+            this.kind = kind;
+        }
+    }
+
+    private static final class DimensionSet {
+        private final String key;
+        private final int typeId;
+        private final String handler;
+
+        DimensionSet(String key, int typeId, String handler) {
+            this.key = key;
+            this.typeId = typeId;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * Recorded values, in parallel primitive arrays.
+     */
+    private static final class Buffer {
+        private final int[] dimensions;
+        private final int[] metrics;
+        private final double[] values;
+        private final boolean pooled;
+        private int size;
+        private int dropped;
+
+        Buffer(int capacity, boolean pooled) {
+            this.dimensions = new int[capacity];
+            this.metrics = new int[capacity];
+            this.values = new double[capacity];
+            this.pooled = pooled;
+        }
+
+        void add(int dimension, int metric, double value) {
+            if (size == values.length) {
+                dropped++;
+                return;
+            }
+            dimensions[size] = dimension;
+            metrics[size] = metric;
+            values[size] = value;
+            size++;
+        }
+
+        int capacity() {
+            return values.length;
+        }
+
+        Buffer copy() {
+            Buffer copy = new Buffer(capacity(), false);
+            System.arraycopy(dimensions, 0, copy.dimensions, 0, size);
+            System.arraycopy(metrics, 0, copy.metrics, 0, size);
+            System.arraycopy(values, 0, copy.values, 0, size);
+            copy.size = size;
+            copy.dropped = dropped;
+            return copy;
+        }
+
+        void clear() {
+            size = 0;
+            dropped = 0;
+        }
+    }
+}
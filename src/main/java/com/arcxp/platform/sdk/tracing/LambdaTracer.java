@@ -0,0 +1,234 @@
+package com.arcxp.platform.sdk.tracing;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.datadoghq.datadog_lambda_java.DDLambda;
+import com.datadoghq.datadog_lambda_java.Headerable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Datadog tracing of the Lambda invocations. Whether Datadog is configured is resolved once, from the
+ * {@code DD_API_KEY_SECRET_ARN} environment variable. The entry points only note the invocation with
+ * {@link #begin(Context, Map)}; the {@link DDLambda} trace is created when the broker has routed the message to at
+ * least one handler and the sampler keeps the event, so unhandled and unsampled events cost no tracing work.
+ *
+ * <p>Lambda runs one invocation at a time in a container, so the invocation being traced is held by the tracer
+ * rather than by the thread, and handlers running on worker threads are traced with it.</p>
+ */
+@Component
+public class LambdaTracer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LambdaTracer.class);
+
+    private final boolean enabled;
+
+    private final AtomicReference<Invocation> pending = new AtomicReference<>();
+
+    private final AtomicReference<DDLambda> active = new AtomicReference<>();
+
+    private double sampleRate = 1.0;
+
+    private Map<String, Double> sampleRates = Collections.emptyMap();
+
+    public LambdaTracer() {
+        this(StringUtils.hasLength(System.getenv("DD_API_KEY_SECRET_ARN")));
+    }
+
+    LambdaTracer(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Notes the start of an invocation. Nothing is traced until {@link #trace(String)} is called.
+     *
+     * @param context The Lambda context, without which the invocation is not traced
+     * @param headers The headers of the invocation carrying the trace context, or null
+     */
+    public void begin(Context context, Map<String, ?> headers) {
+        if (enabled && context != null) {
+            pending.set(new Invocation(context, headers));
+        }
+    }
+
+    /**
+     * Starts the trace of the current invocation, unless the sampler drops the event. Only the first call of an
+     * invocation has an effect.
+     *
+     * @param key The routed event key
+     */
+    public void trace(String key) {
+        if (pending.get() == null) {
+            return;
+        }
+        Invocation invocation = pending.getAndSet(null);
+        if (invocation == null || !isSampled(key)) {
+            return;
+        }
+        try {
+            active.set(startTrace(invocation.context, invocation.headers));
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to start the Datadog trace", e);
+        }
+    }
+
+    /**
+     * Ends the current invocation, finishing its trace if one was started.
+     */
+    public void end() {
+        pending.set(null);
+        DDLambda trace = active.getAndSet(null);
+        if (trace != null) {
+            try {
+                trace.finish();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to finish the Datadog trace", e);
+            }
+        }
+    }
+
+    /**
+     * Creates the trace of an invocation.
+     *
+     * @param context The Lambda context
+     * @param headers The headers carrying the trace context, or null
+     * @return The trace
+     */
+    protected DDLambda startTrace(Context context, Map<String, ?> headers) {
+        if (headers == null) {
+            return new DDLambda(context);
+        }
+        return new DDLambda(new HeadersView(headers), context);
+    }
+
+    boolean isSampled(String key) {
+        double rate = sampleRate;
+        if (!sampleRates.isEmpty() && key != null) {
+            Double override = sampleRates.get(key.toLowerCase(Locale.ROOT));
+            if (override != null) {
+                rate = override;
+            }
+        }
+        return rate >= 1.0 || rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    /**
+     * The share of handled invocations that are traced.
+     *
+     * @param sampleRate The rate, from 0 to 1
+     */
+    @Value("${arc.tracing.sampleRate:1.0}")
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Sample rates overriding {@code arc.tracing.sampleRate} for some event keys, as a comma separated list of
+     * {@code key=rate} pairs. Keys are namespaced, as in {@code commerce:ORDER_CREATED=0.1}, and compared without
+     * regard to case.
+     *
+     * @param sampleRates The rates per event key
+     */
+    @Value("${arc.tracing.sampleRates:}")
+    public void setSampleRates(String sampleRates) {
+        Map<String, Double> rates = new HashMap<>();
+        for (String pair : StringUtils.commaDelimitedListToSet(sampleRates)) {
+            int separator = pair.lastIndexOf('=');
+            if (separator <= 0) {
+                if (!pair.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Invalid sample rate " + pair + ", expected key=rate");
+                }
+                continue;
+            }
+            rates.put(pair.substring(0, separator).trim().toLowerCase(Locale.ROOT),
+                    Double.parseDouble(pair.substring(separator + 1).trim()));
+        }
+        this.sampleRates = rates;
+    }
+
+    private static final class Invocation {
+        private final Context context;
+        private final Map<String, ?> headers;
+
+        Invocation(Context context, Map<String, ?> headers) {
+            this.context = context;
+            this.headers = headers;
+        }
+    }
+
+    /**
+     * The invocation headers as the string map Datadog reads the trace context from, converting values on access
+     * instead of copying the headers.
+     */
+    private static final class HeadersView extends AbstractMap<String, String> implements Headerable {
+        private final Map<String, ?> headers;
+
+        HeadersView(Map<String, ?> headers) {
+            this.headers = headers;
+        }
+
+        @Override
+        public String get(Object key) {
+            Object value = headers.get(key);
+            return value == null ? null : value.toString();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return headers.containsKey(key);
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return new AbstractSet<Entry<String, String>>() {
+                @Override
+                public Iterator<Entry<String, String>> iterator() {
+                    Iterator<? extends Entry<String, ?>> entries = headers.entrySet().iterator();
+                    return new Iterator<Entry<String, String>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return entries.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, String> next() {
+                            Entry<String, ?> entry = entries.next();
+                            return new SimpleImmutableEntry<>(entry.getKey(), String.valueOf(entry.getValue()));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return headers.size();
+                }
+            };
+        }
+
+        @Override
+        public Map<String, String> getHeaders() {
+            return this;
+        }
+
+        @Override
+        public void setHeaders(Map<String, String> headers) {
+        }
+    }
+}
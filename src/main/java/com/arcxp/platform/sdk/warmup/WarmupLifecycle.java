@@ -0,0 +1,309 @@
+package com.arcxp.platform.sdk.warmup;
+
+import com.arcxp.platform.sdk.annotations.ArcWarmup;
+import com.arcxp.platform.sdk.broker.MessageBroker;
+import com.arcxp.platform.sdk.handlers.async.EventHandler;
+import com.arcxp.platform.sdk.handlers.sync.RequestHandler;
+import com.arcxp.platform.sdk.http.ArcHttpClient;
+import com.arcxp.platform.sdk.http.AsyncArcHttpClient;
+import com.arcxp.platform.sdk.http.DefaultArcHttpClient;
+import com.arcxp.platform.sdk.http.DefaultAsyncArcHttpClient;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Primes the function so that the first real invocation does not pay for class loading, JIT compilation and
+ * Jackson serializer creation. Priming drives synthetic messages of every supported shape through
+ * {@link MessageBroker} with the reserved {@link MessageBroker#WARMUP_KEY}, which the broker never routes to
+ * handlers, then clears the broker metrics the synthetic messages were recorded in, and finally invokes the
+ * {@link ArcWarmup} methods of the handlers.
+ *
+ * <p>In {@link WarmupMode#CHECKPOINT} mode priming runs in the CRaC {@code beforeCheckpoint} hook, which AWS Lambda
+ * SnapStart calls before taking the snapshot, and the HTTP connections are rebuilt in {@code afterRestore}. In
+ * {@link WarmupMode#STARTUP} mode priming runs once the context has started, and the latency of a message before
+ * and after priming is logged, so the effect can be measured locally without CRaC.</p>
+ */
+@Component
+public class WarmupLifecycle implements SmartInitializingSingleton, Resource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WarmupLifecycle.class);
+
+    static final String WARMUP_KEY = MessageBroker.WARMUP_KEY;
+
+    private final MessageBroker messageBroker;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectProvider<EventHandler> eventHandlers;
+
+    private final ObjectProvider<RequestHandler> requestHandlers;
+
+    private final ObjectProvider<ArcHttpClient> arcHttpClient;
+
+    private AsyncArcHttpClient asyncArcHttpClient;
+
+    private WarmupMode mode = WarmupMode.NONE;
+
+    private int iterations = 500;
+
+    public WarmupLifecycle(MessageBroker messageBroker, ObjectMapper objectMapper,
+                           ObjectProvider<EventHandler> eventHandlers,
+                           ObjectProvider<RequestHandler> requestHandlers,
+                           ObjectProvider<ArcHttpClient> arcHttpClient) {
+        this.messageBroker = messageBroker;
+        this.objectMapper = objectMapper;
+        this.eventHandlers = eventHandlers;
+        this.requestHandlers = requestHandlers;
+        this.arcHttpClient = arcHttpClient;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        switch (mode) {
+            case CHECKPOINT:
+                Core.getGlobalContext().register(this);
+                LOG.info("Registered warmup for checkpoint");
+                break;
+            case STARTUP:
+                primeAndMeasure();
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        prime();
+        resetConnections();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        resetConnections();
+    }
+
+    /**
+     * Primes the function: synthetic messages are handled {@code iterations} times and the broker metrics are
+     * cleared, then the {@link ArcWarmup} methods of the handlers are invoked once. Failures are logged and never
+     * abort priming.
+     */
+    public void prime() {
+        long start = System.nanoTime();
+        List<byte[]> messages = syntheticMessages();
+        int failures = 0;
+        for (int i = 0; i < iterations; i++) {
+            for (byte[] message : messages) {
+                try {
+                    if ((i & 1) == 0) {
+                        messageBroker.handle(message);
+                    } else {
+                        messageBroker.handle(new String(message, StandardCharsets.UTF_8));
+                    }
+                } catch (RuntimeException e) {
+                    if (failures++ == 0) {
+                        LOG.warn("Synthetic warmup message failed", e);
+                    }
+                }
+            }
+        }
+        messageBroker.getMetrics().reset();
+        eventHandlers.orderedStream().forEach(this::invokeWarmupMethods);
+        requestHandlers.orderedStream().forEach(this::invokeWarmupMethods);
+        LOG.info("Warmup took {} ms, {} synthetic messages failed",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures);
+    }
+
+    private void primeAndMeasure() {
+        byte[] probe = syntheticMessages().get(1);
+        long cold = timeMessage(probe);
+        prime();
+        long warm = timeMessage(probe);
+        messageBroker.getMetrics().reset();
+        LOG.info("Synthetic message took {} us before warmup and {} us after", cold, warm);
+    }
+
+    private long timeMessage(byte[] message) {
+        long start = System.nanoTime();
+        try {
+            messageBroker.handle(message);
+        } catch (RuntimeException e) {
+            LOG.warn("Synthetic warmup message failed", e);
+        }
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+    }
+
+    private void invokeWarmupMethods(Object handler) {
+        Class<?> type = AopUtils.getTargetClass(handler);
+        ReflectionUtils.doWithMethods(type, method -> invokeWarmupMethod(handler, method),
+                method -> method.isAnnotationPresent(ArcWarmup.class));
+    }
+
+    private void invokeWarmupMethod(Object handler, Method method) {
+        if (method.getParameterCount() != 0) {
+            LOG.warn("Skipping warmup method {}.{}, warmup methods take no arguments",
+                    method.getDeclaringClass().getName(), method.getName());
+            return;
+        }
+        try {
+            ReflectionUtils.makeAccessible(method);
+            method.invoke(handler);
+        } catch (InvocationTargetException e) {
+            LOG.warn("Warmup method " + method.getDeclaringClass().getName() + "." + method.getName() + " failed",
+                    e.getTargetException());
+        } catch (IllegalAccessException | IllegalArgumentException e) {
+            LOG.warn("Unable to invoke warmup method " + method.getDeclaringClass().getName() + "."
+                    + method.getName(), e);
+        }
+    }
+
+    private void resetConnections() {
+        ArcHttpClient client = arcHttpClient.getIfAvailable();
+        if (client instanceof DefaultArcHttpClient) {
+            ((DefaultArcHttpClient) client).resetConnections();
+        }
+        if (asyncArcHttpClient instanceof DefaultAsyncArcHttpClient) {
+            ((DefaultAsyncArcHttpClient) asyncArcHttpClient).resetConnections();
+        }
+    }
+
+    /**
+     * One message of every shape the broker accepts, all routed to {@link #WARMUP_KEY}.
+     */
+    private List<byte[]> syntheticMessages() {
+        List<ObjectNode> messages = new ArrayList<>();
+
+        ObjectNode legacyEvent = objectMapper.createObjectNode();
+        legacyEvent.put("eventType", WARMUP_KEY);
+        legacyEvent.put("eventTime", 0L);
+        messages.add(legacyEvent);
+
+        for (int typeId : new int[] {1, 5}) {
+            ObjectNode event = objectMapper.createObjectNode();
+            event.put("version", 2);
+            event.put("typeId", typeId);
+            event.put("eventName", WARMUP_KEY);
+            event.put("eventTime", 0L);
+            event.put("uuid", "warmup");
+            event.put("currentUserId", "");
+            messages.add(event);
+        }
+
+        for (int typeId : new int[] {2, 3, 4}) {
+            ObjectNode request = objectMapper.createObjectNode();
+            request.put("key", WARMUP_KEY);
+            request.put("typeId", typeId);
+            request.put("uuid", "warmup");
+            request.put("uri", MessageBroker.WARMUP_URI);
+            request.put("currentUserId", "");
+            messages.add(request);
+        }
+
+        for (ObjectNode message : messages) {
+            // Routes the message when the broker hands payloads to handlers without transforming them
+            message.put("key", WARMUP_KEY);
+            message.set("body", syntheticBody());
+        }
+
+        ObjectNode batch = objectMapper.createObjectNode();
+        ArrayNode events = batch.putArray("events");
+        events.add(messages.get(1).deepCopy());
+        events.add(messages.get(2).deepCopy());
+        messages.add(batch);
+
+        List<byte[]> serialized = new ArrayList<>(messages.size());
+        try {
+            for (ObjectNode message : messages) {
+                serialized.add(objectMapper.writeValueAsBytes(message));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize warmup messages", e);
+        }
+        return serialized;
+    }
+
+    private ObjectNode syntheticBody() {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("warmup", true);
+        body.put("id", "warmup");
+        ArrayNode items = body.putArray("items");
+        for (int i = 0; i < 4; i++) {
+            ObjectNode item = items.addObject();
+            item.put("sku", "SKU-" + i);
+            item.put("quantity", i + 1);
+            item.put("price", 9.99 * (i + 1));
+        }
+        body.putObject("attributes").put("source", "warmup");
+        return body;
+    }
+
+    /**
+     * When the function is primed.
+     *
+     * @param mode The warmup mode
+     */
+    @Value("${arc.warmup.mode:NONE}")
+    public void setMode(WarmupMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * The non-blocking client, whose connections are dropped before a checkpoint as well.
+     *
+     * @param asyncArcHttpClient The client
+     */
+    @Autowired(required = false)
+    public void setAsyncArcHttpClient(AsyncArcHttpClient asyncArcHttpClient) {
+        this.asyncArcHttpClient = asyncArcHttpClient;
+    }
+
+    /**
+     * How many times each synthetic message is handled while priming.
+     *
+     * @param iterations The number of iterations
+     */
+    @Value("${arc.warmup.iterations:500}")
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * When the function is primed.
+     */
+    public enum WarmupMode {
+        /**
+         * The function is not primed.
+         */
+        NONE,
+        /**
+         * The function is primed before a SnapStart or CRaC checkpoint, and its connections are rebuilt after the
+         * restore.
+         */
+        CHECKPOINT,
+        /**
+         * The function is primed on startup, and the latency of a message before and after priming is logged.
+         */
+        STARTUP
+    }
+}
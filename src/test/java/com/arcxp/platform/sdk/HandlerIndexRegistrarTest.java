@@ -0,0 +1,116 @@
+package com.arcxp.platform.sdk;
+
+import com.arcxp.platform.sdk.annotations.HandlerIndex;
+import com.arcxp.platform.sdk.annotations.processing.HandlerIndexProcessor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HandlerIndexRegistrarTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testEachPackageIsIndexedOrScannedAndProfilesAreHonoured() throws Exception {
+        File indexed = compile("indexed", true,
+                "com/example/app/PlainComponent.java",
+                "package com.example.app;\n"
+                        + "@org.springframework.stereotype.Component\n"
+                        + "public class PlainComponent {}\n",
+                "com/example/app/LocalComponent.java",
+                "package com.example.app;\n"
+                        + "@org.springframework.stereotype.Component\n"
+                        + "@org.springframework.context.annotation.Profile(\"local\")\n"
+                        + "public class LocalComponent {}\n");
+        File scanned = compile("scanned", false,
+                "com/example/other/OtherComponent.java",
+                "package com.example.other;\n"
+                        + "@org.springframework.stereotype.Component\n"
+                        + "public class OtherComponent {}\n");
+        assertTrue(new File(indexed, HandlerIndex.LOCATION).isFile());
+        assertFalse(new File(scanned, HandlerIndex.LOCATION).exists());
+
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test",
+                Collections.singletonMap("basePackage", "com.example.app,com.example.other")));
+        environment.setActiveProfiles("prod");
+        DefaultListableBeanFactory registry = new DefaultListableBeanFactory();
+
+        try (URLClassLoader loader = new URLClassLoader(
+                new URL[] {indexed.toURI().toURL(), scanned.toURI().toURL()}, getClass().getClassLoader())) {
+            HandlerIndexRegistrar registrar = new HandlerIndexRegistrar();
+            registrar.setEnvironment(environment);
+            registrar.setResourceLoader(new DefaultResourceLoader(loader));
+            registrar.setBeanClassLoader(loader);
+            registrar.registerBeanDefinitions(null, registry);
+        }
+
+        assertTrue(registry.containsBeanDefinition("plainComponent"));
+        assertFalse(registry.containsBeanDefinition("localComponent"));
+        assertTrue(registry.containsBeanDefinition("otherComponent"));
+    }
+
+    /**
+     * Compiles pairs of source path and content into a new classpath root.
+     */
+    private File compile(String name, boolean index, String... sources) throws Exception {
+        File sourceRoot = folder.newFolder(name + "-src");
+        File classes = folder.newFolder(name);
+        File[] files = new File[sources.length / 2];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(sourceRoot, sources[2 * i]);
+            files[i].getParentFile().mkdirs();
+            Files.write(files[i].toPath(), sources[2 * i + 1].getBytes(StandardCharsets.UTF_8));
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager =
+                     compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            List<String> options = new ArrayList<>(Arrays.asList("-d", classes.getPath(), "-classpath", classpath()));
+            if (!index) {
+                options.add("-proc:none");
+            }
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null,
+                    fileManager.getJavaFileObjects(files));
+            if (index) {
+                task.setProcessors(Collections.singletonList(new HandlerIndexProcessor()));
+            }
+            assertTrue(task.call());
+        }
+        return classes;
+    }
+
+    private static String classpath() throws URISyntaxException {
+        StringBuilder classpath = new StringBuilder();
+        for (Class<?> type : Arrays.asList(HandlerIndex.class, Component.class, Profile.class)) {
+            if (classpath.length() > 0) {
+                classpath.append(File.pathSeparator);
+            }
+            classpath.append(new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+        }
+        return classpath.toString();
+    }
+}
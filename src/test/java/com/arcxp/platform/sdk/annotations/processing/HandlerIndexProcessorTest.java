@@ -0,0 +1,139 @@
+package com.arcxp.platform.sdk.annotations.processing;
+
+import com.arcxp.platform.sdk.annotations.HandlerIndex;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HandlerIndexProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testIndexListsHandlersAndComponents() throws Exception {
+        File sources = folder.newFolder("src");
+        File classes = folder.newFolder("classes");
+        List<File> files = new ArrayList<>();
+        files.add(source(sources, "com/example/app/OrderHandler.java",
+                "package com.example.app;\n"
+                        + "@com.arcxp.platform.sdk.annotations.ArcAsyncEvent(\"commerce:ORDER_PLACED\")\n"
+                        + "public class OrderHandler extends com.arcxp.platform.sdk.handlers.async.EventHandler {\n"
+                        + "    public void handle(com.arcxp.platform.sdk.handlers.async.EventPayload payload) {}\n"
+                        + "}\n"));
+        files.add(source(sources, "com/example/app/sync/CartHandler.java",
+                "package com.example.app.sync;\n"
+                        + "@com.arcxp.platform.sdk.annotations.ArcSyncEvent(\n"
+                        + "        {\"commerce:CART_ADD_BEFORE\", \"commerce:some/url\"})\n"
+                        + "public class CartHandler extends com.arcxp.platform.sdk.handlers.sync.RequestHandler {\n"
+                        + "    public void handle(com.arcxp.platform.sdk.handlers.sync.RequestPayload payload) {}\n"
+                        + "}\n"));
+        files.add(source(sources, "com/example/app/services/Pricing.java",
+                "package com.example.app.services;\n"
+                        + "@org.springframework.stereotype.Service\n"
+                        + "public class Pricing {\n"
+                        + "    public static class Helper {}\n"
+                        + "}\n"));
+
+        compile(files, classes);
+
+        assertEquals(Arrays.asList("com.example.app.OrderHandler", "com.example.app.sync.CartHandler",
+                "com.example.app.services.Pricing"), index(classes));
+    }
+
+    @Test
+    public void testIncrementalCompileMergesThePreviousIndex() throws Exception {
+        File sources = folder.newFolder("src");
+        File classes = folder.newFolder("classes");
+        File order = source(sources, "com/example/app/OrderHandler.java",
+                "package com.example.app;\n"
+                        + "@com.arcxp.platform.sdk.annotations.ArcAsyncEvent(\"commerce:ORDER_PLACED\")\n"
+                        + "public class OrderHandler extends com.arcxp.platform.sdk.handlers.async.EventHandler {\n"
+                        + "    public void handle(com.arcxp.platform.sdk.handlers.async.EventPayload payload) {}\n"
+                        + "}\n");
+        File cart = source(sources, "com/example/app/CartHandler.java",
+                "package com.example.app;\n"
+                        + "@com.arcxp.platform.sdk.annotations.ArcSyncEvent(\"commerce:CART_ADD\")\n"
+                        + "public class CartHandler extends com.arcxp.platform.sdk.handlers.sync.RequestHandler {\n"
+                        + "    public void handle(com.arcxp.platform.sdk.handlers.sync.RequestPayload payload) {}\n"
+                        + "}\n");
+        File pricing = source(sources, "com/example/app/Pricing.java",
+                "package com.example.app;\n"
+                        + "@org.springframework.stereotype.Service\n"
+                        + "public class Pricing {}\n");
+        compile(Arrays.asList(order, cart, pricing), classes);
+
+        // Only the changed file is compiled again, and a deleted class leaves the index
+        Files.delete(new File(classes, "com/example/app/Pricing.class").toPath());
+        File refund = source(sources, "com/example/app/RefundHandler.java",
+                "package com.example.app;\n"
+                        + "@com.arcxp.platform.sdk.annotations.ArcAsyncEvent(\"commerce:ORDER_REFUNDED\")\n"
+                        + "public class RefundHandler extends com.arcxp.platform.sdk.handlers.async.EventHandler {\n"
+                        + "    public void handle(com.arcxp.platform.sdk.handlers.async.EventPayload payload) {}\n"
+                        + "}\n");
+        compile(Arrays.asList(order, refund), classes);
+
+        assertEquals(Arrays.asList("com.example.app.CartHandler", "com.example.app.OrderHandler",
+                "com.example.app.RefundHandler"), index(classes));
+    }
+
+    private static void compile(List<File> files, File classes) throws URISyntaxException, IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, UTF_8)) {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(files);
+            List<String> options = Arrays.asList("-d", classes.getPath(), "-classpath",
+                    classpath() + File.pathSeparator + classes.getPath());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, units);
+            task.setProcessors(Collections.singletonList(new HandlerIndexProcessor()));
+            assertTrue(task.call());
+        }
+    }
+
+    private static List<String> index(File classes) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        for (String line : Files.readAllLines(new File(classes, HandlerIndex.LOCATION).toPath(), UTF_8)) {
+            if (!line.startsWith("#")) {
+                classNames.add(line);
+            }
+        }
+        return classNames;
+    }
+
+    private static File source(File root, String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static String classpath() throws URISyntaxException {
+        StringBuilder classpath = new StringBuilder();
+        for (Class<?> type : Arrays.asList(HandlerIndex.class, Component.class, JsonInclude.class)) {
+            if (classpath.length() > 0) {
+                classpath.append(File.pathSeparator);
+            }
+            classpath.append(new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+        }
+        return classpath.toString();
+    }
+}
@@ -0,0 +1,86 @@
+package com.arcxp.platform.sdk.bootstrap;
+
+import com.arcxp.platform.sdk.annotations.ArcSyncEvent;
+import com.arcxp.platform.sdk.broker.MessageBroker;
+import com.arcxp.platform.sdk.handlers.sync.RequestHandler;
+import com.arcxp.platform.sdk.handlers.sync.RequestPayload;
+import com.arcxp.platform.sdk.http.ArcHttpClient;
+import com.arcxp.platform.sdk.utils.MapUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class ArcStreamHandlerTest {
+
+    @Component
+    public static class PriceService {
+        @Value("${arc.test.price:1250}")
+        private int price;
+
+        int price() {
+            return price;
+        }
+    }
+
+    @ArcSyncEvent("commerce:PRICE_CHECK")
+    public static class PriceCheckHandler extends RequestHandler {
+        private final PriceService priceService;
+
+        @Autowired
+        private ArcHttpClient arcHttpClient;
+
+        @Autowired
+        private MessageBroker messageBroker;
+
+        public PriceCheckHandler(PriceService priceService) {
+            this.priceService = priceService;
+        }
+
+        @Override
+        public void handle(RequestPayload payload) {
+            payload.getBody().put("price", priceService.price());
+        }
+    }
+
+    public static class TestStreamHandler extends ArcStreamHandler {
+        @Override
+        protected List<Class<?>> handlerClasses() {
+            return Arrays.asList(PriceService.class, PriceCheckHandler.class);
+        }
+    }
+
+    @Test
+    public void testHandlersAreWiredWithoutSpring() throws IOException {
+        TestStreamHandler streamHandler = new TestStreamHandler();
+        ObjectMapper objectMapper = MapUtils.createObjectMapper();
+
+        String message = "{\"version\":2,\"typeId\":5,\"eventName\":\"commerce:PRICE_CHECK\",\"uuid\":\"u1\","
+                + "\"currentUserId\":\"\",\"body\":{\"sku\":\"SKU-1\"}}";
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        streamHandler.handleRequest(new ByteArrayInputStream(message.getBytes(StandardCharsets.UTF_8)), output, null);
+
+        JsonNode response = objectMapper.readTree(output.toByteArray());
+        assertEquals(1250, response.get("body").get("price").asInt());
+        assertEquals("SKU-1", response.get("body").get("sku").asText());
+
+        LightweightContainer container = streamHandler.getContainer();
+        PriceCheckHandler handler = container.getBean(PriceCheckHandler.class);
+        assertNotNull(handler.arcHttpClient);
+        assertSame(container.getBean(MessageBroker.class), handler.messageBroker);
+        container.close();
+    }
+}
@@ -5,24 +5,42 @@ import com.arcxp.platform.sdk.annotations.ArcEndpoint;
 import com.arcxp.platform.sdk.annotations.ArcRequestIntercept;
 import com.arcxp.platform.sdk.annotations.ArcResponseIntercept;
 import com.arcxp.platform.sdk.annotations.ArcSyncEvent;
+import com.arcxp.platform.sdk.handlers.InvocationContext;
 import com.arcxp.platform.sdk.handlers.Payload;
+import com.arcxp.platform.sdk.handlers.async.EventException;
 import com.arcxp.platform.sdk.handlers.async.EventHandler;
 import com.arcxp.platform.sdk.handlers.async.EventPayload;
 import com.arcxp.platform.sdk.handlers.sync.RequestHandler;
 import com.arcxp.platform.sdk.handlers.sync.RequestPayload;
+import com.arcxp.platform.sdk.handlers.sync.TypedRequestHandler;
+import com.arcxp.platform.sdk.metrics.BrokerMetrics;
+import com.arcxp.platform.sdk.metrics.HandlerMetrics;
 import com.arcxp.platform.sdk.utils.MapUtils;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.MockitoAnnotations;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class MessageBrokerTest {
 
@@ -358,6 +376,571 @@ public class MessageBrokerTest {
     }
 
 
+    public static class VerifyEmailBody {
+        private String email;
+
+        public String getEmail() {
+            return email;
+        }
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+    }
+
+    @Test
+    public void testAsyncEventBodyBindsToClassFromRawBytes() throws IOException {
+        ObjectNode eventPayloadNode = objectMapper.createObjectNode();
+        eventPayloadNode.put("eventName", "pagebuilder:VERIFY_EMAIL");
+        eventPayloadNode.put("version", 2);
+        eventPayloadNode.put("typeId", 1);
+        eventPayloadNode.put("currentUserId", "");
+        eventPayloadNode.putObject("body").put("email", "reader@example.com").put("unmapped", true);
+
+        this.messageBroker.handle(objectMapper.writeValueAsString(eventPayloadNode));
+
+        assertEquals("TestAsync", calledHandlerName);
+        assertEquals("reader@example.com", calledPayload.getBodyAs(VerifyEmailBody.class).getEmail());
+        assertEquals(eventPayloadNode.get("body"), objectMapper.readTree(calledPayload.getRawBody()));
+        assertEquals("reader@example.com", calledPayload.getBody().get("email").asText());
+    }
+
+    @Test
+    public void testByteAndStreamHandlersMatchStringHandler() throws IOException {
+        ObjectNode requestPayloadNode = objectMapper.createObjectNode();
+        requestPayloadNode.put("eventName", "commerce:NOT_HANDLED");
+        requestPayloadNode.put("version", 2);
+        requestPayloadNode.put("typeId", 5);
+        requestPayloadNode.put("uuid", "uuid123");
+        requestPayloadNode.put("currentUserId", "userid123");
+        requestPayloadNode.putObject("body").put("price", "\u20ac10");
+        byte[] message = objectMapper.writeValueAsBytes(requestPayloadNode);
+
+        String fromString = this.messageBroker.handle(new String(message, StandardCharsets.UTF_8));
+        byte[] fromBytes = this.messageBroker.handle(message);
+        ByteArrayOutputStream fromStream = new ByteArrayOutputStream();
+        this.messageBroker.handle(new ByteArrayInputStream(message), fromStream);
+
+        assertEquals(fromString, new String(fromBytes, StandardCharsets.UTF_8));
+        assertEquals(fromString, new String(fromStream.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals("\u20ac10", objectMapper.readTree(fromBytes).get("body").get("price").asText());
+    }
+
+    @Test
+    public void testParallelEventHandlersAllRunWhenOneFails() throws IOException, InterruptedException {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        List<String> calls = Collections.synchronizedList(new ArrayList<>());
+        @ArcAsyncEvent("commerce:ORDER_CREATED")
+        class FailingHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                bothStarted.countDown();
+                throw new EventException("E200", "failed");
+            }
+        }
+        @ArcAsyncEvent("commerce:ORDER_CREATED")
+        class SlowHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                bothStarted.countDown();
+                try {
+                    bothStarted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                calls.add(payload.getBody().get("order").asText());
+            }
+        }
+        List<EventHandler> eventHandlers = new ArrayList<>();
+        eventHandlers.add(new FailingHandler());
+        eventHandlers.add(new SlowHandler());
+        messageBroker.setEventHandlers(eventHandlers);
+        messageBroker.setParallelEventHandlers(true);
+
+        ObjectNode eventPayloadNode = objectMapper.createObjectNode();
+        eventPayloadNode.put("eventType", "ORDER_CREATED");
+        eventPayloadNode.put("eventTime", 1648496000);
+        eventPayloadNode.putObject("body").put("order", "123");
+
+        try {
+            this.messageBroker.handle(objectMapper.writeValueAsString(eventPayloadNode));
+            fail("Expected the failing handler to be reported");
+        } catch (EventException e) {
+            assertEquals("E200", e.getCode());
+        } finally {
+            messageBroker.shutdown();
+        }
+        assertEquals(Collections.singletonList("123"), calls);
+    }
+
+    @Test
+    public void testBatchReportsEachEventByUuid() throws IOException {
+        @ArcAsyncEvent("commerce:POISON")
+        class PoisonHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                throw new EventException("E100", "poisoned " + payload.getUuid());
+            }
+        }
+        List<EventHandler> eventHandlers = new ArrayList<>();
+        eventHandlers.add(new TestAsync());
+        eventHandlers.add(new PoisonHandler());
+        messageBroker.setEventHandlers(eventHandlers);
+        messageBroker.setBatchOrdering(MessageBroker.BatchOrdering.PARALLEL);
+
+        ObjectNode batchNode = objectMapper.createObjectNode();
+        ArrayNode events = batchNode.putArray("events");
+        events.addObject().put("eventName", "pagebuilder:VERIFY_EMAIL").put("version", 2).put("typeId", 1)
+                .put("uuid", "uuid-1").put("currentUserId", "").putObject("body").put("test", "first");
+        events.addObject().put("eventName", "POISON").put("version", 2).put("typeId", 1)
+                .put("uuid", "uuid-2").put("currentUserId", "");
+        events.add("not an event");
+
+        JsonNode response = objectMapper.readTree(
+                this.messageBroker.handle(objectMapper.writeValueAsString(batchNode)));
+
+        JsonNode results = response.get("results");
+        assertEquals(3, results.size());
+        assertEquals("uuid-1", results.get(0).get("uuid").asText());
+        assertEquals("SUCCESS", results.get(0).get("status").asText());
+        assertEquals("first", results.get(0).get("response").get("body").get("test").asText());
+        assertEquals("uuid-2", results.get(1).get("uuid").asText());
+        assertEquals("FAILED", results.get(1).get("status").asText());
+        assertEquals("E100", results.get(1).get("error").get("code").asText());
+        assertEquals("FAILED", results.get(2).get("status").asText());
+        assertEquals("TestAsync", calledHandlerName);
+        messageBroker.shutdown();
+    }
+
+    @Test(expected = EventPayloadException.class)
+    public void testBatchShouldThrowWhenLargerThanMaximum() throws IOException {
+        messageBroker.setMaxBatchSize(1);
+        ArrayNode batchNode = objectMapper.createArrayNode();
+        batchNode.addObject().put("eventType", "pagebuilder:VERIFY_EMAIL").put("eventTime", 1648496000);
+        batchNode.addObject().put("eventType", "pagebuilder:VERIFY_EMAIL").put("eventTime", 1648496000);
+
+        this.messageBroker.handle(objectMapper.writeValueAsString(batchNode));
+    }
+
+    @Test
+    public void testSingleEventWithAnEventsFieldIsNotABatch() throws IOException {
+        ObjectNode eventPayloadNode = objectMapper.createObjectNode();
+        eventPayloadNode.put("key", "pagebuilder:VERIFY_EMAIL");
+        eventPayloadNode.putArray("events").addObject().put("eventName", "POISON");
+        eventPayloadNode.putObject("body").put("someKey", "someValue");
+
+        this.messageBroker.setShouldTransformPayload(false);
+        String response = this.messageBroker.handle(objectMapper.writeValueAsString(eventPayloadNode));
+
+        assertEquals("TestAsync", calledHandlerName);
+        assertEquals("pagebuilder:VERIFY_EMAIL", calledPayload.getKey());
+        assertEquals("someValue", calledPayload.getBody().get("someKey").asText());
+        assertTrue(response == null || !response.contains("results"));
+    }
+
+    public static class PriceResponse {
+        private final String email;
+        private final int cents;
+
+        PriceResponse(String email, int cents) {
+            this.email = email;
+            this.cents = cents;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public int getCents() {
+            return cents;
+        }
+    }
+
+    @Test
+    public void testTypedRequestHandlerBindsAndWritesBody() throws IOException {
+        @ArcSyncEvent("commerce:PRICE")
+        class TypedPriceHandler extends TypedRequestHandler<VerifyEmailBody, PriceResponse> {
+            @Override
+            public PriceResponse handle(RequestPayload payload, VerifyEmailBody body) {
+                calledHandlerName = "TypedPriceHandler";
+                return new PriceResponse(body.getEmail(), 1250);
+            }
+        }
+        messageBroker.setRequestHandlers(Collections.singletonList(new TypedPriceHandler()));
+
+        ObjectNode requestPayloadNode = objectMapper.createObjectNode();
+        requestPayloadNode.put("eventName", "commerce:PRICE");
+        requestPayloadNode.put("version", 2);
+        requestPayloadNode.put("typeId", 5);
+        requestPayloadNode.put("uuid", "uuid123");
+        requestPayloadNode.put("currentUserId", "userid123");
+        requestPayloadNode.putObject("body").put("email", "typed@example.com");
+
+        JsonNode response = objectMapper.readTree(
+                this.messageBroker.handle(objectMapper.writeValueAsString(requestPayloadNode)));
+
+        assertEquals("TypedPriceHandler", calledHandlerName);
+        assertEquals("typed@example.com", response.get("body").get("email").asText());
+        assertEquals(1250, response.get("body").get("cents").asInt());
+    }
+
+    @Test
+    public void testUnhandledSyncEventReturnsBodyUnchanged() throws IOException {
+        ObjectNode requestPayloadNode = objectMapper.createObjectNode();
+        requestPayloadNode.put("eventName", "commerce:NOT_HANDLED");
+        requestPayloadNode.put("version", 2);
+        requestPayloadNode.put("typeId", 5);
+        requestPayloadNode.put("uuid", "uuid123");
+        requestPayloadNode.put("currentUserId", "userid123");
+        requestPayloadNode.put("unknownEnvelopeField", "ignored");
+
+        ObjectNode bodyNode = objectMapper.createObjectNode();
+        bodyNode.put("test", "sync body");
+        bodyNode.putArray("items").addObject().put("sku", "\u20ac1");
+        requestPayloadNode.set("body", bodyNode);
+
+        String response = this.messageBroker.handle(objectMapper.writeValueAsString(requestPayloadNode));
+
+        assertNull(calledHandlerName);
+        ObjectNode responseNode = (ObjectNode) objectMapper.readTree(response);
+        assertEquals("commerce:NOT_HANDLED", responseNode.get("key").asText());
+        assertEquals(bodyNode, responseNode.get("body"));
+    }
+
+    @Test(expected = EventPayloadException.class)
+    public void testSyncEventV2ShouldThrowForNonObjectBody() throws IOException {
+        ObjectNode requestPayloadNode = objectMapper.createObjectNode();
+        requestPayloadNode.put("eventName", "commerce:some/url/2");
+        requestPayloadNode.put("version", 2);
+        requestPayloadNode.put("typeId", 5);
+        requestPayloadNode.put("currentUserId", "userid123");
+        requestPayloadNode.putArray("body");
+
+        this.messageBroker.handle(objectMapper.writeValueAsString(requestPayloadNode));
+    }
+
+    @Test
+    public void testAsyncEventRoutingIsCaseInsensitiveAndSkipsDuplicateKeys() throws IOException {
+        List<String> calls = new ArrayList<>();
+        @ArcAsyncEvent({"commerce:ORDER_CREATED", "COMMERCE:order_created"})
+        class FirstOrderHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                calls.add("first");
+            }
+        }
+        @ArcAsyncEvent("commerce:ORDER_CREATED")
+        class SecondOrderHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                calls.add("second");
+            }
+        }
+        List<EventHandler> eventHandlers = new ArrayList<>();
+        eventHandlers.add(new FirstOrderHandler());
+        eventHandlers.add(new SecondOrderHandler());
+        messageBroker.setEventHandlers(eventHandlers);
+
+        ObjectNode eventPayloadNode = objectMapper.createObjectNode();
+        eventPayloadNode.put("eventType", "Order_Created");
+        eventPayloadNode.put("eventTime", 1648496000);
+
+        this.messageBroker.handle(objectMapper.writeValueAsString(eventPayloadNode));
+
+        assertEquals(Arrays.asList("first", "second"), calls);
+    }
+
+    @Test
+    public void testAsyncEventsReachEveryMatchingRouteAndEndpointsTheMostSpecific() throws IOException {
+        List<String> calls = new ArrayList<>();
+        @ArcAsyncEvent("commerce:ORDER_*")
+        class AnyOrderHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                calls.add("any:" + payload.getKey());
+            }
+        }
+        @ArcAsyncEvent("commerce:ORDER_CREATED")
+        class CreatedOrderHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                calls.add("created");
+            }
+        }
+        @ArcSyncEvent("commerce:/orders/{orderId}/items/{itemId}")
+        class OrderItemEndpoint extends RequestHandler {
+            @Override
+            public void handle(RequestPayload payload) {
+                calls.add("item:" + payload.getPathParam("orderId") + "/" + payload.getPathParam("itemId"));
+            }
+        }
+        @ArcSyncEvent("commerce:/orders/{orderId}/items/gift")
+        class GiftItemEndpoint extends RequestHandler {
+            @Override
+            public void handle(RequestPayload payload) {
+                calls.add("gift:" + payload.getPathParams());
+            }
+        }
+        messageBroker.setEventHandlers(Arrays.asList(new AnyOrderHandler(), new CreatedOrderHandler()));
+        messageBroker.setRequestHandlers(Arrays.asList(new OrderItemEndpoint(), new GiftItemEndpoint()));
+
+        for (String eventType : Arrays.asList("ORDER_CREATED", "order_shipped", "CART_UPDATED")) {
+            ObjectNode eventPayloadNode = objectMapper.createObjectNode();
+            eventPayloadNode.put("eventType", eventType);
+            eventPayloadNode.put("eventTime", 1648496000);
+            this.messageBroker.handle(objectMapper.writeValueAsString(eventPayloadNode));
+        }
+        for (String uri : Arrays.asList("/orders/A-42/items/7?expand=true", "/Orders/A-42/Items/GIFT",
+                "/orders/A-42")) {
+            ObjectNode requestPayloadNode = objectMapper.createObjectNode();
+            requestPayloadNode.put("key", "");
+            requestPayloadNode.put("typeId", 4);
+            requestPayloadNode.put("uuid", "");
+            requestPayloadNode.put("uri", uri);
+            requestPayloadNode.put("currentUserId", "");
+            this.messageBroker.handle(objectMapper.writeValueAsString(requestPayloadNode));
+        }
+
+        assertEquals(Arrays.asList("created", "any:commerce:ORDER_CREATED", "any:commerce:order_shipped", "item:A-42/7",
+                "gift:{orderId=A-42}"), calls);
+        assertEquals(1L, messageBroker.getMetrics().snapshot()
+                .getHandler("commerce:/orders/{orderId}/items/{itemId}", OrderItemEndpoint.class).getInvocations());
+    }
+
+    @Test
+    public void testPatternRoutesFallBackWhenAMoreSpecificRouteFailsLater() throws IOException {
+        List<String> calls = new ArrayList<>();
+        @ArcSyncEvent("commerce:/orders/gift/{giftId}/detail")
+        class GiftDetailEndpoint extends RequestHandler {
+            @Override
+            public void handle(RequestPayload payload) {
+                calls.add("detail:" + payload.getPathParams());
+            }
+        }
+        @ArcSyncEvent("commerce:/orders/{orderId}/items")
+        class OrderItemsEndpoint extends RequestHandler {
+            @Override
+            public void handle(RequestPayload payload) {
+                calls.add("items:" + payload.getPathParams());
+            }
+        }
+        @ArcSyncEvent("commerce:/orders/ORD{number}/*")
+        class NumberedOrderEndpoint extends RequestHandler {
+            @Override
+            public void handle(RequestPayload payload) {
+                calls.add("numbered:" + payload.getPathParams());
+            }
+        }
+        messageBroker.setRequestHandlers(Arrays.asList(new GiftDetailEndpoint(), new OrderItemsEndpoint(),
+                new NumberedOrderEndpoint()));
+
+        for (String uri : Arrays.asList("/orders/gift/items", "/orders/gift/7/detail", "/orders/ORD42/items",
+                "/orders/ORD42/notes", "/orders/gift/7")) {
+            ObjectNode requestPayloadNode = objectMapper.createObjectNode();
+            requestPayloadNode.put("key", "");
+            requestPayloadNode.put("typeId", 4);
+            requestPayloadNode.put("uuid", "");
+            requestPayloadNode.put("uri", uri);
+            requestPayloadNode.put("currentUserId", "");
+            this.messageBroker.handle(objectMapper.writeValueAsString(requestPayloadNode));
+        }
+
+        // A literal prefix is more specific than a parameter, even when the parameter route matches the rest exactly
+        assertEquals(Arrays.asList("items:{orderId=gift}", "detail:{giftId=7}", "numbered:{number=42}",
+                "numbered:{number=42}"), calls);
+    }
+
+    @Test
+    public void testPatternsWithTextAfterAWildcardOrParameterAreRejected() {
+        @ArcAsyncEvent("commerce:*_CREATED")
+        class CreatedHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+            }
+        }
+        @ArcSyncEvent("commerce:/files/{name}.json")
+        class JsonFileEndpoint extends RequestHandler {
+            @Override
+            public void handle(RequestPayload payload) {
+            }
+        }
+        messageBroker.setEventHandlers(Collections.singletonList(new CreatedHandler()));
+        try {
+            messageBroker.afterSingletonsInstantiated();
+            fail("Expected text after a wildcard to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Text after * in a segment of route commerce:*_created", e.getMessage());
+        }
+
+        messageBroker.setEventHandlers(Collections.emptyList());
+        messageBroker.setRequestHandlers(Collections.singletonList(new JsonFileEndpoint()));
+        try {
+            messageBroker.afterSingletonsInstantiated();
+            fail("Expected text after a parameter to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Text after a parameter in a segment of route commerce:/files/{name}.json", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDuplicateAsyncEventsAreSkippedUntilHandlersSucceed() throws IOException {
+        List<String> calls = new ArrayList<>();
+        @ArcAsyncEvent("commerce:ORDER_CREATED")
+        class FlakyOrderHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                calls.add(payload.getUuid());
+                if (calls.size() == 1) {
+                    throw new EventException("E500", "unavailable");
+                }
+            }
+        }
+        messageBroker.setEventHandlers(Collections.singletonList(new FlakyOrderHandler()));
+        messageBroker.setDedupEnabled(true);
+
+        ObjectNode eventPayloadNode = objectMapper.createObjectNode();
+        eventPayloadNode.put("eventName", "ORDER_CREATED");
+        eventPayloadNode.put("version", 2);
+        eventPayloadNode.put("typeId", 1);
+        eventPayloadNode.put("uuid", "5f0c6d8e-3b1a-4c2d-9e8f-7a6b5c4d3e2f");
+        eventPayloadNode.put("currentUserId", "");
+        String event = objectMapper.writeValueAsString(eventPayloadNode);
+
+        try {
+            this.messageBroker.handle(event);
+            fail("The first delivery should fail");
+        } catch (EventException expected) {
+            // The failed delivery is released and redelivered below
+        }
+        this.messageBroker.handle(event);
+        this.messageBroker.handle(event);
+        eventPayloadNode.put("uuid", "5f0c6d8e-3b1a-4c2d-9e8f-7a6b5c4d3e30");
+        this.messageBroker.handle(objectMapper.writeValueAsString(eventPayloadNode));
+
+        assertEquals(Arrays.asList("5f0c6d8e-3b1a-4c2d-9e8f-7a6b5c4d3e2f", "5f0c6d8e-3b1a-4c2d-9e8f-7a6b5c4d3e2f",
+                "5f0c6d8e-3b1a-4c2d-9e8f-7a6b5c4d3e30"), calls);
+    }
+
+    @Test
+    public void testEventsWithoutUuidAreNotDeduplicated() throws IOException {
+        List<String> calls = new ArrayList<>();
+        @ArcAsyncEvent("pagebuilder:VERIFY_EMAIL")
+        class VerifyEmailHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                calls.add(payload.getBody().get("email").asText());
+            }
+        }
+        messageBroker.setEventHandlers(Collections.singletonList(new VerifyEmailHandler()));
+        messageBroker.setDedupEnabled(true);
+        messageBroker.setShouldTransformPayload(false);
+
+        for (String email : Arrays.asList("a@example.com", "b@example.com")) {
+            ObjectNode eventPayloadNode = objectMapper.createObjectNode();
+            eventPayloadNode.put("key", "pagebuilder:VERIFY_EMAIL");
+            eventPayloadNode.putObject("body").put("email", email);
+            this.messageBroker.handle(objectMapper.writeValueAsString(eventPayloadNode));
+        }
+
+        assertEquals(Arrays.asList("a@example.com", "b@example.com"), calls);
+    }
+
+    @Test
+    public void testSyncHandlerIsAbandonedAtInvocationDeadline() throws IOException {
+        List<Long> remaining = new ArrayList<>();
+        @ArcSyncEvent("commerce:SLOW_PRICE")
+        class SlowPriceHandler extends RequestHandler {
+            @Override
+            public void handle(RequestPayload payload) {
+                remaining.add(InvocationContext.current().getRemainingMillis());
+                payload.getBody().put("price", 1);
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        messageBroker.setRequestHandlers(Collections.singletonList(new SlowPriceHandler()));
+        messageBroker.setDeadlineEnabled(true);
+        messageBroker.setDeadlineMarginMillis(500);
+
+        ObjectNode requestPayloadNode = objectMapper.createObjectNode();
+        requestPayloadNode.put("eventName", "SLOW_PRICE");
+        requestPayloadNode.put("version", 2);
+        requestPayloadNode.put("typeId", 5);
+        requestPayloadNode.put("uuid", "uuid123");
+        requestPayloadNode.put("currentUserId", "userid123");
+        requestPayloadNode.putObject("body");
+
+        long start = System.nanoTime();
+        JsonNode response;
+        try (InvocationContext.Scope scope = InvocationContext.withRemainingTime("request-1", 800).attach()) {
+            response = objectMapper.readTree(
+                    this.messageBroker.handle(objectMapper.writeValueAsString(requestPayloadNode)));
+        } finally {
+            messageBroker.shutdown();
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 800);
+        assertEquals("TIMEOUT", response.get("error").get("code").asText());
+        assertEquals("uuid123", response.get("uuid").asText());
+        assertFalse(response.path("body").isObject());
+        assertEquals(1, remaining.size());
+        assertTrue(remaining.get(0) > 0 && remaining.get(0) <= 800);
+        assertFalse(InvocationContext.current().hasDeadline());
+    }
+
+    @Test
+    public void testMetricsCountHandlerInvocationsErrorsAndSkips() throws IOException {
+        @ArcAsyncEvent("commerce:ORDER_CREATED")
+        class FailingOrderHandler extends EventHandler {
+            @Override
+            public void handle(EventPayload payload) {
+                if ("uuid-1".equals(payload.getUuid())) {
+                    throw new EventException("E500", "unavailable");
+                }
+            }
+        }
+        messageBroker.setEventHandlers(Collections.singletonList(new FailingOrderHandler()));
+        messageBroker.setDedupEnabled(true);
+        messageBroker.getMetrics().reset();
+
+        ObjectNode eventPayloadNode = objectMapper.createObjectNode();
+        eventPayloadNode.put("eventName", "ORDER_CREATED");
+        eventPayloadNode.put("version", 2);
+        eventPayloadNode.put("typeId", 1);
+        eventPayloadNode.put("currentUserId", "");
+        for (String uuid : new String[] {"uuid-1", "uuid-2", "uuid-2"}) {
+            eventPayloadNode.put("uuid", uuid);
+            try {
+                this.messageBroker.handle(objectMapper.writeValueAsString(eventPayloadNode));
+            } catch (EventException expected) {
+                // Counted as an error
+            }
+        }
+        this.messageBroker.handle(objectMapper.writeValueAsString(objectMapper.createObjectNode()
+                .put("eventName", "commerce:some/url/2").put("version", 2).put("typeId", 5).put("uuid", "uuid-3")
+                .put("currentUserId", "")));
+
+        BrokerMetrics.Snapshot snapshot = messageBroker.getMetrics().snapshot();
+        HandlerMetrics.Snapshot order = snapshot.getHandler("commerce:ORDER_CREATED", FailingOrderHandler.class);
+        assertEquals(2, order.getInvocations());
+        assertEquals(1, order.getErrors());
+        assertEquals(1, order.getSkips());
+        assertEquals(2, order.getLatency().getCount());
+        HandlerMetrics.Snapshot endpoint = snapshot.getHandler("commerce:some/url/2", SampleEndpoint.class);
+        assertEquals(1, endpoint.getInvocations());
+        assertEquals(0, endpoint.getErrors());
+        assertEquals(4, snapshot.getPhase(BrokerMetrics.Phase.PARSE).getCount());
+        assertEquals(3, snapshot.getPhase(BrokerMetrics.Phase.HANDLE).getCount());
+        assertEquals(3, snapshot.getPhase(BrokerMetrics.Phase.SERIALIZE).getCount());
+
+        messageBroker.getMetrics().reset();
+        assertEquals(0, messageBroker.getMetrics().snapshot()
+                .getHandler("commerce:ORDER_CREATED", FailingOrderHandler.class).getInvocations());
+    }
+
     private void setupRequestHandlers() {
         // Add test handlers
         List<RequestHandler> requestHandlers = new ArrayList<>();
@@ -0,0 +1,75 @@
+package com.arcxp.platform.sdk.broker.dedup;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DedupStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testInMemoryStoreExpiresAndReleasesClaims() {
+        AtomicLong now = new AtomicLong(1000L);
+        InMemoryDedupStore store = new InMemoryDedupStore(16, now::get);
+        String uuid = UUID.randomUUID().toString();
+
+        assertTrue(store.markIfAbsent(uuid, 100L));
+        assertFalse(store.markIfAbsent(uuid, 100L));
+        assertFalse(store.markIfAbsent(uuid.toUpperCase(), 100L));
+        assertTrue(store.markIfAbsent("not-a-uuid", 100L));
+        assertFalse(store.markIfAbsent("not-a-uuid", 100L));
+
+        store.release(uuid);
+        assertTrue(store.markIfAbsent(uuid, 100L));
+
+        now.addAndGet(100L);
+        assertTrue(store.markIfAbsent(uuid, 100L));
+        assertTrue(store.markIfAbsent("not-a-uuid", 100L));
+    }
+
+    @Test
+    public void testInMemoryStoreStaysBounded() {
+        AtomicLong now = new AtomicLong(1000L);
+        InMemoryDedupStore store = new InMemoryDedupStore(1000, now::get);
+        assertEquals(1024, store.capacity());
+
+        String first = UUID.randomUUID().toString();
+        store.markIfAbsent(first, 60000L);
+        for (int i = 0; i < 100000; i++) {
+            now.incrementAndGet();
+            assertTrue(store.markIfAbsent(UUID.randomUUID().toString(), 60000L));
+        }
+
+        // The oldest claim has been evicted to make room for the newer ones
+        assertTrue(store.markIfAbsent(first, 60000L));
+        assertEquals(1024, store.capacity());
+    }
+
+    @Test
+    public void testFileStoreIsSharedBetweenInstances() throws IOException {
+        Path file = folder.newFolder().toPath().resolve("dedup.tsv");
+        FileDedupStore first = new FileDedupStore(file);
+        FileDedupStore second = new FileDedupStore(file);
+        String uuid = UUID.randomUUID().toString();
+
+        assertTrue(first.markIfAbsent(uuid, 60000L));
+        assertFalse(second.markIfAbsent(uuid, 60000L));
+        assertTrue(second.markIfAbsent("other", 60000L));
+
+        second.release(uuid);
+        assertTrue(first.markIfAbsent(uuid, 60000L));
+        assertTrue(first.markIfAbsent("expired", -1L));
+        assertTrue(second.markIfAbsent("expired", 60000L));
+    }
+}
@@ -0,0 +1,447 @@
+package com.arcxp.platform.sdk.http;
+
+import com.arcxp.platform.sdk.metrics.MetricsRecorder;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DefaultArcHttpClientTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger flakyFailures = new AtomicInteger(2);
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        server = ServerBootstrap.bootstrap()
+                .setListenerPort(0)
+                .registerHandler("/orders", (request, response, context) -> {
+                    requests.incrementAndGet();
+                    response.setEntity(new StringEntity("{\"id\":\"42\"}", ContentType.APPLICATION_JSON));
+                })
+                .registerHandler("/slow", (request, response, context) -> {
+                    requests.incrementAndGet();
+                    try {
+                        Thread.sleep(300L);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    if (request.containsHeader("If-None-Match")) {
+                        response.setStatusCode(304);
+                        return;
+                    }
+                    response.setEntity(new StringEntity("{\"tenant\":\""
+                            + request.getFirstHeader("X-Tenant").getValue() + "\"}", ContentType.APPLICATION_JSON));
+                })
+                .registerHandler("/flaky", (request, response, context) -> {
+                    requests.incrementAndGet();
+                    if (flakyFailures.getAndDecrement() > 0) {
+                        response.setStatusCode(503);
+                        response.setHeader("Retry-After", "0");
+                        return;
+                    }
+                    response.setEntity(new StringEntity("{\"id\":\"42\"}", ContentType.APPLICATION_JSON));
+                })
+                .registerHandler("/down", (request, response, context) -> {
+                    requests.incrementAndGet();
+                    response.setStatusCode(502);
+                })
+                .registerHandler("/export", (request, response, context) -> {
+                    requests.incrementAndGet();
+                    StringBuilder body = new StringBuilder("{\"meta\":{\"items\":[]},\"items\":[");
+                    for (int i = 0; i < 5000; i++) {
+                        body.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"lines\":[1,2]}");
+                    }
+                    response.setEntity(new StringEntity(body.append("]}").toString(), ContentType.APPLICATION_JSON));
+                })
+                .registerHandler("/echo", (request, response, context) -> {
+                    requests.incrementAndGet();
+                    HttpEntity body = ((HttpEntityEnclosingRequest) request).getEntity();
+                    response.setEntity(new StringEntity("{\"chunked\":" + request.containsHeader("Transfer-Encoding")
+                            + ",\"type\":\"" + request.getFirstHeader("Content-Type").getValue()
+                            + "\",\"bytes\":" + EntityUtils.toByteArray(body).length + "}",
+                            ContentType.APPLICATION_JSON));
+                })
+                .registerHandler("/gzip", (request, response, context) -> {
+                    requests.incrementAndGet();
+                    StringBuilder body = new StringBuilder("{\"encoding\":\"");
+                    if (request instanceof HttpEntityEnclosingRequest) {
+                        HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+                        boolean gzipped = request.containsHeader("Content-Encoding");
+                        byte[] received = EntityUtils.toByteArray(gzipped
+                                ? new GzipDecompressingEntity(enclosing.getEntity()) : enclosing.getEntity());
+                        body.append(gzipped ? "gzip" : "identity").append("\",\"bytes\":").append(received.length);
+                    } else {
+                        int items = Integer.parseInt(request.getRequestLine().getUri().replaceAll(".*=", ""));
+                        body.append(request.getFirstHeader("Accept-Encoding").getValue()).append("\",\"items\":[");
+                        for (int i = 0; i < items; i++) {
+                            body.append(i == 0 ? "" : ",").append("{\"sku\":\"SKU\"}");
+                        }
+                        body.append(']');
+                    }
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                        gzip.write(body.append('}').toString().getBytes(StandardCharsets.UTF_8));
+                    }
+                    ByteArrayEntity entity = new ByteArrayEntity(compressed.toByteArray(),
+                            ContentType.APPLICATION_JSON);
+                    entity.setContentEncoding("gzip");
+                    response.setEntity(entity);
+                })
+                .registerHandler("/catalog/*", (request, response, context) -> {
+                    requests.incrementAndGet();
+                    String uri = request.getRequestLine().getUri();
+                    if (uri.endsWith("/prices")) {
+                        response.setHeader("Cache-Control", "max-age=0");
+                    } else if (uri.endsWith("/products")) {
+                        response.setHeader("Cache-Control", "max-age=60");
+                    }
+                    response.setHeader("ETag", "\"v1\"");
+                    if (request.containsHeader("If-None-Match")) {
+                        response.setStatusCode(304);
+                        return;
+                    }
+                    response.setEntity(new StringEntity("{\"tenant\":\""
+                            + request.getFirstHeader("X-Tenant").getValue() + "\"}", ContentType.APPLICATION_JSON));
+                })
+                .create();
+        server.start();
+        baseUrl = "http://localhost:" + server.getLocalPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.shutdown(0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testConnectionsArePooledWithTheConfiguredLimits() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("arc.http.maxConnections", "7");
+        properties.put("arc.http.maxConnectionsPerRoute", "3");
+        properties.put("arc.http.socketTimeoutMillis", "1500");
+        DefaultArcHttpClient client = new DefaultArcHttpClient(environment(properties), new ObjectMapper());
+
+        assertEquals(3, client.getSettings().getMaxConnectionsPerRoute());
+        assertEquals(1500, client.getSettings().getSocketTimeoutMillis());
+        assertEquals(5000, client.getSettings().getConnectTimeoutMillis());
+
+        for (int i = 0; i < 3; i++) {
+            Response<ObjectNode> response = client.get(baseUrl + "/orders", null);
+            assertEquals(200, response.getStatus());
+            assertEquals("42", response.getData().get("id").asText());
+        }
+
+        PoolStats stats = client.getPoolStats();
+        assertEquals(3, requests.get());
+        assertEquals(7, stats.getMax());
+        assertEquals(0, stats.getLeased());
+        // The three requests were sent over the same kept-alive connection
+        assertEquals(1, stats.getAvailable());
+
+        client.resetConnections();
+        assertEquals(0, client.getPoolStats().getAvailable());
+    }
+
+    @Test
+    public void testGetResponsesAreCachedAndRevalidatedPerIdentity() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("arc.http.cache.enabled", "true");
+        properties.put("arc.http.cache.ttlOverrides", "/catalog/sites=60");
+        DefaultArcHttpClient client = new DefaultArcHttpClient(environment(properties), new ObjectMapper());
+        Map<String, String> tenantA = new HashMap<>();
+        tenantA.put("X-Tenant", "a");
+        Map<String, String> tenantB = new HashMap<>();
+        tenantB.put("X-Tenant", "b");
+
+        // Fresh for a minute: one request per tenant
+        for (int i = 0; i < 3; i++) {
+            assertEquals("a", client.get(baseUrl + "/catalog/products", tenantA).getData().get("tenant").asText());
+            assertEquals("b", client.get(baseUrl + "/catalog/products", tenantB).getData().get("tenant").asText());
+        }
+        assertEquals(2, requests.get());
+
+        // Stale at once but with an ETag: revalidated on every request
+        for (int i = 0; i < 3; i++) {
+            Response<ObjectNode> response = client.get(baseUrl + "/catalog/prices", tenantA);
+            assertEquals(200, response.getStatus());
+            assertEquals("a", response.getData().get("tenant").asText());
+        }
+        assertEquals(5, requests.get());
+
+        // No caching headers, but a TTL override for the prefix
+        client.get(baseUrl + "/catalog/sites", tenantA);
+        client.get(baseUrl + "/catalog/sites", tenantA);
+        assertEquals(6, requests.get());
+
+        HttpResponseCache.Stats stats = client.getResponseCache().getStats();
+        assertEquals(5, stats.getHits());
+        assertEquals(4, stats.getMisses());
+        assertEquals(2, stats.getRevalidations());
+        assertEquals(4, stats.getEntries());
+    }
+
+    @Test
+    public void testConcurrentIdenticalGetsShareOneRequest() throws Exception {
+        DefaultArcHttpClient client = new DefaultArcHttpClient(environment(new HashMap<>()), new ObjectMapper());
+        ExecutorService callers = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Response<ObjectNode>>> responses = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                Map<String, String> headers = Collections.singletonMap("X-Tenant", i < 5 ? "a" : "b");
+                responses.add(callers.submit(() -> client.get(baseUrl + "/slow", headers)));
+            }
+            Set<ObjectNode> data = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int i = 0; i < 6; i++) {
+                Response<ObjectNode> response = responses.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals(200, response.getStatus());
+                assertEquals(i < 5 ? "a" : "b", response.getData().get("tenant").asText());
+                data.add(response.getData());
+            }
+            // Every caller gets its own copy of the data
+            assertEquals(6, data.size());
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(2, requests.get());
+        assertEquals(4, client.getCollapsedRequests());
+    }
+
+    @Test
+    public void testConditionalGetsDoNotShareTheResponseOfPlainGets() throws Exception {
+        DefaultArcHttpClient client = new DefaultArcHttpClient(environment(new HashMap<>()), new ObjectMapper());
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Map<String, String> conditional = new HashMap<>();
+            conditional.put("X-Tenant", "a");
+            conditional.put("If-None-Match", "\"v1\"");
+            Future<Response<ObjectNode>> revalidated = callers.submit(() -> client.get(baseUrl + "/slow", conditional));
+            Thread.sleep(100L);
+            Future<Response<ObjectNode>> plain = callers.submit(() -> client.get(baseUrl + "/slow",
+                    Collections.singletonMap("X-Tenant", "a")));
+
+            assertEquals(304, revalidated.get(5, TimeUnit.SECONDS).getStatus());
+            Response<ObjectNode> response = plain.get(5, TimeUnit.SECONDS);
+            assertEquals(200, response.getStatus());
+            assertEquals("a", response.getData().get("tenant").asText());
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertEquals(2, requests.get());
+        assertEquals(0, client.getCollapsedRequests());
+    }
+
+    @Test
+    public void testFailedRequestsAreRetriedUntilTheCircuitOpens() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("arc.http.retry.baseDelayMillis", "1");
+        properties.put("arc.http.retry.maxDelayMillis", "10");
+        properties.put("arc.http.circuitBreaker.failureThreshold", "3");
+        DefaultArcHttpClient client = new DefaultArcHttpClient(environment(properties), new ObjectMapper());
+        MetricsRecorder recorder = mock(MetricsRecorder.class);
+        client.setMetricsRecorder(recorder);
+
+        // Two 503s, then the response
+        Response<ObjectNode> response = client.get(baseUrl + "/flaky", null);
+        assertEquals(200, response.getStatus());
+        assertEquals(3, requests.get());
+        assertEquals(2, client.getRetries());
+
+        // POST is not idempotent, so it is sent once
+        assertEquals(502, client.post(baseUrl + "/down", null, "{}").getStatus());
+        assertEquals(4, requests.get());
+
+        // The third failure in a row opens the circuit, which ends the retries
+        assertEquals(502, client.get(baseUrl + "/down", null).getStatus());
+        assertEquals(6, requests.get());
+        CircuitBreaker breaker = client.getCircuitBreakers().iterator().next();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getOpenings());
+
+        // While open, requests fail without being sent
+        assertEquals(0, client.get(baseUrl + "/orders", null).getStatus());
+        assertEquals(6, requests.get());
+        assertEquals(1, client.getShortCircuitedRequests());
+        assertEquals(3, client.getRetries());
+        verify(recorder, times(3)).count("HttpRetries");
+        verify(recorder).count("HttpCircuitOpened");
+        verify(recorder).count("HttpShortCircuits");
+    }
+
+    @Test
+    public void testATrialCallWithoutAnOutcomeLeavesTheCircuitUsable() throws Exception {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("arc.http.retry.maxAttempts", "1");
+        properties.put("arc.http.circuitBreaker.failureThreshold", "1");
+        properties.put("arc.http.circuitBreaker.openMillis", "1");
+        properties.put("arc.http.chunkedRequestBodies", "true");
+        DefaultArcHttpClient client = new DefaultArcHttpClient(environment(properties), new ObjectMapper());
+
+        assertEquals(502, client.get(baseUrl + "/down", null).getStatus());
+        CircuitBreaker breaker = client.getCircuitBreakers().iterator().next();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(5L);
+
+        // The trial call fails to serialize its body while it is sent
+        assertEquals(0, client.put(baseUrl + "/echo", null, new Object()).getStatus());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertEquals(200, client.get(baseUrl + "/orders", null).getStatus());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, client.getShortCircuitedRequests());
+    }
+
+    @Test
+    public void testLargeResponsesAreStreamedAndReleaseTheirConnection() {
+        DefaultArcHttpClient client = new DefaultArcHttpClient(environment(new HashMap<>()), new ObjectMapper());
+
+        try (Stream<ObjectNode> items = client.streamArray(baseUrl + "/export", null, "/items", ObjectNode.class)) {
+            assertEquals(12497500L, items.mapToLong(item -> item.get("id").asLong()).sum());
+        }
+        // Closed before the end: the connection is dropped rather than the rest of the body read
+        try (Stream<ObjectNode> items = client.streamArray(baseUrl + "/export", null, "/items", ObjectNode.class)) {
+            assertEquals(0, items.findFirst().get().get("id").asInt());
+        }
+        assertEquals(0, client.streamArray(baseUrl + "/export", null, "/missing", ObjectNode.class).count());
+
+        AtomicInteger fields = new AtomicInteger();
+        Response<Void> streamed = client.stream(baseUrl + "/export", null, parser -> {
+            try {
+                while (parser.nextToken() != null) {
+                    if (parser.getCurrentToken() == JsonToken.FIELD_NAME) {
+                        fields.incrementAndGet();
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        assertEquals(200, streamed.getStatus());
+        assertEquals(10003, fields.get());
+
+        Response<Long> read = client.read(baseUrl + "/export", null, body -> {
+            long bytes = 0L;
+            while (body.read() != -1) {
+                bytes++;
+            }
+            return bytes;
+        });
+        assertEquals(200, read.getStatus());
+        assertTrue(read.getData() > 100000L);
+
+        assertEquals(5, requests.get());
+        assertEquals(0, client.getPoolStats().getLeased());
+    }
+
+    @Test
+    public void testRequestBodiesAreStreamedOrPassedThrough() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("arc.http.chunkedRequestBodies", "true");
+        DefaultArcHttpClient client = new DefaultArcHttpClient(environment(properties), new ObjectMapper());
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add(Collections.singletonMap("sku", "SKU-" + i));
+        }
+        byte[] json = "{\"sku\":\"SKU-1\"}".getBytes(StandardCharsets.UTF_8);
+
+        ObjectNode streamed = client.put(baseUrl + "/echo", null, Collections.singletonMap("lines", lines)).getData();
+        assertTrue(streamed.get("chunked").asBoolean());
+        assertEquals("application/json", streamed.get("type").asText());
+        assertEquals(17901, streamed.get("bytes").asInt());
+
+        ObjectNode bytes = client.post(baseUrl + "/echo", null, json).getData();
+        assertFalse(bytes.get("chunked").asBoolean());
+        assertEquals(json.length, bytes.get("bytes").asInt());
+
+        ObjectNode stream = client.post(baseUrl + "/echo", null, new ByteArrayInputStream(json)).getData();
+        assertTrue(stream.get("chunked").asBoolean());
+        assertEquals(json.length, stream.get("bytes").asInt());
+    }
+
+    @Test
+    public void testBodiesAreCompressedWithinTheDecompressedSizeLimit() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("arc.http.compression.requestPrefixes", "/gzip");
+        properties.put("arc.http.compression.maxDecompressedBytes", "50000");
+        DefaultArcHttpClient client = new DefaultArcHttpClient(environment(properties), new ObjectMapper());
+
+        Response<ObjectNode> response = client.get(baseUrl + "/gzip?items=1000", null);
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip, deflate", response.getData().get("encoding").asText());
+        assertEquals(1000, response.getData().get("items").size());
+        ContentEncoding.Stats stats = client.getContentEncoding().getStats();
+        assertEquals(14038, stats.getResponseBytesDecoded());
+        assertTrue(stats.getResponseBytesReceived() < 1000);
+
+        // Expands past the limit
+        assertEquals(0, client.get(baseUrl + "/gzip?items=5000", null).getStatus());
+
+        List<Map<String, Object>> lines = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            lines.add(Collections.singletonMap("sku", "SKU-" + i));
+        }
+        ObjectNode echoed = client.put(baseUrl + "/gzip", null, Collections.singletonMap("lines", lines)).getData();
+        assertEquals("gzip", echoed.get("encoding").asText());
+        assertEquals(17901, echoed.get("bytes").asInt());
+        stats = client.getContentEncoding().getStats();
+        assertEquals(17901, stats.getRequestBytesWritten());
+        assertTrue(stats.getBytesSaved() > 17901);
+        // Below the minimum size
+        assertEquals("identity", client.put(baseUrl + "/gzip", null, "{}").getData().get("encoding").asText());
+        assertEquals(17901, client.getContentEncoding().getStats().getRequestBytesWritten());
+    }
+
+    static StandardEnvironment environment(Map<String, Object> properties) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        return environment;
+    }
+}
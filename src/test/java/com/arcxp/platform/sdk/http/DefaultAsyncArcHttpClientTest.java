@@ -0,0 +1,90 @@
+package com.arcxp.platform.sdk.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DefaultAsyncArcHttpClientTest {
+
+    private static final long DELAY_MILLIS = 300L;
+
+    private HttpServer server;
+
+    private String baseUrl;
+
+    private DefaultAsyncArcHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = ServerBootstrap.bootstrap()
+                .setListenerPort(0)
+                .registerHandler("/orders/*", (request, response, context) -> {
+                    try {
+                        Thread.sleep(DELAY_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    String uri = request.getRequestLine().getUri();
+                    String id = uri.substring(uri.lastIndexOf('/') + 1);
+                    response.setEntity(new StringEntity("{\"id\":\"" + id + "\",\"site\":\""
+                            + request.getFirstHeader("Arc-Site").getValue() + "\"}", ContentType.APPLICATION_JSON));
+                })
+                .create();
+        server.start();
+        baseUrl = "http://localhost:" + server.getLocalPort();
+        client = new DefaultAsyncArcHttpClient(DefaultArcHttpClientTest.environment(
+                Collections.singletonMap("site", "arc-site")), new ObjectMapper());
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        server.shutdown(0, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testIndependentCallsRunConcurrently() {
+        long start = System.nanoTime();
+        List<CompletableFuture<Response<ObjectNode>>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(client.get(baseUrl + "/orders/" + i, null));
+        }
+        CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        for (int i = 0; i < 5; i++) {
+            Response<ObjectNode> response = calls.get(i).join();
+            assertEquals(200, response.getStatus());
+            assertEquals(String.valueOf(i), response.getData().get("id").asText());
+            assertEquals("arc-site", response.getData().get("site").asText());
+        }
+        assertTrue("Took " + elapsedMillis + "ms", elapsedMillis < 5 * DELAY_MILLIS);
+        assertEquals(0, client.getPoolStats().getLeased());
+    }
+
+    @Test
+    public void testFailedCallCompletesWithoutData() {
+        server.shutdown(0, TimeUnit.SECONDS);
+
+        Response<ObjectNode> response = client.get(baseUrl + "/orders/1", null).join();
+
+        assertEquals(0, response.getStatus());
+        assertNull(response.getData());
+    }
+}
@@ -0,0 +1,48 @@
+package com.arcxp.platform.sdk.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 10000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(5000500L, snapshot.getMean());
+        assertEquals(10000000L, snapshot.getMax());
+        assertWithin(5000000L, snapshot.getP50());
+        assertWithin(9000000L, snapshot.getP90());
+        assertWithin(9900000L, snapshot.getP99());
+        assertEquals(10000000L, snapshot.getValueAtPercentile(100.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getP99());
+    }
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        long previous = -1L;
+        for (int index = 0; index < LatencyHistogram.index(Long.MAX_VALUE); index++) {
+            long highest = LatencyHistogram.highestValue(index);
+            assertEquals(index, LatencyHistogram.index(previous + 1));
+            assertEquals(index, LatencyHistogram.index(highest));
+            previous = highest;
+        }
+        assertEquals(0, LatencyHistogram.index(0L));
+        assertEquals(31, LatencyHistogram.index(31L));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 32);
+    }
+}
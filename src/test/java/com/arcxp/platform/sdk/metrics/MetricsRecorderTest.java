@@ -0,0 +1,122 @@
+package com.arcxp.platform.sdk.metrics;
+
+import com.arcxp.platform.sdk.annotations.ArcAsyncEvent;
+import com.arcxp.platform.sdk.broker.MessageBroker;
+import com.arcxp.platform.sdk.handlers.async.EventHandler;
+import com.arcxp.platform.sdk.handlers.async.EventPayload;
+import com.arcxp.platform.sdk.utils.MapUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRecorderTest {
+
+    private final ObjectMapper objectMapper = MapUtils.createObjectMapper();
+
+    private final List<String> lines = Collections.synchronizedList(new ArrayList<>());
+
+    @ArcAsyncEvent("commerce:ORDER_CREATED")
+    public static class OrderHandler extends EventHandler {
+        private final MetricsRecorder metricsRecorder;
+
+        OrderHandler(MetricsRecorder metricsRecorder) {
+            this.metricsRecorder = metricsRecorder;
+        }
+
+        @Override
+        public void handle(EventPayload payload) {
+            metricsRecorder.count("OrdersCreated");
+            metricsRecorder.gauge("OrderItems", 3);
+            metricsRecorder.gauge("OrderItems", 4);
+        }
+    }
+
+    @Test
+    public void testMetricsAreWrittenAsOneLinePerDimensionSet() throws IOException {
+        MetricsRecorder recorder = new MetricsRecorder(objectMapper, lines::add);
+        recorder.setEnabled(true);
+        recorder.setNamespace("Orders");
+
+        recorder.count("Started");
+        int previous = recorder.enterDimensions("commerce:ORDER_CREATED", 1, OrderHandler.class);
+        for (int i = 1; i <= 150; i++) {
+            recorder.time("Latency", i * 1_000_000L);
+        }
+        recorder.count("Created", 2);
+        recorder.count("Created");
+        recorder.restoreDimensions(previous);
+        recorder.shutdown();
+
+        assertEquals(3, lines.size());
+        JsonNode started = objectMapper.readTree(lines.get(0));
+        assertEquals(0, started.at("/_aws/CloudWatchMetrics/0/Dimensions/0").size());
+        assertEquals("Orders", started.at("/_aws/CloudWatchMetrics/0/Namespace").asText());
+        assertEquals(1.0, started.get("Started").asDouble(), 0.0);
+
+        JsonNode first = objectMapper.readTree(lines.get(1));
+        assertEquals("[\"EventKey\",\"TypeId\",\"Handler\"]",
+                first.at("/_aws/CloudWatchMetrics/0/Dimensions/0").toString());
+        assertEquals("commerce:ORDER_CREATED", first.get("EventKey").asText());
+        assertEquals("1", first.get("TypeId").asText());
+        assertEquals("OrderHandler", first.get("Handler").asText());
+        assertEquals("Milliseconds", first.at("/_aws/CloudWatchMetrics/0/Metrics/0/Unit").asText());
+        assertEquals(100, first.get("Latency").size());
+        assertEquals(3.0, first.get("Created").asDouble(), 0.0);
+
+        JsonNode second = objectMapper.readTree(lines.get(2));
+        assertEquals(50, second.get("Latency").size());
+        assertEquals(150.0, second.get("Latency").get(49).asDouble(), 0.0);
+        assertTrue(second.get("Created") == null);
+    }
+
+    @Test
+    public void testMetricsAreWrittenWhenFlushReturns() {
+        List<Thread> writers = new ArrayList<>();
+        MetricsRecorder recorder = new MetricsRecorder(objectMapper, line -> {
+            writers.add(Thread.currentThread());
+            lines.add(line);
+        });
+        recorder.setEnabled(true);
+
+        recorder.count("Started");
+        recorder.flush();
+        assertEquals(1, lines.size());
+        recorder.count("Started");
+        recorder.flush();
+        assertEquals(2, lines.size());
+        assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()), writers);
+    }
+
+    @Test
+    public void testBrokerRecordsHandlerMetricsAndFlushesPerMessage() throws IOException {
+        MetricsRecorder recorder = new MetricsRecorder(objectMapper, lines::add);
+        recorder.setEnabled(true);
+        recorder.setBufferSize(3);
+        MessageBroker broker = new MessageBroker();
+        broker.setObjectMapper(objectMapper);
+        broker.setMetricsRecorder(recorder);
+        broker.setEventHandlers(Collections.singletonList(new OrderHandler(recorder)));
+        broker.setRequestHandlers(Collections.emptyList());
+
+        broker.handle(objectMapper.createObjectNode().put("eventType", "ORDER_CREATED")
+                .put("eventTime", 1648496000).toString());
+        recorder.shutdown();
+
+        assertEquals(1, lines.size());
+        JsonNode line = objectMapper.readTree(lines.get(0));
+        assertEquals("OrderHandler", line.get("Handler").asText());
+        assertEquals(1.0, line.get("OrdersCreated").asDouble(), 0.0);
+        assertEquals(4.0, line.get("OrderItems").asDouble(), 0.0);
+        // The buffer holds three values, so the latency recorded by the broker is dropped
+        assertTrue(line.get("HandlerLatency") == null);
+    }
+}
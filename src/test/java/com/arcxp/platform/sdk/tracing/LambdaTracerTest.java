@@ -0,0 +1,97 @@
+package com.arcxp.platform.sdk.tracing;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.arcxp.platform.sdk.annotations.ArcAsyncEvent;
+import com.arcxp.platform.sdk.broker.MessageBroker;
+import com.arcxp.platform.sdk.handlers.async.EventHandler;
+import com.arcxp.platform.sdk.handlers.async.EventPayload;
+import com.arcxp.platform.sdk.utils.MapUtils;
+import com.datadoghq.datadog_lambda_java.DDLambda;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class LambdaTracerTest {
+
+    private final List<Context> traced = new ArrayList<>();
+
+    private final DDLambda trace = mock(DDLambda.class);
+
+    private final Context context = mock(Context.class);
+
+    private MessageBroker broker;
+
+    @ArcAsyncEvent("commerce:ORDER_CREATED")
+    public static class OrderHandler extends EventHandler {
+        @Override
+        public void handle(EventPayload payload) {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        broker = new MessageBroker();
+        broker.setObjectMapper(MapUtils.createObjectMapper());
+        broker.setEventHandlers(Collections.singletonList(new OrderHandler()));
+        broker.setRequestHandlers(Collections.emptyList());
+    }
+
+    @Test
+    public void testTraceStartsOnlyForHandledAndSampledEvents() {
+        LambdaTracer tracer = tracer(true);
+        tracer.setSampleRates("commerce:cart_add=0, COMMERCE:ORDER_CREATED = 1");
+        tracer.setSampleRate(0.0);
+        broker.setLambdaTracer(tracer);
+
+        invoke(tracer, "UNHANDLED");
+        invoke(tracer, "CART_ADD");
+        assertEquals(Collections.emptyList(), traced);
+
+        invoke(tracer, "ORDER_CREATED");
+        assertEquals(Collections.singletonList(context), traced);
+        verify(trace).finish();
+
+        tracer.setSampleRates("");
+        invoke(tracer, "ORDER_CREATED");
+        assertEquals(1, traced.size());
+    }
+
+    @Test
+    public void testNothingIsTracedWithoutDatadog() {
+        LambdaTracer tracer = tracer(false);
+        broker.setLambdaTracer(tracer);
+
+        invoke(tracer, "ORDER_CREATED");
+
+        assertEquals(Collections.emptyList(), traced);
+    }
+
+    private void invoke(LambdaTracer tracer, String eventType) {
+        tracer.begin(context, Collections.singletonMap("x-datadog-trace-id", 42L));
+        try {
+            broker.handle("{\"eventType\":\"" + eventType + "\",\"eventTime\":1648496000}");
+            broker.handle("{\"eventType\":\"" + eventType + "\",\"eventTime\":1648496000}");
+        } finally {
+            tracer.end();
+        }
+    }
+
+    private LambdaTracer tracer(boolean enabled) {
+        return new LambdaTracer(enabled) {
+            @Override
+            protected DDLambda startTrace(Context context, Map<String, ?> headers) {
+                assertEquals(42L, headers.get("x-datadog-trace-id"));
+                traced.add(context);
+                return trace;
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.arcxp.platform.sdk.warmup;
+
+import com.arcxp.platform.sdk.annotations.ArcAsyncEvent;
+import com.arcxp.platform.sdk.annotations.ArcSyncEvent;
+import com.arcxp.platform.sdk.annotations.ArcWarmup;
+import com.arcxp.platform.sdk.broker.MessageBroker;
+import com.arcxp.platform.sdk.handlers.async.EventHandler;
+import com.arcxp.platform.sdk.handlers.async.EventPayload;
+import com.arcxp.platform.sdk.handlers.sync.RequestHandler;
+import com.arcxp.platform.sdk.handlers.sync.RequestPayload;
+import com.arcxp.platform.sdk.http.ArcHttpClient;
+import com.arcxp.platform.sdk.metrics.BrokerMetrics;
+import com.arcxp.platform.sdk.utils.MapUtils;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class WarmupLifecycleTest {
+
+    @ArcAsyncEvent("commerce:ORDER_PLACED")
+    static class OrderHandler extends EventHandler {
+        int handled;
+        int warmups;
+
+        @Override
+        public void handle(EventPayload payload) {
+            handled++;
+        }
+
+        @ArcWarmup
+        void warmup() {
+            warmups++;
+        }
+    }
+
+    @ArcSyncEvent("commerce:CART_ADD")
+    static class CartHandler extends RequestHandler {
+        int handled;
+
+        @Override
+        public void handle(RequestPayload payload) {
+            handled++;
+        }
+
+        @ArcWarmup
+        public void warmup() {
+            throw new IllegalStateException("Failing warmup");
+        }
+    }
+
+    @ArcAsyncEvent("{namespace}:*")
+    static class AnyEventHandler extends EventHandler {
+        int handled;
+
+        @Override
+        public void handle(EventPayload payload) {
+            handled++;
+        }
+    }
+
+    @ArcSyncEvent("commerce:{resource}/{id}")
+    static class ResourceEndpoint extends RequestHandler {
+        int handled;
+
+        @Override
+        public void handle(RequestPayload payload) {
+            handled++;
+        }
+    }
+
+    @Test
+    public void testPrimeInvokesWarmupMethodsWithoutRoutingToHandlers() {
+        OrderHandler orderHandler = new OrderHandler();
+        CartHandler cartHandler = new CartHandler();
+
+        MessageBroker messageBroker = new MessageBroker();
+        messageBroker.setObjectMapper(MapUtils.createObjectMapper());
+        messageBroker.setEventHandlers(Collections.singletonList(orderHandler));
+        messageBroker.setRequestHandlers(Collections.singletonList(cartHandler));
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("orderHandler", orderHandler);
+        beanFactory.registerSingleton("cartHandler", cartHandler);
+
+        WarmupLifecycle warmup = new WarmupLifecycle(messageBroker, MapUtils.createObjectMapper(),
+                beanFactory.getBeanProvider(EventHandler.class), beanFactory.getBeanProvider(RequestHandler.class),
+                beanFactory.getBeanProvider(ArcHttpClient.class));
+        warmup.setIterations(3);
+        warmup.prime();
+
+        assertEquals(1, orderHandler.warmups);
+        assertEquals(0, orderHandler.handled);
+        assertEquals(0, cartHandler.handled);
+    }
+
+    @Test
+    public void testPrimeNeverReachesPatternRoutesAndLeavesNoMetrics() {
+        AnyEventHandler anyEventHandler = new AnyEventHandler();
+        ResourceEndpoint resourceEndpoint = new ResourceEndpoint();
+
+        MessageBroker messageBroker = new MessageBroker();
+        messageBroker.setObjectMapper(MapUtils.createObjectMapper());
+        messageBroker.setEventHandlers(Collections.singletonList(anyEventHandler));
+        messageBroker.setRequestHandlers(Collections.singletonList(resourceEndpoint));
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        WarmupLifecycle warmup = new WarmupLifecycle(messageBroker, MapUtils.createObjectMapper(),
+                beanFactory.getBeanProvider(EventHandler.class), beanFactory.getBeanProvider(RequestHandler.class),
+                beanFactory.getBeanProvider(ArcHttpClient.class));
+        warmup.setIterations(3);
+        warmup.prime();
+
+        assertEquals(0, anyEventHandler.handled);
+        assertEquals(0, resourceEndpoint.handled);
+        for (BrokerMetrics.Phase phase : BrokerMetrics.Phase.values()) {
+            assertEquals(phase.name(), 0L, messageBroker.getMetrics().snapshot().getPhase(phase).getCount());
+        }
+    }
+}